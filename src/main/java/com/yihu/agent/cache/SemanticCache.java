@@ -0,0 +1,220 @@
+package com.yihu.agent.cache;
+
+import com.yihu.agent.vector.VectorMath;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语义缓存
+ * 以文本向量为键，查询时返回余弦相似度超过阈值的最相近条目；
+ * 容量有上限（按访问顺序 LRU 淘汰），每个条目有独立的过期时间。
+ * 向量在写入时归一化，查询只需做点积。
+ * 相似查找在不加锁的只读快照上扫描，只有刷新访问顺序和移除过期条目时才持有锁；
+ * 快照在条目变化后的下一次相似查找时重建。
+ *
+ * @param <V> 缓存值类型
+ */
+public class SemanticCache<V> {
+
+    /**
+     * 命中结果
+     *
+     * @param key        命中条目的原始文本
+     * @param value      缓存值
+     * @param similarity 与查询向量的余弦相似度
+     */
+    public record Hit<V>(String key, V value, double similarity) {
+    }
+
+    private static final class Entry<V> {
+        final float[] vector;
+        final V value;
+        final long expiresAt;
+
+        Entry(float[] vector, V value, long expiresAt) {
+            this.vector = vector;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final double similarityThreshold;
+    private final LinkedHashMap<String, Entry<V>> entries;
+
+    /**
+     * entries 的只读副本，为 null 表示条目已变化、需要重建
+     */
+    private volatile List<Map.Entry<String, Entry<V>>> snapshot;
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder semanticHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxEntries          最大条目数，超出后淘汰最久未访问的条目
+     * @param similarityThreshold 命中所需的最小余弦相似度
+     */
+    public SemanticCache(int maxEntries, double similarityThreshold) {
+        this.maxEntries = maxEntries;
+        this.similarityThreshold = similarityThreshold;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > SemanticCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 按原始文本精确查找，无需计算向量
+     */
+    public synchronized Optional<Hit<V>> getExact(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            snapshot = null;
+            expirations.increment();
+            return Optional.empty();
+        }
+        exactHits.increment();
+        return Optional.of(new Hit<>(key, entry.value, 1.0));
+    }
+
+    /**
+     * 按向量查找最相近的未过期条目
+     *
+     * @param vector 查询向量（无需预先归一化）
+     */
+    public Optional<Hit<V>> getSimilar(float[] vector) {
+        float[] query = VectorMath.normalize(vector);
+        long now = System.currentTimeMillis();
+
+        String bestKey = null;
+        Entry<V> best = null;
+        double bestSimilarity = similarityThreshold;
+        List<Map.Entry<String, Entry<V>>> expired = null;
+        for (Map.Entry<String, Entry<V>> candidate : snapshot()) {
+            Entry<V> entry = candidate.getValue();
+            if (entry.expiresAt <= now) {
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(candidate);
+                continue;
+            }
+            double similarity = VectorMath.dot(query, entry.vector);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestKey = candidate.getKey();
+                best = entry;
+            }
+        }
+        if (expired != null) {
+            removeExpired(expired);
+        }
+
+        if (best == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        touch(bestKey);
+        semanticHits.increment();
+        return Optional.of(new Hit<>(bestKey, best.value, bestSimilarity));
+    }
+
+    private List<Map.Entry<String, Entry<V>>> snapshot() {
+        List<Map.Entry<String, Entry<V>>> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                List<Map.Entry<String, Entry<V>>> copy = new ArrayList<>(entries.size());
+                for (Map.Entry<String, Entry<V>> entry : entries.entrySet()) {
+                    copy.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+                snapshot = copy;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * get() 会刷新访问顺序；条目内容不变，无需重建快照
+     */
+    private synchronized void touch(String key) {
+        entries.get(key);
+    }
+
+    /**
+     * 移除扫描时发现的过期条目；扫描期间已被重新写入的键保留新值
+     */
+    private synchronized void removeExpired(List<Map.Entry<String, Entry<V>>> expired) {
+        for (Map.Entry<String, Entry<V>> entry : expired) {
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                expirations.increment();
+                snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * 写入条目
+     *
+     * @param key    原始文本
+     * @param vector 文本向量（无需预先归一化）
+     * @param value  缓存值
+     * @param ttl    存活时间
+     */
+    public synchronized void put(String key, float[] vector, V value, Duration ttl) {
+        entries.put(key, new Entry<>(VectorMath.normalize(vector), value, System.currentTimeMillis() + ttl.toMillis()));
+        snapshot = null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        snapshot = null;
+    }
+
+    /**
+     * 命中率统计
+     */
+    public Map<String, Object> stats() {
+        long exact = exactHits.sum();
+        long semantic = semanticHits.sum();
+        long miss = misses.sum();
+        long total = exact + semantic + miss;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("similarityThreshold", similarityThreshold);
+        stats.put("exactHits", exact);
+        stats.put("semanticHits", semantic);
+        stats.put("misses", miss);
+        stats.put("hitRatio", total == 0 ? 0 : (double) (exact + semantic) / total);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,37 @@
+package com.yihu.agent.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+import java.security.Principal;
+
+/**
+ * 匿名用户拦截器
+ * 应用没有登录体系，STOMP CONNECT 时为每个连接分配一个以会话 ID 命名的匿名用户，
+ * 使 /user/queue/... 目的地能够把回复只投递给发起请求的连接
+ */
+public class AnonymousUserInterceptor implements ChannelInterceptor {
+
+    /**
+     * 匿名用户
+     */
+    public record AnonymousPrincipal(String name) implements Principal {
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand()) && accessor.getUser() == null) {
+            accessor.setUser(new AnonymousPrincipal("session-" + accessor.getSessionId()));
+        }
+        return message;
+    }
+}
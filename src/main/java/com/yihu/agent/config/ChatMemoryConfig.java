@@ -0,0 +1,100 @@
+package com.yihu.agent.config;
+
+import com.yihu.agent.memory.CompactInMemoryChatMemoryStore;
+import com.yihu.agent.memory.ConversationSummarizer;
+import com.yihu.agent.memory.FileChatMemoryStore;
+import com.yihu.agent.memory.MonitoredChatMemoryStore;
+import com.yihu.agent.memory.SummarizingChatMemory;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 会话记忆配置
+ * 为每个会话（memoryId）提供有界的对话记忆，存储后端可选进程内紧凑存储或文件持久化存储；
+ * 启用摘要时按 token 预算滚动压缩较早的对话，否则按消息条数截断
+ */
+@Slf4j
+@Configuration
+public class ChatMemoryConfig {
+
+    @Value("${healthcare.memory.store:memory}")
+    private String storeType;
+
+    @Value("${healthcare.memory.max-messages:20}")
+    private int maxMessages;
+
+    @Value("${healthcare.memory.idle-timeout:30m}")
+    private Duration idleTimeout;
+
+    @Value("${healthcare.memory.file-directory:data/chat-memory}")
+    private String fileDirectory;
+
+    @Value("${healthcare.memory.summary.enabled:true}")
+    private boolean summaryEnabled;
+
+    /**
+     * 会话记忆存储
+     */
+    @Bean
+    public MonitoredChatMemoryStore chatMemoryStore() {
+        if ("file".equalsIgnoreCase(storeType)) {
+            log.info("使用文件会话记忆存储: {}", fileDirectory);
+            return new FileChatMemoryStore(Path.of(fileDirectory));
+        }
+        log.info("使用进程内紧凑会话记忆存储，空闲超时: {}", idleTimeout);
+        return new CompactInMemoryChatMemoryStore(idleTimeout);
+    }
+
+    /**
+     * 会话摘要专用线程池：超出 token 预算的较早对话在这里压缩，不占用请求线程；
+     * 作为 Bean 由 Spring 初始化，应用关闭时等待进行中的摘要完成后关闭
+     */
+    @Bean
+    public MonitoredTaskExecutor summaryTaskExecutor(
+            @Value("${healthcare.memory.summary.pool-size:2}") int poolSize) {
+        return new MonitoredTaskExecutor("summary-", poolSize, poolSize, 1000);
+    }
+
+    /**
+     * 会话摘要器
+     */
+    @Bean
+    public ConversationSummarizer conversationSummarizer(
+            ChatModel chatModel,
+            @Qualifier("summaryTaskExecutor") MonitoredTaskExecutor summaryTaskExecutor,
+            @Value("${healthcare.memory.summary.token-budget:1500}") int tokenBudget,
+            @Value("${healthcare.memory.summary.keep-recent-tokens:600}") int keepRecentTokens) {
+        // qwen 等模型没有公开的分词器，使用 OpenAI 分词器估算，误差对预算控制影响不大
+        return new ConversationSummarizer(chatModel, new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_4_O_MINI),
+                summaryTaskExecutor, tokenBudget, keepRecentTokens);
+    }
+
+    /**
+     * 每个会话的对话记忆
+     * 启用摘要时提示词长度基本恒定；否则只保留最近 maxMessages 条消息
+     */
+    @Bean
+    public ChatMemoryProvider chatMemoryProvider(MonitoredChatMemoryStore chatMemoryStore,
+                                                 ConversationSummarizer conversationSummarizer) {
+        if (summaryEnabled) {
+            return memoryId -> new SummarizingChatMemory(memoryId, chatMemoryStore, conversationSummarizer);
+        }
+        return memoryId -> MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(maxMessages)
+                .chatMemoryStore(chatMemoryStore)
+                .build();
+    }
+}
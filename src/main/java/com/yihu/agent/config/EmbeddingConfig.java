@@ -0,0 +1,22 @@
+package com.yihu.agent.config;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量模型配置
+ * 使用进程内运行的 all-MiniLM-L6-v2 模型（384 维），无需网络调用
+ */
+@Configuration
+public class EmbeddingConfig {
+
+    /**
+     * 本地向量模型，全局共享一个实例（模型加载较慢，且实例线程安全）
+     */
+    @Bean
+    public EmbeddingModel embeddingModel() {
+        return new AllMiniLmL6V2EmbeddingModel();
+    }
+}
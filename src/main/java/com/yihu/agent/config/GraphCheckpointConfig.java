@@ -0,0 +1,80 @@
+package com.yihu.agent.config;
+
+import com.yihu.agent.graph.checkpoint.CheckpointStore;
+import com.yihu.agent.graph.checkpoint.CompactCheckpointSaver;
+import com.yihu.agent.graph.checkpoint.FileCheckpointStore;
+import com.yihu.agent.graph.checkpoint.InMemoryCheckpointStore;
+import com.yihu.agent.graph.checkpoint.JdbcCheckpointStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 医疗咨询图检查点配置
+ * 请求带 conversationId 时按会话保存图状态，同一会话的后续消息从上一轮的状态继续；
+ * 存储后端可选进程内、文件或 PostgreSQL（复用 pgvector 连接池）；
+ * 进程内存储按会话数淘汰，文件和 PostgreSQL 存储清除空闲超过 idle-timeout 的会话
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "healthcare.graph.checkpoint", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class GraphCheckpointConfig {
+
+    @Value("${healthcare.graph.checkpoint.store:memory}")
+    private String storeType;
+
+    @Value("${healthcare.graph.checkpoint.max-checkpoints-per-thread:8}")
+    private int maxCheckpointsPerThread;
+
+    @Value("${healthcare.graph.checkpoint.max-threads:10000}")
+    private int maxThreads;
+
+    @Value("${healthcare.graph.checkpoint.idle-timeout:24h}")
+    private Duration idleTimeout;
+
+    @Value("${healthcare.graph.checkpoint.file-directory:data/graph-checkpoints}")
+    private String fileDirectory;
+
+    @Value("${healthcare.graph.checkpoint.table:graph_checkpoints}")
+    private String table;
+
+    @Value("${healthcare.graph.checkpoint.create-table:true}")
+    private boolean createTable;
+
+    @Autowired(required = false)
+    @Qualifier("pgVectorDataSource")
+    private DataSource pgVectorDataSource;
+
+    @Bean
+    public CompactCheckpointSaver graphCheckpointSaver(CheckpointStore graphCheckpointStore) {
+        return new CompactCheckpointSaver(graphCheckpointStore, maxCheckpointsPerThread);
+    }
+
+    /**
+     * 检查点存储，作为 Bean 由 Spring 在应用关闭时停止空闲清除线程
+     */
+    @Bean
+    public CheckpointStore graphCheckpointStore() {
+        if ("file".equalsIgnoreCase(storeType)) {
+            log.info("使用文件图检查点存储: {}，空闲超时: {}", fileDirectory, idleTimeout);
+            return new FileCheckpointStore(Path.of(fileDirectory), idleTimeout);
+        }
+        if ("jdbc".equalsIgnoreCase(storeType)) {
+            if (pgVectorDataSource == null) {
+                throw new IllegalStateException("jdbc 检查点存储需要启用 healthcare.pgvector 连接池");
+            }
+            log.info("使用 PostgreSQL 图检查点存储，表: {}，空闲超时: {}", table, idleTimeout);
+            return new JdbcCheckpointStore(pgVectorDataSource, table, createTable, idleTimeout);
+        }
+        log.info("使用进程内图检查点存储，最多 {} 个会话", maxThreads);
+        return new InMemoryCheckpointStore(maxThreads);
+    }
+}
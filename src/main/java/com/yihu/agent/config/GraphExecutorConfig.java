@@ -0,0 +1,33 @@
+package com.yihu.agent.config;
+
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 医疗咨询图线程池配置
+ * 线程池作为 Bean 由 Spring 初始化，应用关闭时随之关闭
+ */
+@Configuration
+public class GraphExecutorConfig {
+
+    /**
+     * 意图识别阶段并行子节点（指南检索、风险评分、历史对话整理）的线程池
+     */
+    @Bean
+    public MonitoredTaskExecutor graphParallelTaskExecutor(
+            @Value("${healthcare.graph.parallel.threads:16}") int threads) {
+        return new MonitoredTaskExecutor("graph-parallel-", threads, threads, 1000);
+    }
+
+    /**
+     * 分支推测执行线程池
+     * 队列容量为 0，线程用满时放弃推测而不是排队，避免分支节点等待排队中的推测任务
+     */
+    @Bean
+    public MonitoredTaskExecutor speculationTaskExecutor(
+            @Value("${healthcare.graph.speculation.pool-size:16}") int poolSize) {
+        return new MonitoredTaskExecutor("speculation-", poolSize, poolSize, 0);
+    }
+}
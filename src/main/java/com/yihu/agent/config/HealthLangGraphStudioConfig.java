@@ -3,6 +3,8 @@ package com.yihu.agent.config;
 import com.yihu.agent.graph.MedicalConsultationGraph;
 import com.yihu.agent.graph.state.MedicalConsultationState;
 import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.*;
@@ -31,12 +33,16 @@ public class HealthLangGraphStudioConfig extends LangGraphStudioConfig {
 
     @Resource
     IntentRecognitionService intentRecognitionService;
+    @Resource
+    IntentPreClassifier intentPreClassifier;
+    @Resource
+    SemanticIntentCache semanticIntentCache;
     @Override
     public Map<String, LangGraphStudioServer.Instance> instanceMap() {
         // -----------------
         StateGraph<MedicalConsultationState> graph = null;
         try {
-            graph = MedicalConsultationGraph.buildGraphWithNoCompile(intentRecognitionService);
+            graph = MedicalConsultationGraph.buildGraphWithNoCompile(intentRecognitionService, intentPreClassifier, semanticIntentCache);
         } catch (GraphStateException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,40 @@
+package com.yihu.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多知识库路由配置（healthcare.rag.routing）
+ * knowledge-bases 的键是文档目录下的子目录名，值是该知识库的描述和示例问题
+ */
+@Data
+@ConfigurationProperties(prefix = "healthcare.rag.routing")
+public class KnowledgeBaseRoutingProperties {
+
+    private boolean enabled;
+
+    /**
+     * 选定知识库所需的最小余弦相似度，低于该值时检索全部知识库
+     */
+    private double minSimilarity = 0.3;
+
+    /**
+     * 与最相似知识库相差不超过该值的知识库一并检索
+     */
+    private double margin = 0.05;
+
+    private Map<String, KnowledgeBase> knowledgeBases = new LinkedHashMap<>();
+
+    @Data
+    public static class KnowledgeBase {
+
+        private String description;
+
+        private List<String> examples = new ArrayList<>();
+    }
+}
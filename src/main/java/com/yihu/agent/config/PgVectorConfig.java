@@ -0,0 +1,105 @@
+package com.yihu.agent.config;
+
+import com.yihu.agent.rag.pgvector.PgVectorIndexType;
+import com.yihu.agent.rag.pgvector.PgVectorSettings;
+import com.yihu.agent.rag.pgvector.PgVectorStore;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * pgvector 向量库配置
+ * healthcare.pgvector.enabled=true 时创建连接池和 {@link PgVectorStore}；
+ * 再把 healthcare.rag.store 设为 pgvector 即作为医疗知识库的向量库
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "healthcare.pgvector", name = "enabled", havingValue = "true")
+public class PgVectorConfig {
+
+    @Value("${healthcare.pgvector.url}")
+    private String url;
+
+    @Value("${healthcare.pgvector.username}")
+    private String username;
+
+    @Value("${healthcare.pgvector.password}")
+    private String password;
+
+    @Value("${healthcare.pgvector.pool.max-size:16}")
+    private int poolMaxSize;
+
+    @Value("${healthcare.pgvector.pool.min-idle:2}")
+    private int poolMinIdle;
+
+    @Value("${healthcare.pgvector.pool.connection-timeout:5s}")
+    private Duration connectionTimeout;
+
+    @Value("${healthcare.pgvector.table:medical_embeddings}")
+    private String table;
+
+    @Value("${healthcare.pgvector.index:hnsw}")
+    private String indexType;
+
+    @Value("${healthcare.pgvector.halfvec:false}")
+    private boolean halfvec;
+
+    @Value("${healthcare.pgvector.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${healthcare.pgvector.hnsw.ef-construction:64}")
+    private int hnswEfConstruction;
+
+    @Value("${healthcare.pgvector.hnsw.ef-search:40}")
+    private int hnswEfSearch;
+
+    @Value("${healthcare.pgvector.ivfflat.lists:100}")
+    private int ivfflatLists;
+
+    @Value("${healthcare.pgvector.ivfflat.probes:10}")
+    private int ivfflatProbes;
+
+    @Value("${healthcare.pgvector.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${healthcare.pgvector.iterative-scan:false}")
+    private boolean iterativeScan;
+
+    @Value("${healthcare.pgvector.create-table:true}")
+    private boolean createTable;
+
+    /**
+     * pgvector 专用连接池
+     * reWriteBatchedInserts 让 JDBC 批量 INSERT 合并为多值语句（COPY 不可用时的退化路径）
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource pgVectorDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("pgvector");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolMaxSize);
+        config.setMinimumIdle(poolMinIdle);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    public PgVectorStore pgVectorStore(@Qualifier("pgVectorDataSource") DataSource dataSource,
+                                       EmbeddingModel embeddingModel) {
+        PgVectorSettings settings = new PgVectorSettings(table, embeddingModel.dimension(),
+                PgVectorIndexType.valueOf(indexType.toUpperCase()), halfvec,
+                hnswM, hnswEfConstruction, ivfflatLists, hnswEfSearch, ivfflatProbes,
+                batchSize, iterativeScan, createTable);
+        return new PgVectorStore(dataSource, settings);
+    }
+}
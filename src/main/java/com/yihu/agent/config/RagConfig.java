@@ -0,0 +1,365 @@
+package com.yihu.agent.config;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import com.yihu.agent.rag.DocumentIngestionService;
+import com.yihu.agent.rag.IncrementalIndexer;
+import com.yihu.agent.rag.KnowledgeBases;
+import com.yihu.agent.rag.pgvector.PgVectorStore;
+import com.yihu.agent.rag.retrieval.Bm25ContentRetriever;
+import com.yihu.agent.rag.retrieval.Bm25Index;
+import com.yihu.agent.rag.retrieval.EmbeddingQueryRouter;
+import com.yihu.agent.rag.retrieval.ReciprocalRankFusionAggregator;
+import com.yihu.agent.rag.retrieval.RerankingContentAggregator;
+import com.yihu.agent.rag.retrieval.TimeLimitedContentRetriever;
+import com.yihu.agent.rag.store.HnswEmbeddingStore;
+import com.yihu.agent.rag.store.MappedEmbeddingStore;
+import com.yihu.agent.rag.store.PersistentEmbeddingStore;
+import com.yihu.agent.rag.store.ProductQuantizer;
+import com.yihu.agent.rag.store.QuantizationMethod;
+import com.yihu.agent.rag.store.QuantizedEmbeddingStore;
+import com.yihu.agent.rag.store.Quantizer;
+import com.yihu.agent.rag.store.ScalarInt8Quantizer;
+import com.yihu.agent.rag.store.ScannableEmbeddingStore;
+import com.yihu.agent.rag.store.VectorEncoding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.model.scoring.onnx.OnnxScoringModel;
+import dev.langchain4j.rag.DefaultRetrievalAugmentor;
+import dev.langchain4j.rag.RetrievalAugmentor;
+import dev.langchain4j.rag.content.aggregator.ContentAggregator;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.router.DefaultQueryRouter;
+import dev.langchain4j.rag.query.router.QueryRouter;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * 医疗知识库（RAG）配置
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(KnowledgeBaseRoutingProperties.class)
+public class RagConfig {
+
+    @Value("${healthcare.rag.ingest-on-startup:false}")
+    private boolean ingestOnStartup;
+
+    /**
+     * 向量库类型：memory（进程内暴力检索）、hnsw（进程内近似最近邻）、mapped（内存映射文件，重启后直接加载）
+     * quantized（堆内量化字节码扫描 + 内存映射全精度向量重排序）或 pgvector（需启用 healthcare.pgvector.enabled）
+     */
+    @Value("${healthcare.rag.store:memory}")
+    private String storeType;
+
+    @Value("${healthcare.rag.mapped.directory:data/rag/index}")
+    private String mappedDirectory;
+
+    @Value("${healthcare.rag.mapped.encoding:float32}")
+    private String mappedEncoding;
+
+    @Value("${healthcare.rag.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${healthcare.rag.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${healthcare.rag.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${healthcare.rag.hnsw.max-elements:1000000}")
+    private int hnswMaxElements;
+
+    @Value("${healthcare.rag.quantized.method:int8}")
+    private String quantizationMethod;
+
+    @Value("${healthcare.rag.quantized.pq-subspaces:48}")
+    private int pqSubspaces;
+
+    @Value("${healthcare.rag.quantized.pq-iterations:10}")
+    private int pqIterations;
+
+    @Value("${healthcare.rag.quantized.training-size:10000}")
+    private int quantizationTrainingSize;
+
+    @Value("${healthcare.rag.quantized.rerank-factor:4}")
+    private int rerankFactor;
+
+    @Value("${healthcare.rag.retrieval.dense-candidates:10}")
+    private int denseCandidates;
+
+    @Value("${healthcare.rag.retrieval.keyword-candidates:10}")
+    private int keywordCandidates;
+
+    @Value("${healthcare.rag.retrieval.min-score:0.5}")
+    private double denseMinScore;
+
+    @Value("${healthcare.rag.retrieval.max-results:4}")
+    private int retrievalMaxResults;
+
+    @Value("${healthcare.rag.retrieval.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${healthcare.rag.retrieval.timeout:2s}")
+    private Duration retrievalTimeout;
+
+    @Value("${healthcare.rag.rerank.model-path:}")
+    private String rerankModelPath;
+
+    @Value("${healthcare.rag.rerank.tokenizer-path:}")
+    private String rerankTokenizerPath;
+
+    @Value("${healthcare.rag.rerank.max-length:512}")
+    private int rerankMaxLength;
+
+    @Value("${healthcare.rag.rerank.candidates:50}")
+    private int rerankCandidates;
+
+    @Value("${healthcare.rag.rerank.max-results:3}")
+    private int rerankMaxResults;
+
+    @Value("${healthcare.rag.rerank.batch-size:16}")
+    private int rerankBatchSize;
+
+    @Value("${healthcare.rag.rerank.threads:0}")
+    private int rerankThreads;
+
+    @Value("${healthcare.rag.rerank.min-score:0.0}")
+    private double rerankMinScore;
+
+    /**
+     * 医疗文档向量库
+     */
+    @Bean
+    public EmbeddingStore<TextSegment> medicalEmbeddingStore(EmbeddingModel embeddingModel,
+                                                             ObjectProvider<PgVectorStore> pgVectorStore) {
+        if ("pgvector".equalsIgnoreCase(storeType)) {
+            PgVectorStore store = pgVectorStore.getIfAvailable();
+            if (store == null) {
+                throw new IllegalStateException("healthcare.rag.store=pgvector 需要同时设置 healthcare.pgvector.enabled=true");
+            }
+            return store;
+        }
+        if ("mapped".equalsIgnoreCase(storeType)) {
+            return new MappedEmbeddingStore(Path.of(mappedDirectory), embeddingModel.dimension(),
+                    VectorEncoding.valueOf(mappedEncoding.toUpperCase()));
+        }
+        if ("quantized".equalsIgnoreCase(storeType)) {
+            int dimension = embeddingModel.dimension();
+            Quantizer quantizer = QuantizationMethod.valueOf(quantizationMethod.toUpperCase()) == QuantizationMethod.PQ
+                    ? new ProductQuantizer(dimension, pqSubspaces, pqIterations)
+                    : new ScalarInt8Quantizer(dimension);
+            MappedEmbeddingStore full = new MappedEmbeddingStore(Path.of(mappedDirectory), dimension, VectorEncoding.FLOAT32);
+            return new QuantizedEmbeddingStore(full, quantizer, quantizationTrainingSize, rerankFactor);
+        }
+        if ("hnsw".equalsIgnoreCase(storeType)) {
+            return new HnswEmbeddingStore(embeddingModel.dimension(), hnswM, hnswEfConstruction, hnswEfSearch, hnswMaxElements);
+        }
+        return new InMemoryEmbeddingStore<>();
+    }
+
+    /**
+     * 关键词（BM25）索引，与向量库同步写入；持久化向量库在启动时从已有片段重建
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "healthcare.rag.retrieval", name = "hybrid", havingValue = "true", matchIfMissing = true)
+    public Bm25Index medicalKeywordIndex(EmbeddingStore<TextSegment> medicalEmbeddingStore) {
+        Bm25Index index = new Bm25Index();
+        if (medicalEmbeddingStore instanceof ScannableEmbeddingStore scannable) {
+            long start = System.nanoTime();
+            List<String> ids = new ArrayList<>();
+            List<TextSegment> segments = new ArrayList<>();
+            scannable.forEachSegment((id, segment) -> {
+                ids.add(id);
+                segments.add(segment);
+            });
+            index.addAll(ids, segments);
+            log.info("关键词索引重建完成: {} 个片段，耗时 {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return index;
+    }
+
+    /**
+     * 本地交叉编码器打分模型（ONNX），对“查询-片段”逐对打分
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "healthcare.rag.rerank", name = "enabled", havingValue = "true")
+    public ScoringModel rerankScoringModel() throws OrtException {
+        if (!Files.isRegularFile(Path.of(rerankModelPath)) || !Files.isRegularFile(Path.of(rerankTokenizerPath))) {
+            throw new IllegalStateException("重排序模型文件不存在: " + rerankModelPath + ", " + rerankTokenizerPath);
+        }
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        // 并行度由打分线程池按批次提供，单次推理只用一个线程，避免总线程数超出 CPU 核数
+        options.setIntraOpNumThreads(1);
+        return new OnnxScoringModel(rerankModelPath, options, rerankTokenizerPath, rerankMaxLength, true);
+    }
+
+    /**
+     * 重排序打分线程池，按批次并行打分；由 Spring 管理生命周期，应用关闭时随之关闭
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "healthcare.rag.rerank", name = "enabled", havingValue = "true")
+    public MonitoredTaskExecutor rerankTaskExecutor() {
+        int threads = rerankThreads > 0 ? rerankThreads : Runtime.getRuntime().availableProcessors();
+        return new MonitoredTaskExecutor("rerank-", threads, threads, 1000);
+    }
+
+    /**
+     * 重排序聚合器：RRF 融合出 candidates 个候选，本地模型打分后只保留 max-results 个
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "healthcare.rag.rerank", name = "enabled", havingValue = "true")
+    public RerankingContentAggregator medicalRerankingAggregator(
+            ScoringModel rerankScoringModel,
+            @Qualifier("rerankTaskExecutor") MonitoredTaskExecutor rerankTaskExecutor) {
+        return new RerankingContentAggregator(rerankScoringModel,
+                new ReciprocalRankFusionAggregator(rrfK, rerankCandidates),
+                rerankTaskExecutor, rerankBatchSize, rerankMaxResults, rerankMinScore);
+    }
+
+    /**
+     * 检索线程池，执行各检索器的限时检索；由 Spring 管理生命周期，应用关闭时随之关闭
+     */
+    @Bean
+    public MonitoredTaskExecutor retrievalTaskExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new MonitoredTaskExecutor("retrieval-", threads, threads, 1000);
+    }
+
+    /**
+     * 多知识库查询路由器
+     * 每个知识库（文档目录下的子目录）一个按 knowledge_base 元数据过滤的向量检索器，
+     * 按查询与知识库描述的向量相似度只检索相关的知识库，无法判断时检索全部。
+     * 已有索引需重新入库才会带上 knowledge_base 元数据
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "healthcare.rag.routing", name = "enabled", havingValue = "true")
+    public EmbeddingQueryRouter medicalQueryRouter(EmbeddingStore<TextSegment> medicalEmbeddingStore,
+                                                   EmbeddingModel embeddingModel,
+                                                   KnowledgeBaseRoutingProperties routing,
+                                                   ObjectProvider<RerankingContentAggregator> medicalRerankingAggregator,
+                                                   @Qualifier("retrievalTaskExecutor") MonitoredTaskExecutor retrievalTaskExecutor) {
+        if (routing.getKnowledgeBases().size() < 2) {
+            throw new IllegalStateException("healthcare.rag.routing.enabled=true 需要配置至少两个 knowledge-bases");
+        }
+        int maxResults = medicalRerankingAggregator.getIfAvailable() != null ? rerankCandidates : denseCandidates;
+        Map<ContentRetriever, List<String>> retrieverToExamples = new LinkedHashMap<>();
+        routing.getKnowledgeBases().forEach((name, knowledgeBase) -> {
+            List<String> examples = new ArrayList<>();
+            if (knowledgeBase.getDescription() != null && !knowledgeBase.getDescription().isBlank()) {
+                examples.add(knowledgeBase.getDescription());
+            }
+            examples.addAll(knowledgeBase.getExamples());
+            if (examples.isEmpty()) {
+                throw new IllegalStateException("知识库缺少描述或示例问题: " + name);
+            }
+            ContentRetriever retriever = new TimeLimitedContentRetriever("dense-" + name, EmbeddingStoreContentRetriever.builder()
+                    .embeddingStore(medicalEmbeddingStore)
+                    .embeddingModel(embeddingModel)
+                    .maxResults(maxResults)
+                    .minScore(denseMinScore)
+                    .filter(metadataKey(KnowledgeBases.METADATA_KEY).isEqualTo(name))
+                    .build(), retrievalTaskExecutor.getThreadPoolExecutor(), retrievalTimeout);
+            retrieverToExamples.put(retriever, examples);
+        });
+        log.info("多知识库路由已启用: {}", routing.getKnowledgeBases().keySet());
+        return new EmbeddingQueryRouter(embeddingModel, retrieverToExamples, routing.getMinSimilarity(), routing.getMargin());
+    }
+
+    /**
+     * 医疗知识库检索增强器
+     * 启用混合检索时向量检索与 BM25 关键词检索并行执行（多个检索器时 DefaultRetrievalAugmentor 使用线程池），
+     * 再按倒数排名融合，只把前 max-results 个片段放进提示词；未启用时只做向量检索。
+     * 启用多知识库路由时向量检索只查询路由选中的知识库，关键词检索不区分知识库、始终参与。
+     * 启用重排序时各检索器取 rerank.candidates 个候选，融合后由本地模型重排序。
+     * 每个检索器有独立超时，超时的检索器结果被忽略，不拖慢整个请求
+     */
+    @Bean
+    public RetrievalAugmentor medicalRetrievalAugmentor(EmbeddingStore<TextSegment> medicalEmbeddingStore,
+                                                        EmbeddingModel embeddingModel,
+                                                        ObjectProvider<Bm25Index> medicalKeywordIndex,
+                                                        ObjectProvider<RerankingContentAggregator> medicalRerankingAggregator,
+                                                        ObjectProvider<EmbeddingQueryRouter> medicalQueryRouter,
+                                                        @Qualifier("retrievalTaskExecutor") MonitoredTaskExecutor retrievalTaskExecutor) {
+        Bm25Index keywordIndex = medicalKeywordIndex.getIfAvailable();
+        RerankingContentAggregator reranker = medicalRerankingAggregator.getIfAvailable();
+        EmbeddingQueryRouter knowledgeBaseRouter = medicalQueryRouter.getIfAvailable();
+
+        ContentRetriever keyword = keywordIndex == null ? null : new TimeLimitedContentRetriever("bm25",
+                new Bm25ContentRetriever(keywordIndex, reranker != null ? rerankCandidates : keywordCandidates),
+                retrievalTaskExecutor.getThreadPoolExecutor(), retrievalTimeout);
+        QueryRouter router;
+        if (knowledgeBaseRouter != null) {
+            router = keyword == null ? knowledgeBaseRouter : query -> {
+                List<ContentRetriever> retrievers = new ArrayList<>(knowledgeBaseRouter.route(query));
+                retrievers.add(keyword);
+                return retrievers;
+            };
+        } else {
+            ContentRetriever dense = new TimeLimitedContentRetriever("dense", EmbeddingStoreContentRetriever.builder()
+                    .embeddingStore(medicalEmbeddingStore)
+                    .embeddingModel(embeddingModel)
+                    .maxResults(reranker != null ? rerankCandidates : denseCandidates)
+                    .minScore(denseMinScore)
+                    .build(), retrievalTaskExecutor.getThreadPoolExecutor(), retrievalTimeout);
+            router = keyword == null ? new DefaultQueryRouter(dense) : new DefaultQueryRouter(dense, keyword);
+        }
+        ContentAggregator aggregator = reranker != null
+                ? reranker
+                : new ReciprocalRankFusionAggregator(rrfK, retrievalMaxResults);
+        return DefaultRetrievalAugmentor.builder()
+                .queryRouter(router)
+                .contentAggregator(aggregator)
+                .build();
+    }
+
+    /**
+     * 应用就绪后在后台线程入库文档目录，不阻塞启动
+     * 持久化向量库已包含上次的索引，只做增量刷新；进程内向量库走全量并行入库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ingestOnStartup(ApplicationReadyEvent event) {
+        if (!ingestOnStartup) {
+            return;
+        }
+        DocumentIngestionService ingestionService = event.getApplicationContext().getBean(DocumentIngestionService.class);
+        IncrementalIndexer incrementalIndexer = event.getApplicationContext().getBean(IncrementalIndexer.class);
+        boolean persistent = event.getApplicationContext().getBean("medicalEmbeddingStore") instanceof PersistentEmbeddingStore;
+        Thread thread = new Thread(() -> {
+            try {
+                if (persistent) {
+                    incrementalIndexer.refresh();
+                } else {
+                    ingestionService.ingest();
+                }
+            } catch (Exception e) {
+                log.error("启动时文档入库失败: {}", e.getMessage(), e);
+            }
+        }, "ingestion-startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
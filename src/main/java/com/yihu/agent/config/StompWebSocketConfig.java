@@ -1,6 +1,11 @@
 package com.yihu.agent.config;
 
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import com.yihu.agent.metrics.OutboundTrafficInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -13,6 +18,26 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class StompWebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final OutboundTrafficInterceptor outboundTrafficInterceptor = new OutboundTrafficInterceptor();
+
+    @Value("${healthcare.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${healthcare.websocket.inbound.max-pool-size:8}")
+    private int inboundMaxPoolSize;
+
+    @Value("${healthcare.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${healthcare.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${healthcare.websocket.outbound.max-pool-size:8}")
+    private int outboundMaxPoolSize;
+
+    @Value("${healthcare.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
     /**
      * 注册 STOMP 端点
      */
@@ -31,7 +56,54 @@ public class StompWebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         // 设置应用程序消息前缀
         registry.setApplicationDestinationPrefixes("/app");
-        // 启用简单消息代理，支持 /topic 前缀
-        registry.enableSimpleBroker("/topic");
+        // 启用简单消息代理：/topic 用于广播，/queue 用于点对点回复
+        registry.enableSimpleBroker("/topic", "/queue");
+        // 用户目的地前缀：客户端订阅 /user/queue/...，只收到发给自己连接的消息
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    /**
+     * 入站通道线程池：只负责解析和分发消息，耗时的大模型调用交给 aiTaskExecutor，
+     * 因此线程数不需要随并发会话数增长；同时为每个连接分配匿名用户，用于点对点回复
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new AnonymousUserInterceptor());
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    /**
+     * 出站通道线程池：负责向客户端写出消息（包括流式回复分片）
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(outboundTrafficInterceptor);
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    /**
+     * 出站流量统计（消息数、字节数）
+     */
+    @Bean
+    public OutboundTrafficInterceptor outboundTrafficInterceptor() {
+        return outboundTrafficInterceptor;
+    }
+
+    /**
+     * 大模型调用专用线程池
+     * 有界队列提供背压：队列满时拒绝新任务并立即回复“繁忙”，避免慢调用拖垮所有会话
+     */
+    @Bean
+    public MonitoredTaskExecutor aiTaskExecutor(
+            @Value("${healthcare.ai.executor.core-pool-size:16}") int corePoolSize,
+            @Value("${healthcare.ai.executor.max-pool-size:64}") int maxPoolSize,
+            @Value("${healthcare.ai.executor.queue-capacity:200}") int queueCapacity) {
+        return new MonitoredTaskExecutor("ai-", corePoolSize, maxPoolSize, queueCapacity);
     }
 }
@@ -1,12 +1,11 @@
 package com.yihu.agent.controller;
 
-import com.yihu.agent.graph.MedicalConsultationGraph;
+import com.yihu.agent.graph.MedicalConsultationGraphProvider;
 import com.yihu.agent.graph.state.MedicalConsultationState;
-import com.yihu.agent.service.IntentRecognitionService;
 import lombok.extern.slf4j.Slf4j;
-import org.bsc.langgraph4j.CompiledGraph;
-import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.BaseCheckpointSaver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -27,7 +26,7 @@ import java.util.Optional;
 public class MedicalConsultationController {
 
     @Autowired
-    private IntentRecognitionService intentRecognitionService;
+    private MedicalConsultationGraphProvider graphProvider;
 
     /**
      * 测试医疗咨询图
@@ -52,19 +51,21 @@ public class MedicalConsultationController {
         try {
             log.info("开始处理医疗咨询请求，用户输入: {}", userInput);
             
-            // 构建图
-            CompiledGraph<MedicalConsultationState> graph = 
-                    MedicalConsultationGraph.buildGraph(intentRecognitionService);
-            
-            // 执行图
-            Map<String, Object> inputData = Map.of("userInput", userInput);
+            // 执行启动时编译好的共享图；带 conversationId 时按会话保存检查点，
+            // 后续消息从上一轮的状态继续，并从恢复的消息日志整理历史对话
+            Map<String, Object> inputData = new HashMap<>();
+            inputData.put("userInput", userInput);
+            String conversationId = request.get("conversationId");
+            if (conversationId != null && !conversationId.isEmpty()) {
+                inputData.put("conversationId", conversationId);
+            }
             
             // 记录执行过程
             List<String> executedNodes = new ArrayList<>();
             
             // 使用 stream 方式获取执行过程
             Optional<MedicalConsultationState> finalState = Optional.empty();
-            for (NodeOutput<MedicalConsultationState> output : graph.stream(inputData)) {
+            for (NodeOutput<MedicalConsultationState> output : graphProvider.stream(inputData)) {
                 String nodeName = output.node();
                 executedNodes.add(nodeName);
                 log.info("节点执行: {}", nodeName);
@@ -90,11 +91,6 @@ public class MedicalConsultationController {
                 response.put("error", "图执行失败，未返回最终状态");
             }
             
-        } catch (GraphStateException e) {
-            log.error("图构建或执行失败: {}", e.getMessage(), e);
-            response.put("success", false);
-            response.put("error", "图执行异常: " + e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
         } catch (Exception e) {
             log.error("处理医疗咨询请求时发生异常: {}", e.getMessage(), e);
             response.put("success", false);
@@ -105,6 +101,34 @@ public class MedicalConsultationController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 结束会话：删除该会话的图检查点，之后的消息重新识别意图
+     * 
+     * @param conversationId 会话 ID
+     */
+    @DeleteMapping("/conversations/{conversationId}")
+    public ResponseEntity<Map<String, Object>> endConversation(@PathVariable String conversationId) {
+        Map<String, Object> response = new HashMap<>();
+        if (graphProvider.checkpointSaver() == null) {
+            response.put("success", false);
+            response.put("error", "未启用图检查点");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            BaseCheckpointSaver.Tag released = graphProvider.checkpointSaver()
+                    .release(RunnableConfig.builder().threadId(conversationId).build());
+            response.put("success", true);
+            response.put("existed", !released.checkpoints().isEmpty());
+            response.put("checkpoints", released.checkpoints().size());
+        } catch (Exception e) {
+            log.error("删除会话检查点失败: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 获取图结构（Mermaid 格式）
      * 
@@ -125,7 +149,8 @@ public class MedicalConsultationController {
                 "lowRiskMedical"
         });
         response.put("flow", "START -> processUserInput -> intentRecognition -> " +
-                "[generalChat | highRiskMedical | lowRiskMedical] -> END");
+                "[generalChat | highRiskMedical | lowRiskMedical] -> END" +
+                "（带 conversationId 的后续消息可从 processUserInput 直接回到上一轮的医疗分支）");
         response.put("intentTypes", new String[]{
                 "general_chat - 普通对话",
                 "high_risk_medical - 高危医疗",
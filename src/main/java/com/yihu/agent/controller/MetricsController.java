@@ -0,0 +1,176 @@
+package com.yihu.agent.controller;
+
+import com.yihu.agent.graph.MedicalConsultationGraphProvider;
+import com.yihu.agent.memory.ConversationSummarizer;
+import com.yihu.agent.memory.MonitoredChatMemoryStore;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import com.yihu.agent.metrics.OutboundTrafficInterceptor;
+import com.yihu.agent.rag.DocumentIngestionService;
+import com.yihu.agent.rag.retrieval.EmbeddingQueryRouter;
+import com.yihu.agent.rag.retrieval.RerankingContentAggregator;
+import com.yihu.agent.rag.store.QuantizedEmbeddingStore;
+import com.yihu.agent.service.answer.SemanticAnswerCache;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 性能指标控制器
+ * 暴露各优化组件的运行统计，便于观察命中率和节省的耗时
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private IntentPreClassifier intentPreClassifier;
+
+    @Autowired
+    private SemanticIntentCache semanticIntentCache;
+
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Autowired
+    private MonitoredTaskExecutor aiTaskExecutor;
+
+    @Autowired
+    private MedicalConsultationGraphProvider graphProvider;
+
+    @Autowired
+    private WebSocketMessageBrokerStats webSocketMessageBrokerStats;
+
+    @Autowired
+    private OutboundTrafficInterceptor outboundTrafficInterceptor;
+
+    @Autowired
+    private MonitoredChatMemoryStore chatMemoryStore;
+
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    @Autowired
+    private DocumentIngestionService documentIngestionService;
+
+    @Autowired
+    private EmbeddingStore<TextSegment> medicalEmbeddingStore;
+
+    @Autowired(required = false)
+    private RerankingContentAggregator medicalRerankingAggregator;
+
+    @Autowired(required = false)
+    private EmbeddingQueryRouter medicalQueryRouter;
+
+    /**
+     * 意图规则预分类统计（命中率、节省的大模型调用次数和耗时）
+     */
+    @GetMapping("/intent")
+    public ResponseEntity<Map<String, Object>> intentMetrics() {
+        return ResponseEntity.ok(intentPreClassifier.stats());
+    }
+
+    /**
+     * 意图语义缓存统计（命中率、有无缓存时的 p50/p99 延迟）
+     */
+    @GetMapping("/intent-cache")
+    public ResponseEntity<Map<String, Object>> intentCacheMetrics() {
+        return ResponseEntity.ok(semanticIntentCache.stats());
+    }
+
+    /**
+     * 对话回复语义缓存统计（命中率、节省的大模型调用次数、高危跳过次数、有无缓存时的 p50/p99 延迟）
+     */
+    @GetMapping("/answer-cache")
+    public ResponseEntity<Map<String, Object>> answerCacheMetrics() {
+        return ResponseEntity.ok(semanticAnswerCache.stats());
+    }
+
+    /**
+     * 医疗咨询图分支推测统计（推测次数、命中率、每次命中节省的时间）
+     */
+    @GetMapping("/speculation")
+    public ResponseEntity<Map<String, Object>> speculationMetrics() {
+        return ResponseEntity.ok(graphProvider.branchSpeculator().stats());
+    }
+
+    /**
+     * 医疗咨询图检查点统计（会话数、存储占用、平均检查点大小和写入耗时）
+     */
+    @GetMapping("/checkpoints")
+    public ResponseEntity<Map<String, Object>> checkpointMetrics() {
+        if (graphProvider.checkpointSaver() == null) {
+            return ResponseEntity.ok(Map.of("enabled", false));
+        }
+        return ResponseEntity.ok(graphProvider.checkpointSaver().stats());
+    }
+
+    /**
+     * WebSocket 及大模型线程池统计（队列深度、活跃线程、拒绝次数、出站流量）
+     */
+    @GetMapping("/websocket")
+    public ResponseEntity<Map<String, Object>> websocketMetrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("aiExecutor", aiTaskExecutor.stats());
+        response.put("outboundTraffic", outboundTrafficInterceptor.stats());
+        response.put("sessions", sessionStats(webSocketMessageBrokerStats.getWebSocketSessionStats()));
+        response.put("clientInboundExecutor", webSocketMessageBrokerStats.getClientInboundExecutorStatsInfo());
+        response.put("clientOutboundExecutor", webSocketMessageBrokerStats.getClientOutboundExecutorStatsInfo());
+        return ResponseEntity.ok(response);
+    }
+
+    private static Map<String, Object> sessionStats(SubProtocolWebSocketHandler.Stats stats) {
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        if (stats == null) {
+            return sessions;
+        }
+        sessions.put("total", stats.getTotalSessions());
+        sessions.put("webSocket", stats.getWebSocketSessions());
+        sessions.put("httpStreaming", stats.getHttpStreamingSessions());
+        sessions.put("httpPolling", stats.getHttpPollingSessions());
+        sessions.put("limitExceeded", stats.getLimitExceededSessions());
+        sessions.put("noMessagesReceived", stats.getNoMessagesReceivedSessions());
+        sessions.put("transportError", stats.getTransportErrorSessions());
+        return sessions;
+    }
+
+    /**
+     * 会话记忆统计（活跃会话数、占用字节数、单会话平均占用、每次请求的提示词 token 数、摘要情况）
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<Map<String, Object>> memoryMetrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("store", chatMemoryStore.stats());
+        response.put("summary", conversationSummarizer.stats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 最近一次文档入库统计（文档/秒、片段/秒、堆内存峰值）；使用量化存储时附带编码占用和重排参数，
+     * 启用重排序时附带打分统计，启用多知识库路由时附带路由统计
+     */
+    @GetMapping("/rag")
+    public ResponseEntity<Map<String, Object>> ragMetrics() {
+        Map<String, Object> response = new LinkedHashMap<>(RagController.toMap(documentIngestionService.lastReport()));
+        if (medicalEmbeddingStore instanceof QuantizedEmbeddingStore quantized) {
+            response.put("quantization", quantized.stats());
+        }
+        if (medicalRerankingAggregator != null) {
+            response.put("rerank", medicalRerankingAggregator.stats());
+        }
+        if (medicalQueryRouter != null) {
+            response.put("routing", medicalQueryRouter.stats());
+        }
+        return ResponseEntity.ok(response);
+    }
+}
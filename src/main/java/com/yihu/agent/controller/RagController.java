@@ -0,0 +1,145 @@
+package com.yihu.agent.controller;
+
+import com.yihu.agent.rag.DocumentIngestionService;
+import com.yihu.agent.rag.IncrementalIndexer;
+import com.yihu.agent.rag.IngestionReport;
+import com.yihu.agent.service.MedicalKnowledgeAssistant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 医疗知识库控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/rag")
+public class RagController {
+
+    @Autowired
+    private DocumentIngestionService ingestionService;
+
+    @Autowired
+    private IncrementalIndexer incrementalIndexer;
+
+    @Autowired
+    private MedicalKnowledgeAssistant medicalKnowledgeAssistant;
+
+    /**
+     * 基于知识库回答问题
+     *
+     * @param request 包含 question 的请求
+     * @return 回答
+     */
+    @PostMapping("/ask")
+    public ResponseEntity<Map<String, Object>> ask(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        String question = request.getOrDefault("question", "");
+        if (question.isBlank()) {
+            response.put("success", false);
+            response.put("error", "question 不能为空");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            response.put("success", true);
+            response.put("question", question);
+            response.put("answer", medicalKnowledgeAssistant.answer(question));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("知识库问答异常: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("error", "问答异常: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 入库文档目录，未指定 directory 时使用配置的默认目录
+     * 向量库由增量索引器维护时拒绝全量入库（返回 409），应使用 /refresh
+     *
+     * @param request 可选的 directory 参数
+     * @return 入库统计
+     */
+    @PostMapping("/ingest")
+    public ResponseEntity<Map<String, Object>> ingest(@RequestBody(required = false) Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        if (incrementalIndexer.ownsStore()) {
+            response.put("success", false);
+            response.put("error", "向量库由增量索引维护，全量入库会使语料重复，请使用 /api/rag/refresh");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        try {
+            String directory = request == null ? null : request.get("directory");
+            IngestionReport report = directory == null || directory.isBlank()
+                    ? ingestionService.ingest()
+                    : ingestionService.ingest(Path.of(directory));
+            response.put("success", true);
+            response.put("report", toMap(report));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("文档入库异常: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("error", "入库异常: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 增量刷新文档目录：只向量化新增/变化的片段，删除已不存在的片段
+     * 向量库已通过全量入库写入时拒绝刷新（返回 409），全量入库的片段不在清单中
+     *
+     * @param request 可选的 directory 参数：相对文档目录的子目录，只刷新该子目录下的文档
+     * @return 刷新统计
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody(required = false) Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        if (!incrementalIndexer.ownsStore() && ingestionService.lastReport() != null) {
+            response.put("success", false);
+            response.put("error", "向量库已通过全量入库写入，增量刷新会使语料重复");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        try {
+            String directory = request == null ? null : request.get("directory");
+            IncrementalIndexer.RefreshReport report = directory == null || directory.isBlank()
+                    ? incrementalIndexer.refresh()
+                    : incrementalIndexer.refresh(directory);
+            response.put("success", true);
+            response.put("report", report);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            log.error("增量索引异常: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("error", "增量索引异常: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    static Map<String, Object> toMap(IngestionReport report) {
+        Map<String, Object> map = new HashMap<>();
+        if (report == null) {
+            return map;
+        }
+        map.put("documents", report.documents());
+        map.put("segments", report.segments());
+        map.put("failedDocuments", report.failedDocuments());
+        map.put("elapsedMs", report.elapsedMs());
+        map.put("documentsPerSecond", report.documentsPerSecond());
+        map.put("segmentsPerSecond", report.segmentsPerSecond());
+        map.put("peakHeapMb", report.peakHeapBytes() / 1024 / 1024);
+        return map;
+    }
+}
@@ -0,0 +1,233 @@
+package com.yihu.agent.controller;
+
+import com.yihu.agent.dto.NodeProgressEvent;
+import com.yihu.agent.graph.MedicalConsultationGraphProvider;
+import com.yihu.agent.graph.state.IntentType;
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.NodeOutput;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 医疗咨询响应式控制器
+ * 返回 Mono/Flux，请求线程在图开始执行后立即释放；图在有界的大模型线程池上执行。
+ * 图节点中的大模型调用仍是阻塞的，每个在途咨询在执行期间占用一个大模型线程，
+ * 并发上限由该线程池的大小和队列容量决定（线程和队列都满时返回 503），而不是 Web 容器线程数
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/medical-consultation")
+public class ReactiveMedicalConsultationController {
+
+    /**
+     * 分诊节点：该节点完成后路由目标即已确定
+     */
+    private static final String TRIAGE_NODE = "intentRecognition";
+
+    /**
+     * 意图与分支节点的对应关系（与 MedicalConsultationGraph 中的条件边一致）
+     */
+    private static final Map<IntentType, String> BRANCH_BY_INTENT = Map.of(
+            IntentType.GENERAL_CHAT, "generalChat",
+            IntentType.HIGH_RISK_MEDICAL, "highRiskMedical",
+            IntentType.LOW_RISK_MEDICAL, "lowRiskMedical"
+    );
+
+    @Autowired
+    private MedicalConsultationGraphProvider graphProvider;
+
+    @Autowired
+    private MonitoredTaskExecutor aiTaskExecutor;
+
+    /**
+     * 图中的意图识别和回答生成仍是阻塞的大模型调用，整个图在 AI 线程池上执行，一次咨询占用一个线程
+     */
+    private Scheduler graphScheduler;
+
+    @PostConstruct
+    public void init() {
+        graphScheduler = Schedulers.fromExecutorService(aiTaskExecutor.getThreadPoolExecutor(), "medical-graph");
+    }
+
+    /**
+     * 响应式医疗咨询：图执行完成后一次性返回结果
+     *
+     * @param request 包含用户输入的请求
+     * @return 图执行结果
+     */
+    @PostMapping("/reactive")
+    public Mono<ResponseEntity<Map<String, Object>>> consult(@RequestBody Map<String, String> request) {
+        String userInput = request.getOrDefault("userInput", "");
+        if (userInput.isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "userInput 不能为空");
+            return Mono.just(ResponseEntity.badRequest().body(error));
+        }
+
+        List<String> executedNodes = new ArrayList<>();
+        return streamGraph(userInput, request.get("conversationId"))
+                .doOnNext(output -> executedNodes.add(output.node()))
+                .last()
+                .map(output -> {
+                    MedicalConsultationState state = output.state();
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("userInput", userInput);
+                    response.put("intent", state.intent());
+                    response.put("modelResponse", state.modelResponse());
+                    response.put("messages", state.messages());
+                    response.put("executedNodes", executedNodes);
+                    response.put("finalState", state.data());
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    log.error("响应式医疗咨询处理异常: {}", e.getMessage(), e);
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", false);
+                    response.put("error", "处理异常: " + e.getMessage());
+                    HttpStatus status = e instanceof RejectedExecutionException
+                            ? HttpStatus.SERVICE_UNAVAILABLE
+                            : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return Mono.just(ResponseEntity.status(status).body(response));
+                });
+    }
+
+    /**
+     * 医疗咨询进度流（Server-Sent Events）
+     * 每个节点执行完成后立即推送 node 事件（节点名、状态增量、耗时）；
+     * 意图识别完成、路由目标确定时额外推送 triage 事件（意图、是否因风险评分升级、目标分支），
+     * 客户端无需等待分支节点即可展示分诊结果；
+     * 最后推送 done 事件
+     *
+     * @param request 包含用户输入的请求
+     * @return 节点进度事件流
+     */
+    @PostMapping(value = {"/reactive/stream", "/test/stream"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> consultStream(@RequestBody Map<String, String> request) {
+        String userInput = request.getOrDefault("userInput", "");
+        if (userInput.isEmpty()) {
+            return Flux.just(errorEvent("userInput 不能为空"));
+        }
+
+        return Flux.defer(() -> {
+                    // 每个订阅独立的进度上下文
+                    long start = System.nanoTime();
+                    long[] lastNanos = {start};
+                    int[] sequence = {0};
+                    AtomicReference<Map<String, Object>> previous = new AtomicReference<>(Map.of());
+
+                    return streamGraph(userInput, request.get("conversationId")).concatMap(output -> {
+                        long now = System.nanoTime();
+                        Map<String, Object> data = output.state().data();
+                        NodeProgressEvent progress = new NodeProgressEvent(
+                                output.node(),
+                                sequence[0]++,
+                                delta(previous.get(), data),
+                                (now - lastNanos[0]) / 1_000_000,
+                                (now - start) / 1_000_000);
+                        lastNanos[0] = now;
+                        previous.set(data);
+
+                        ServerSentEvent<Object> nodeEvent = ServerSentEvent.<Object>builder()
+                                .event("node")
+                                .id(String.valueOf(progress.getSequence()))
+                                .data(progress)
+                                .build();
+                        if (!TRIAGE_NODE.equals(output.node())) {
+                            return Flux.just(nodeEvent);
+                        }
+                        MedicalConsultationState state = output.state();
+                        Map<String, Object> triage = new HashMap<>();
+                        triage.put("intent", state.intent());
+                        triage.put("escalated", state.escalated());
+                        triage.put("nextNode", BRANCH_BY_INTENT.getOrDefault(state.branchIntent(), ""));
+                        triage.put("totalElapsedMs", progress.getTotalElapsedMs());
+                        return Flux.just(nodeEvent, ServerSentEvent.<Object>builder()
+                                .event("triage")
+                                .data(triage)
+                                .build());
+                    });
+                })
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<Object>builder()
+                        .event("done")
+                        .data(Map.of("success", true))
+                        .build()))
+                .onErrorResume(e -> {
+                    log.error("医疗咨询进度流处理异常: {}", e.getMessage(), e);
+                    return Flux.just(errorEvent("处理异常: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * 计算状态增量：新增或值发生变化的字段；列表字段只保留新追加的元素
+     */
+    private static Map<String, Object> delta(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new HashMap<>();
+        current.forEach((key, value) -> {
+            Object old = previous.get(key);
+            if (value instanceof List<?> list && old instanceof List<?> oldList
+                    && list.size() >= oldList.size()) {
+                if (list.size() > oldList.size()) {
+                    delta.put(key, List.copyOf(list.subList(oldList.size(), list.size())));
+                }
+            } else if (!Objects.equals(old, value)) {
+                delta.put(key, value);
+            }
+        });
+        return delta;
+    }
+
+    /**
+     * 以 Flux 形式执行图：订阅时才开始执行，每个节点输出一个元素
+     *
+     * @param conversationId 会话 ID，可为空；提供时图从该会话的检查点继续，并从恢复的消息日志整理历史对话
+     */
+    private Flux<NodeOutput<MedicalConsultationState>> streamGraph(String userInput, String conversationId) {
+        return Flux.defer(() -> {
+                    log.info("开始处理响应式医疗咨询请求，用户输入: {}", userInput);
+                    Map<String, Object> input = new HashMap<>();
+                    input.put("userInput", userInput);
+                    if (conversationId != null && !conversationId.isEmpty()) {
+                        input.put("conversationId", conversationId);
+                    }
+                    try {
+                        return Flux.fromIterable(graphProvider.stream(input));
+                    } catch (Exception e) {
+                        return Flux.error(e);
+                    }
+                })
+                .subscribeOn(graphScheduler);
+    }
+
+    private static ServerSentEvent<Object> errorEvent(String message) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("success", false);
+        data.put("error", message);
+        return ServerSentEvent.<Object>builder()
+                .event("error")
+                .data(data)
+                .build();
+    }
+}
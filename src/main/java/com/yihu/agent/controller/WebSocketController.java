@@ -1,14 +1,20 @@
 package com.yihu.agent.controller;
 
+import com.yihu.agent.dto.MessageChunkDTO;
 import com.yihu.agent.dto.MessageDTO;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
 import com.yihu.agent.service.AiChatService;
+import com.yihu.agent.service.answer.SemanticAnswerCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
 import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket 消息控制器
@@ -18,37 +24,142 @@ import java.time.LocalDateTime;
 @Controller
 public class WebSocketController {
 
+    private static final String SENDER = "小医AI助手";
+
+    private static final String BUSY_REPLY = "当前咨询人数较多，请稍后再试。🙏";
+
+    /**
+     * 完整回复的推送目的地（用户目的地，客户端订阅 /user/queue/messages）
+     */
+    private static final String MESSAGE_DESTINATION = "/queue/messages";
+
+    /**
+     * 流式回复分片的推送目的地（用户目的地，客户端订阅 /user/queue/stream）
+     */
+    private static final String STREAM_DESTINATION = "/queue/stream";
+
     @Autowired
     private AiChatService aiChatService;
+
+    @Autowired
+    private SemanticAnswerCache answerCache;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MonitoredTaskExecutor aiTaskExecutor;
     
     /**
      * 处理客户端发送的消息并使用 AI 生成回复
+     * 大模型调用在 aiTaskExecutor 上执行，入站通道线程立即返回，不会被慢调用占满；
+     * 回复只投递给发起请求的连接，而不是广播给所有客户端；
+     * 以连接的用户名作为会话 ID，同一连接内的多轮对话共享记忆；
+     * 重复或近似的问题直接返回缓存的回复
      * 
      * @param message 客户端发送的消息对象
-     * @return 返回的消息对象
+     * @param user    当前连接的（匿名）用户
      */
     @MessageMapping("/chat")
-    @SendTo("/topic/messages")
-    public MessageDTO handleMessage(MessageDTO message) {
+    public void handleMessage(MessageDTO message, Principal user) {
         log.info("收到用户消息: {}", message.getContent());
         
-        // 创建服务器回复消息
-        MessageDTO response = new MessageDTO();
-        response.setSender("小医AI助手");
-        response.setTimestamp(LocalDateTime.now());
+        boolean accepted = aiTaskExecutor.tryExecute(() -> {
+            // 创建服务器回复消息
+            MessageDTO response = new MessageDTO();
+            response.setSender(SENDER);
+            
+            try {
+                String question = message.getContent();
+                SemanticAnswerCache.Lookup lookup = answerCache.lookup(user.getName(), question);
+                String aiReply;
+                if (lookup.answer().isPresent()) {
+                    aiReply = lookup.answer().get();
+                    answerCache.remember(user.getName(), question, aiReply);
+                } else {
+                    // 使用 LangChain4j 生成 AI 回复
+                    long start = System.nanoTime();
+                    aiReply = aiChatService.chat(user.getName(), question);
+                    answerCache.complete(lookup, question, aiReply, System.nanoTime() - start);
+                }
+                response.setContent(aiReply);
+                log.info("AI 回复: {}", aiReply);
+            } catch (Exception e) {
+                log.error("AI 对话出错: {}", e.getMessage(), e);
+                // 降级到简单回复
+                response.setContent("抱歉，AI 服务暂时不可用。请稍后再试。😅\n" +
+                        "错误信息: " + e.getMessage());
+            }
+            
+            response.setTimestamp(LocalDateTime.now());
+            messagingTemplate.convertAndSendToUser(user.getName(), MESSAGE_DESTINATION, response);
+        });
         
-        try {
-            // 使用 LangChain4j 生成 AI 回复
-            String aiReply = aiChatService.chat(message.getContent());
-            response.setContent(aiReply);
-            log.info("AI 回复: {}", aiReply);
-        } catch (Exception e) {
-            log.error("AI 对话出错: {}", e.getMessage(), e);
-            // 降级到简单回复
-            response.setContent("抱歉，AI 服务暂时不可用。请稍后再试。😅\n" +
-                    "错误信息: " + e.getMessage());
+        if (!accepted) {
+            log.warn("AI 线程池已满，拒绝消息: {}", message.getContent());
+            messagingTemplate.convertAndSendToUser(user.getName(), MESSAGE_DESTINATION,
+                    new MessageDTO(SENDER, BUSY_REPLY, LocalDateTime.now()));
         }
+    }
+
+    /**
+     * 流式处理客户端消息：模型每生成一段内容就推送一个分片，
+     * 首个分片在首 token 生成后即可到达，而不必等待整段回复生成完毕；
+     * 命中回复缓存时整段回复一次推送
+     * 
+     * @param message 客户端发送的消息对象
+     * @param user    当前连接的（匿名）用户
+     */
+    @MessageMapping("/chat/stream")
+    public void handleStreamMessage(MessageDTO message, Principal user) {
+        log.info("收到用户消息（流式）: {}", message.getContent());
+        
+        String messageId = UUID.randomUUID().toString();
+        AtomicLong sequence = new AtomicLong();
+        
+        // start() 会同步完成请求准备，放到 AI 线程池执行；之后的 token 回调在模型客户端线程上推送
+        boolean accepted = aiTaskExecutor.tryExecute(() -> {
+            try {
+                String question = message.getContent();
+                SemanticAnswerCache.Lookup lookup = answerCache.lookup(user.getName(), question);
+                if (lookup.answer().isPresent()) {
+                    // 缓存命中：整段回复作为一个分片推送
+                    answerCache.remember(user.getName(), question, lookup.answer().get());
+                    sendChunk(user, messageId, sequence.getAndIncrement(), lookup.answer().get(), false, false);
+                    sendChunk(user, messageId, sequence.getAndIncrement(), "", true, false);
+                    return;
+                }
+                long start = System.nanoTime();
+                aiChatService.chatStream(user.getName(), question)
+                        .onPartialResponse(partial ->
+                                sendChunk(user, messageId, sequence.getAndIncrement(), partial, false, false))
+                        .onCompleteResponse(response -> {
+                            answerCache.complete(lookup, question, response.aiMessage().text(),
+                                    System.nanoTime() - start);
+                            sendChunk(user, messageId, sequence.getAndIncrement(), "", true, false);
+                            log.info("AI 流式回复完成，分片数: {}", sequence.get());
+                        })
+                        .onError(error -> {
+                            log.error("AI 流式对话出错: {}", error.getMessage(), error);
+                            sendChunk(user, messageId, sequence.getAndIncrement(),
+                                    "抱歉，AI 服务暂时不可用。请稍后再试。😅", true, true);
+                        })
+                        .start();
+            } catch (Exception e) {
+                log.error("AI 流式对话启动失败: {}", e.getMessage(), e);
+                sendChunk(user, messageId, sequence.getAndIncrement(),
+                        "抱歉，AI 服务暂时不可用。请稍后再试。😅", true, true);
+            }
+        });
         
-        return response;
+        if (!accepted) {
+            log.warn("AI 线程池已满，拒绝流式消息: {}", message.getContent());
+            sendChunk(user, messageId, sequence.getAndIncrement(), BUSY_REPLY, true, true);
+        }
+    }
+
+    private void sendChunk(Principal user, String messageId, long sequence, String content, boolean done, boolean error) {
+        messagingTemplate.convertAndSendToUser(user.getName(), STREAM_DESTINATION,
+                new MessageChunkDTO(messageId, sequence, SENDER, content, done, error, LocalDateTime.now()));
     }
 }
@@ -0,0 +1,53 @@
+package com.yihu.agent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * WebSocket 流式消息分片
+ * 同一条回复的所有分片共享 messageId，按 sequence 递增；
+ * 最后一帧 done 为 true，content 为空（出错时 error 为 true，content 为错误信息）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageChunkDTO {
+
+    /**
+     * 所属回复的唯一标识
+     */
+    private String messageId;
+
+    /**
+     * 分片序号，从 0 开始
+     */
+    private long sequence;
+
+    /**
+     * 发送者
+     */
+    private String sender;
+
+    /**
+     * 增量内容
+     */
+    private String content;
+
+    /**
+     * 是否为最后一帧
+     */
+    private boolean done;
+
+    /**
+     * 是否因出错结束
+     */
+    private boolean error;
+
+    /**
+     * 发送时间
+     */
+    private LocalDateTime timestamp;
+}
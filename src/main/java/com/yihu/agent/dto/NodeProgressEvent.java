@@ -0,0 +1,41 @@
+package com.yihu.agent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 图节点执行进度事件（通过 Server-Sent Events 推送）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NodeProgressEvent {
+
+    /**
+     * 刚执行完成的节点名称
+     */
+    private String node;
+
+    /**
+     * 事件序号，从 0 开始
+     */
+    private int sequence;
+
+    /**
+     * 本节点产生的状态变化（只包含新增或变更的字段，messages 只包含新追加的消息）
+     */
+    private Map<String, Object> delta;
+
+    /**
+     * 本节点耗时（毫秒）
+     */
+    private long nodeElapsedMs;
+
+    /**
+     * 从开始执行到本节点完成的总耗时（毫秒）
+     */
+    private long totalElapsedMs;
+}
@@ -0,0 +1,200 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 分支推测执行器
+ * 意图识别需要调用大模型时，按规则预分类的猜测在独立线程池上提前生成最可能分支的回答，
+ * 与意图识别并行；识别结果与猜测一致时分支节点直接取用，省去一次串行的大模型往返，
+ * 不一致时取消并丢弃推测结果。同一次图执行的节点之间通过 requestId 关联。
+ * 注意：取消（Future.cancel(true)）只中断推测线程，阻塞中的 OpenAI HTTP 调用不响应中断，会继续执行到返回，
+ * 因此被丢弃的推测仍然消耗一次完整的大模型调用（token 费用和推测线程），只是结果不再使用
+ */
+@Slf4j
+public class BranchSpeculator {
+
+    /**
+     * 未被取用的推测结果的最长保留时间，防止图执行异常中断时泄漏
+     */
+    private static final long MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private record Speculation(String branch, Future<String> answer, long startNanos) {
+    }
+
+    private final Map<String, Function<String, String>> generators;
+    private final IntentPreClassifier preClassifier;
+    private final ExecutorService executor;
+    private final double minConfidence;
+    private final boolean speculate;
+
+    private final Map<String, Speculation> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overlapNanos = new LongAdder();
+
+    /**
+     * @param generators    分支名（意图）到回答生成函数的映射，输入为用户问题；没有生成函数的分支不推测
+     * @param preClassifier 用于猜测意图的规则预分类器
+     * @param executor      推测执行线程池，满时放弃推测
+     * @param minConfidence 猜测的最小置信度，低于该值不推测，避免浪费大模型调用
+     * @param speculate     是否启用推测；关闭时分支节点仍按需生成回答
+     */
+    public BranchSpeculator(Map<String, Function<String, String>> generators,
+                            IntentPreClassifier preClassifier,
+                            ExecutorService executor,
+                            double minConfidence,
+                            boolean speculate) {
+        this.generators = Map.copyOf(generators);
+        this.preClassifier = preClassifier;
+        this.executor = executor;
+        this.minConfidence = minConfidence;
+        this.speculate = speculate;
+    }
+
+    /**
+     * 该分支是否由大模型生成回答
+     */
+    public boolean generates(String branch) {
+        return generators.containsKey(branch);
+    }
+
+    /**
+     * 在意图识别调用大模型之前调用：猜测意图，并提前开始生成该分支的回答
+     */
+    public void start(String requestId, String userInput) {
+        start(requestId, userInput, null);
+    }
+
+    /**
+     * 同 {@link #start(String, String)}，用调用方提供的生成函数（如先检索指南再带上下文回答）代替分支配置的生成函数；
+     * 仍只推测配置了生成函数的分支
+     *
+     * @param generator 输入为用户问题的生成函数，为 null 时使用分支配置的生成函数
+     */
+    public void start(String requestId, String userInput, Function<String, String> generator) {
+        if (!speculate || requestId == null || requestId.isEmpty() || userInput == null || userInput.isBlank()) {
+            return;
+        }
+        purgeStale();
+        IntentPreClassifier.IntentPrediction guess = preClassifier.score(userInput.trim());
+        Function<String, String> configured = generators.get(guess.intent());
+        if (configured == null || guess.confidence() < minConfidence) {
+            return;
+        }
+        Function<String, String> task = generator == null ? configured : generator;
+        try {
+            Future<String> answer = executor.submit(() -> task.apply(userInput));
+            inFlight.put(requestId, new Speculation(guess.intent(), answer, System.nanoTime()));
+            started.increment();
+            log.debug("推测执行分支 {}（置信度 {}）", guess.intent(), guess.confidence());
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    /**
+     * 意图识别完成后调用：猜测错误时取消推测
+     */
+    public void resolve(String requestId, String intent) {
+        Speculation speculation = requestId == null ? null : inFlight.get(requestId);
+        if (speculation == null) {
+            return;
+        }
+        if (speculation.branch().equals(intent)) {
+            hits.increment();
+            overlapNanos.add(System.nanoTime() - speculation.startNanos());
+            return;
+        }
+        inFlight.remove(requestId);
+        speculation.answer().cancel(true);
+        discarded.increment();
+        log.debug("推测分支 {} 与识别结果 {} 不一致，已取消", speculation.branch(), intent);
+    }
+
+    /**
+     * 分支节点调用：取用推测结果，没有可用的推测结果时直接生成
+     */
+    public String answer(String requestId, String branch, String userInput) throws InterruptedException {
+        return answer(requestId, branch, userInput, null);
+    }
+
+    /**
+     * 同 {@link #answer(String, String, String)}，没有可用的推测结果时用调用方提供的生成函数生成
+     *
+     * @param generator 输入为用户问题的生成函数，为 null 时使用分支配置的生成函数
+     */
+    public String answer(String requestId, String branch, String userInput,
+                         Function<String, String> generator) throws InterruptedException {
+        Speculation speculation = requestId == null ? null : inFlight.remove(requestId);
+        if (speculation != null) {
+            if (speculation.branch().equals(branch)) {
+                try {
+                    return speculation.answer().get();
+                } catch (ExecutionException e) {
+                    log.warn("推测生成失败，重新生成: {}", e.getCause().getMessage());
+                }
+            } else {
+                speculation.answer().cancel(true);
+            }
+        }
+        return (generator == null ? generators.get(branch) : generator).apply(userInput);
+    }
+
+    /**
+     * 分支节点不使用推测结果时调用（如改用带上下文的回答）：取消并丢弃本次执行的推测
+     */
+    public void discard(String requestId) {
+        Speculation speculation = requestId == null ? null : inFlight.remove(requestId);
+        if (speculation != null) {
+            speculation.answer().cancel(true);
+            discarded.increment();
+        }
+    }
+
+    private void purgeStale() {
+        long now = System.nanoTime();
+        inFlight.entrySet().removeIf(entry -> {
+            if (now - entry.getValue().startNanos() < MAX_AGE_NANOS) {
+                return false;
+            }
+            entry.getValue().answer().cancel(true);
+            return true;
+        });
+    }
+
+    /**
+     * 推测统计：命中率和与意图识别重叠的平均时长（即每次命中节省的时间）。
+     * discarded 是猜错后取消的推测，取消不会停止已发出的大模型调用，每一次都是一次白白消耗的调用
+     */
+    public Map<String, Object> stats() {
+        long speculations = started.sum();
+        long hitCount = hits.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", speculate);
+        stats.put("branches", generators.keySet());
+        stats.put("minConfidence", minConfidence);
+        stats.put("started", speculations);
+        stats.put("hits", hitCount);
+        stats.put("discarded", discarded.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("inFlight", inFlight.size());
+        stats.put("hitRate", speculations == 0 ? 0 : (double) hitCount / speculations);
+        stats.put("avgSavedMs", hitCount == 0 ? 0 : overlapNanos.sum() / 1_000_000.0 / hitCount);
+        return stats;
+    }
+}
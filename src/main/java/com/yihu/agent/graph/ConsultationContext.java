@@ -0,0 +1,47 @@
+package com.yihu.agent.graph;
+
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 医疗咨询的上下文来源
+ * 提供时，意图识别节点与指南检索、风险评分、历史对话整理并行执行（见 {@link ParallelNodeAction}）；
+ * 风险评分达到 riskEscalationThreshold 时路由到高危医疗分支，指南片段和历史对话交给 answerer 生成分支回答。
+ * 历史对话取自状态中的消息日志，即带 conversationId 的请求从检查点恢复的之前各轮
+ *
+ * @param guidelineRetriever      指南片段检索器，为 null 时不检索
+ * @param historyMessages         最多取最近几条历史消息，为 0 时不整理历史对话
+ * @param riskEscalationThreshold 规则风险评分达到该值时，无论识别出的意图如何都进入高危医疗分支
+ * @param answerer                带上下文的回答生成函数，为 null 时分支回答不使用收集到的上下文
+ * @param executor                并行执行子节点的线程池
+ */
+public record ConsultationContext(ContentRetriever guidelineRetriever,
+                                  int historyMessages,
+                                  double riskEscalationThreshold,
+                                  ContextualAnswerer answerer,
+                                  Executor executor) {
+
+    public static final double DEFAULT_RISK_ESCALATION_THRESHOLD = 0.8;
+
+    public ConsultationContext(ContentRetriever guidelineRetriever,
+                               int historyMessages,
+                               Executor executor) {
+        this(guidelineRetriever, historyMessages, DEFAULT_RISK_ESCALATION_THRESHOLD, null, executor);
+    }
+
+    /**
+     * 带上下文的回答生成函数
+     */
+    @FunctionalInterface
+    public interface ContextualAnswerer {
+
+        /**
+         * @param question   用户问题
+         * @param guidelines 检索到的指南片段
+         * @param history    最近的历史对话（“用户: …”“助手: …”）
+         */
+        String answer(String question, List<String> guidelines, List<String> history);
+    }
+}
@@ -1,7 +1,12 @@
 package com.yihu.agent.graph;
 
+import com.yihu.agent.graph.state.IntentType;
 import com.yihu.agent.graph.state.MedicalConsultationState;
 import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.StateGraph;
@@ -9,8 +14,15 @@ import org.bsc.langgraph4j.action.AsyncCommandAction;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.action.Command;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.bsc.langgraph4j.StateGraph.END;
@@ -22,6 +34,48 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MedicalConsultationGraph {
 
+    /**
+     * 意图识别节点写入消息日志的记录前缀，整理历史对话时跳过这些记录
+     */
+    static final String INTENT_LOG_PREFIX = "意图识别完成";
+
+    /**
+     * 意图识别结果的来源，各来源、各意图的状态增量是固定的，预先构建避免每次执行分配
+     */
+    private enum IntentSource {
+        RULE("（规则）"),
+        CACHE("（缓存）"),
+        MODEL(""),
+        FALLBACK("（降级）");
+
+        private final Map<IntentType, Map<String, Object>> updates = new EnumMap<>(IntentType.class);
+
+        IntentSource(String label) {
+            for (IntentType intent : IntentType.values()) {
+                updates.put(intent, Map.of(
+                        "intent", intent,
+                        "messages", INTENT_LOG_PREFIX + label + ": " + intent.key()));
+            }
+        }
+
+        Map<String, Object> update(IntentType intent) {
+            return updates.get(intent);
+        }
+    }
+
+    /**
+     * 各意图的路由命令，同样预先构建
+     */
+    private static final Map<IntentType, Command> ROUTES = new EnumMap<>(IntentType.class);
+
+    static {
+        for (IntentType intent : IntentType.values()) {
+            ROUTES.put(intent, new Command(intent.key()));
+        }
+    }
+
+    private static final Command RECOGNIZE_INTENT = new Command("intentRecognition");
+
 
     /**
      * 处理用户输入节点
@@ -31,44 +85,108 @@ public class MedicalConsultationGraph {
         String userInput = state.userInput();
         System.out.println("用户输入: " + userInput);
         
-        // 将用户输入添加到消息列表
+        // 将用户输入添加到消息列表；为本次执行分配 requestId（从检查点继续的会话也要重新分配），
+        // 并清空上一轮收集的上下文，避免从检查点继续时分支使用上一轮的指南片段和风险评分
         return Map.of(
-                "userInput", userInput,
-                "messages", userInput
+                "messages", userInput,
+                "requestId", UUID.randomUUID().toString(),
+                "guidelines", List.of(),
+                "riskScore", 0.0,
+                "history", List.of(),
+                "escalated", false
         );
     });
 
     /**
      * 创建意图识别节点：使用 AiService 识别用户意图（普通对话、高危医疗、非高危医疗）
+     * 依次尝试规则预分类、语义缓存，都未命中时才调用大模型
+     * 
+     * 需要调用大模型时，推测执行器同时开始生成最可能分支的回答
+     * 
+     * @param preClassifier 规则预分类器，置信度足够高时跳过大模型调用；为 null 时不启用
+     * @param intentCache   意图语义缓存，近似输入复用之前的识别结果；为 null 时不启用
+     * @param speculator    分支推测执行器；为 null 时不启用
      */
-    static AsyncNodeAction<MedicalConsultationState> createIntentRecognitionNode(IntentRecognitionService intentService) {
+    static AsyncNodeAction<MedicalConsultationState> createIntentRecognitionNode(IntentRecognitionService intentService,
+                                                                               IntentPreClassifier preClassifier,
+                                                                               SemanticIntentCache intentCache,
+                                                                               BranchSpeculator speculator) {
+        return createIntentRecognitionNode(intentService, preClassifier, intentCache, speculator, null);
+    }
+
+    /**
+     * 同上；提供了带上下文的回答生成函数时，推测任务自行检索指南片段、从消息日志整理历史对话后生成回答，
+     * 与并行的上下文收集子节点得到的是同样的上下文，分支节点可以直接取用推测结果
+     *
+     * @param context 上下文来源，可为 null
+     */
+    static AsyncNodeAction<MedicalConsultationState> createIntentRecognitionNode(IntentRecognitionService intentService,
+                                                                               IntentPreClassifier preClassifier,
+                                                                               SemanticIntentCache intentCache,
+                                                                               BranchSpeculator speculator,
+                                                                               ConsultationContext context) {
         return node_async(state -> {
-            System.out.println("🔍 意图识别节点执行中（使用大模型）...");
             String userInput = state.userInput();
             
+            if (preClassifier != null) {
+                Optional<IntentPreClassifier.IntentPrediction> prediction = preClassifier.classify(userInput);
+                if (prediction.isPresent()) {
+                    IntentType intent = IntentType.fromKey(prediction.get().intent());
+                    System.out.println("⚡ 规则预分类命中，跳过大模型，意图: " + intent.key());
+                    return IntentSource.RULE.update(intent);
+                }
+            }
+            
+            SemanticIntentCache.Lookup lookup = null;
+            if (intentCache != null && intentCache.isEnabled()) {
+                try {
+                    lookup = intentCache.lookup(userInput);
+                    if (lookup.intent().isPresent()) {
+                        IntentType intent = IntentType.fromKey(lookup.intent().get());
+                        System.out.println("📦 意图缓存命中，跳过大模型，意图: " + intent.key());
+                        return IntentSource.CACHE.update(intent);
+                    }
+                } catch (Exception e) {
+                    // 缓存不可用时不影响主流程
+                    log.warn("意图缓存查询失败: {}", e.getMessage());
+                    lookup = null;
+                }
+            }
+            
+            System.out.println("🔍 意图识别节点执行中（使用大模型）...");
+            if (speculator != null) {
+                speculator.start(state.requestId(), userInput, speculativeGenerator(context, state));
+            }
             try {
                 // 使用 AiService 进行意图识别
-                String intent = intentService.recognizeIntent(userInput);
+                long start = System.nanoTime();
+                String response = intentService.recognizeIntent(userInput);
+                long elapsed = System.nanoTime() - start;
+                if (preClassifier != null) {
+                    preClassifier.recordModelCall(elapsed);
+                }
                 
                 // 清理响应，提取意图类型（确保返回标准格式）
-                intent = extractIntent(intent);
+                IntentType intent = extractIntent(response);
+                if (lookup != null) {
+                    intentCache.complete(lookup, userInput, intent.key(), elapsed);
+                }
                 
-                System.out.println("✅ 大模型识别到的意图: " + intent);
+                if (speculator != null) {
+                    speculator.resolve(state.requestId(), intent.key());
+                }
                 
-                Map<String, Object> result = new HashMap<>();
-                result.put("intent", intent);
-                result.put("messages", "意图识别完成: " + intent);
-                return result;
+                System.out.println("✅ 大模型识别到的意图: " + intent.key());
+                return IntentSource.MODEL.update(intent);
             } catch (Exception e) {
                 log.error("大模型意图识别失败: {}", e.getMessage(), e);
                 // 降级到默认意图：普通对话
-                String intent = "general_chat";
-                System.out.println("⚠️ 大模型调用失败，使用默认意图: " + intent);
-                
-                Map<String, Object> result = new HashMap<>();
-                result.put("intent", intent);
-                result.put("messages", "意图识别完成（降级）: " + intent);
-                return result;
+                IntentType intent = IntentType.GENERAL_CHAT;
+                if (speculator != null) {
+                    speculator.resolve(state.requestId(), intent.key());
+                }
+                System.out.println("⚠️ 大模型调用失败，使用默认意图: " + intent.key());
+                return IntentSource.FALLBACK.update(intent);
             }
         });
     }
@@ -76,9 +194,9 @@ public class MedicalConsultationGraph {
     /**
      * 从大模型响应中提取意图类型（确保返回标准格式）
      */
-    private static String extractIntent(String response) {
+    private static IntentType extractIntent(String response) {
         if (response == null || response.isEmpty()) {
-            return "general_chat";
+            return IntentType.GENERAL_CHAT;
         }
         
         String lowerResponse = response.toLowerCase().trim();
@@ -87,16 +205,16 @@ public class MedicalConsultationGraph {
         if (lowerResponse.contains("high_risk_medical") || 
             lowerResponse.contains("highriskmedical") ||
             lowerResponse.contains("高危医疗")) {
-            return "high_risk_medical";
+            return IntentType.HIGH_RISK_MEDICAL;
         } else if (lowerResponse.contains("low_risk_medical") || 
                    lowerResponse.contains("lowriskmedical") ||
                    lowerResponse.contains("非高危医疗") ||
                    lowerResponse.contains("一般医疗")) {
-            return "low_risk_medical";
+            return IntentType.LOW_RISK_MEDICAL;
         } else if (lowerResponse.contains("general_chat") || 
                    lowerResponse.contains("generalchat") ||
                    lowerResponse.contains("普通对话")) {
-            return "general_chat";
+            return IntentType.GENERAL_CHAT;
         }
         
         // 如果没有明确匹配，尝试通过关键词判断
@@ -104,16 +222,38 @@ public class MedicalConsultationGraph {
             lowerResponse.contains("昏迷") || lowerResponse.contains("大出血") ||
             lowerResponse.contains("心脏") || lowerResponse.contains("猝死") ||
             lowerResponse.contains("急性") || lowerResponse.contains("紧急")) {
-            return "high_risk_medical";
+            return IntentType.HIGH_RISK_MEDICAL;
         } else if (lowerResponse.contains("感冒") || lowerResponse.contains("头疼") || 
                    lowerResponse.contains("咳嗽") || lowerResponse.contains("发烧") ||
                    lowerResponse.contains("症状") || lowerResponse.contains("咨询") ||
                    lowerResponse.contains("治疗") || lowerResponse.contains("药")) {
-            return "low_risk_medical";
+            return IntentType.LOW_RISK_MEDICAL;
         }
         
         // 默认返回普通对话
-        return "general_chat";
+        return IntentType.GENERAL_CHAT;
+    }
+
+    /**
+     * 固定回复（常量拼接在编译期完成），对应的状态增量预先构建
+     */
+    private static final Map<String, Object> GENERAL_CHAT_REPLY = cannedReply(
+            "您好！我是医疗咨询助手，很高兴为您服务。如果您有医疗相关问题，请告诉我。");
+    private static final Map<String, Object> HIGH_RISK_MEDICAL_REPLY = cannedReply(
+            "⚠️ 紧急提醒：根据您描述的症状，可能存在紧急医疗情况。\n" +
+            "建议您：\n" +
+            "1. 立即拨打120急救电话\n" +
+            "2. 或尽快前往最近的医院急诊科\n" +
+            "3. 不要延误，及时就医非常重要");
+    private static final Map<String, Object> LOW_RISK_MEDICAL_REPLY = cannedReply(
+            "根据您描述的症状，建议您：\n" +
+            "1. 注意休息，多喝水\n" +
+            "2. 观察症状变化\n" +
+            "3. 如症状持续或加重，请及时就医\n" +
+            "4. 可以咨询专业医生获取更详细的建议");
+
+    private static Map<String, Object> cannedReply(String response) {
+        return Map.of("modelResponse", response, "messages", response);
     }
 
     /**
@@ -121,12 +261,7 @@ public class MedicalConsultationGraph {
      */
     static AsyncNodeAction<MedicalConsultationState> generalChatNode = node_async(state -> {
         System.out.println("💬 普通对话节点执行中...");
-        String response = "您好！我是医疗咨询助手，很高兴为您服务。如果您有医疗相关问题，请告诉我。";
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("modelResponse", response);
-        result.put("messages", response);
-        return result;
+        return GENERAL_CHAT_REPLY;
     });
 
     /**
@@ -134,16 +269,7 @@ public class MedicalConsultationGraph {
      */
     static AsyncNodeAction<MedicalConsultationState> highRiskMedicalNode = node_async(state -> {
         System.out.println("⚠️ 高危医疗节点执行中...");
-        String response = "⚠️ 紧急提醒：根据您描述的症状，可能存在紧急医疗情况。\n" +
-                         "建议您：\n" +
-                         "1. 立即拨打120急救电话\n" +
-                         "2. 或尽快前往最近的医院急诊科\n" +
-                         "3. 不要延误，及时就医非常重要";
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("modelResponse", response);
-        result.put("messages", response);
-        return result;
+        return HIGH_RISK_MEDICAL_REPLY;
     });
 
     /**
@@ -151,32 +277,206 @@ public class MedicalConsultationGraph {
      */
     static AsyncNodeAction<MedicalConsultationState> lowRiskMedicalNode = node_async(state -> {
         System.out.println("🏥 非高危医疗节点执行中...");
-        String response = "根据您描述的症状，建议您：\n" +
-                         "1. 注意休息，多喝水\n" +
-                         "2. 观察症状变化\n" +
-                         "3. 如症状持续或加重，请及时就医\n" +
-                         "4. 可以咨询专业医生获取更详细的建议";
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("modelResponse", response);
-        result.put("messages", response);
-        return result;
+        return LOW_RISK_MEDICAL_REPLY;
     });
 
     /**
-     * 条件路由函数：根据意图路由到不同的分支
+     * 推测执行用的生成函数：没有带上下文的 answerer 时返回 null（使用分支配置的生成函数）
      */
-    static AsyncCommandAction<MedicalConsultationState> routeByIntent = (state, config) -> {
-        String intent = state.intent();
-        System.out.println("🔀 路由决策，当前意图: " + intent);
-        
-        if (intent.isEmpty()) {
-            throw new IllegalStateException("意图未识别");
+    private static Function<String, String> speculativeGenerator(ConsultationContext context,
+                                                                 MedicalConsultationState state) {
+        if (context == null || context.answerer() == null) {
+            return null;
         }
-        
-        // 返回 Command，gotoNode 必须是 mappings 中的 key
-        return completedFuture(new Command(intent));
-    };
+        List<String> history = recentHistory(state.messages(), context.historyMessages());
+        return question -> context.answerer().answer(question,
+                retrieveGuidelines(context.guidelineRetriever(), question), history);
+    }
+
+    private static List<String> retrieveGuidelines(ContentRetriever retriever, String question) {
+        if (retriever == null) {
+            return List.of();
+        }
+        return retriever.retrieve(Query.from(question)).stream()
+                .map(content -> content.textSegment().text())
+                .toList();
+    }
+
+    /**
+     * 创建指南检索节点：按用户输入检索知识库片段，检索失败时不写入
+     */
+    static AsyncNodeAction<MedicalConsultationState> createGuidelineRetrievalNode(ContentRetriever retriever) {
+        return node_async(state -> {
+            try {
+                return Map.of("guidelines", retrieveGuidelines(retriever, state.userInput()));
+            } catch (Exception e) {
+                log.warn("指南检索失败: {}", e.getMessage());
+                return Map.of();
+            }
+        });
+    }
+
+    /**
+     * 创建风险评分节点：按高危关键词给出 0-1 的规则风险评分
+     */
+    static AsyncNodeAction<MedicalConsultationState> createRiskScoringNode(IntentPreClassifier preClassifier) {
+        return node_async(state -> Map.of("riskScore", preClassifier.riskScore(state.userInput().trim())));
+    }
+
+    /**
+     * 创建历史对话节点：从状态中的消息日志整理最近的历史对话。
+     * 带 conversationId 的请求从检查点恢复了之前各轮的消息日志；没有检查点时日志中只有本轮输入，历史为空
+     */
+    static AsyncNodeAction<MedicalConsultationState> createHistoryNode(int maxMessages) {
+        return node_async(state -> {
+            List<String> history = recentHistory(state.messages(), maxMessages);
+            return history.isEmpty() ? Map.of() : Map.of("history", history);
+        });
+    }
+
+    /**
+     * 消息日志中每轮依次是用户输入、意图识别记录（跳过意图识别的轮次没有）、分支回复；
+     * 去掉最后一条（本轮输入）和意图识别记录后，用户输入和回复交替出现。
+     * 最多取最近 maxMessages 条，并从用户输入开始
+     */
+    static List<String> recentHistory(List<String> messages, int maxMessages) {
+        List<String> dialogue = new ArrayList<>();
+        for (String message : messages.subList(0, Math.max(0, messages.size() - 1))) {
+            if (!message.startsWith(INTENT_LOG_PREFIX)) {
+                dialogue.add(message);
+            }
+        }
+        int start = Math.max(0, dialogue.size() - maxMessages);
+        start += start % 2;
+        List<String> history = new ArrayList<>();
+        for (int i = start; i < dialogue.size(); i++) {
+            history.add((i % 2 == 0 ? "用户: " : "助手: ") + dialogue.get(i));
+        }
+        return history;
+    }
+
+    /**
+     * 意图识别阶段：提供上下文来源时，意图识别与指南检索、风险评分、历史对话整理并行执行，
+     * 节点耗时约等于其中最慢的一个（通常是意图识别的大模型调用）。
+     * 风险评分达到阈值而识别出的意图不是高危医疗时，在状态中标记 escalated，由路由进入高危医疗分支
+     */
+    static AsyncNodeAction<MedicalConsultationState> createIntentStage(AsyncNodeAction<MedicalConsultationState> intentNode,
+                                                                     IntentPreClassifier preClassifier,
+                                                                     ConsultationContext context) {
+        if (context == null) {
+            return intentNode;
+        }
+        Map<String, AsyncNodeAction<MedicalConsultationState>> branches = new LinkedHashMap<>();
+        branches.put("intent", intentNode);
+        if (context.guidelineRetriever() != null) {
+            branches.put("guidelines", createGuidelineRetrievalNode(context.guidelineRetriever()));
+        }
+        if (preClassifier != null) {
+            branches.put("risk", createRiskScoringNode(preClassifier));
+        }
+        if (context.historyMessages() > 0) {
+            branches.put("history", createHistoryNode(context.historyMessages()));
+        }
+        ParallelNodeAction<MedicalConsultationState> stage =
+                new ParallelNodeAction<>(branches, MedicalConsultationState.SCHEMA, context.executor());
+        if (preClassifier == null) {
+            return stage;
+        }
+        double threshold = context.riskEscalationThreshold();
+        return state -> stage.apply(state).thenApply(update -> markEscalation(update, threshold));
+    }
+
+    private static Map<String, Object> markEscalation(Map<String, Object> update, double threshold) {
+        if (update.get("intent") instanceof IntentType intent && intent != IntentType.HIGH_RISK_MEDICAL
+                && update.get("riskScore") instanceof Double score && score >= threshold) {
+            System.out.println("🚨 风险评分 " + score + " 达到阈值，升级到高危医疗分支");
+            Map<String, Object> escalated = new HashMap<>(update);
+            escalated.put("escalated", true);
+            return escalated;
+        }
+        return update;
+    }
+
+    /**
+     * 创建分支节点：推测执行器为该分支配置了回答生成函数时，由大模型生成回答，
+     * 生成失败时退回固定回复；否则直接使用固定回复节点。
+     * 优先取用推测结果；没有可用的推测结果时，意图识别阶段收集到指南片段或历史对话且提供了 answerer 时用它们生成回答，
+     * 否则用分支配置的生成函数
+     * 
+     * @param branch     分支对应的意图
+     * @param cannedNode 固定回复节点
+     * @param speculator 分支推测执行器，可为 null
+     * @param answerer   带上下文的回答生成函数，可为 null
+     */
+    static AsyncNodeAction<MedicalConsultationState> createAnswerNode(String branch,
+                                                                    AsyncNodeAction<MedicalConsultationState> cannedNode,
+                                                                    BranchSpeculator speculator,
+                                                                    ConsultationContext.ContextualAnswerer answerer) {
+        if (speculator == null || !speculator.generates(branch)) {
+            return cannedNode;
+        }
+        return node_async(state -> {
+            System.out.println("🤖 分支 " + branch + " 生成回答中...");
+            try {
+                Function<String, String> generator = null;
+                if (answerer != null && (!state.guidelines().isEmpty() || !state.history().isEmpty())) {
+                    generator = question -> answerer.answer(question, state.guidelines(), state.history());
+                }
+                String response = speculator.answer(state.requestId(), branch, state.userInput(), generator);
+                return Map.of("modelResponse", response, "messages", response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (Exception e) {
+                log.warn("分支 {} 生成回答失败，使用固定回复: {}", branch, e.getMessage());
+                return cannedNode.apply(state).join();
+            }
+        });
+    }
+
+    /**
+     * 创建入口路由：从检查点继续的会话（状态中已有上一轮识别出的医疗意图）直接回到上次所在的分支，
+     * 跳过意图识别；没有检查点、上一轮是普通对话，或新消息出现高危关键词、
+     * 规则预分类确定属于其他意图时，重新识别意图
+     */
+    static AsyncCommandAction<MedicalConsultationState> createEntryRoute(IntentPreClassifier preClassifier) {
+        return (state, config) -> {
+            IntentType previous = state.intentType();
+            if (previous == IntentType.UNKNOWN || previous == IntentType.GENERAL_CHAT) {
+                return completedFuture(RECOGNIZE_INTENT);
+            }
+            if (preClassifier != null) {
+                String userInput = state.userInput().trim();
+                IntentPreClassifier.IntentPrediction prediction = preClassifier.score(userInput);
+                boolean escalated = previous != IntentType.HIGH_RISK_MEDICAL && preClassifier.riskScore(userInput) > 0;
+                boolean changed = prediction.confidence() >= preClassifier.threshold()
+                        && IntentType.fromKey(prediction.intent()) != previous;
+                if (escalated || changed) {
+                    return completedFuture(RECOGNIZE_INTENT);
+                }
+            }
+            System.out.println("⏩ 从检查点继续，沿用意图: " + previous.key());
+            return completedFuture(ROUTES.get(previous));
+        };
+    }
+
+    /**
+     * 创建条件路由函数：根据意图路由到不同的分支；
+     * 意图识别阶段标记了风险升级（escalated）时，即使识别为其他意图也进入高危医疗分支（意图字段保持不变）
+     */
+    static AsyncCommandAction<MedicalConsultationState> createIntentRoute() {
+        return (state, config) -> {
+            IntentType intent = state.intentType();
+            System.out.println("🔀 路由决策，当前意图: " + intent.key() + (state.escalated() ? "（风险升级）" : ""));
+            
+            if (intent == IntentType.UNKNOWN) {
+                throw new IllegalStateException("意图未识别");
+            }
+            
+            // 返回 Command，gotoNode 必须是 mappings 中的 key
+            return completedFuture(ROUTES.get(state.branchIntent()));
+        };
+    }
     
     /**
      * 构建医疗咨询图（使用大模型进行意图识别）
@@ -184,33 +484,108 @@ public class MedicalConsultationGraph {
      * @param intentService 意图识别服务，使用 @AiService 自动注入
      */
     public static CompiledGraph<MedicalConsultationState> buildGraph(IntentRecognitionService intentService) throws GraphStateException {
-        return buildGraphWithNoCompile(intentService)
+        return buildGraph(intentService, null, null);
+    }
+
+    /**
+     * 构建医疗咨询图（规则预分类 + 语义缓存 + 大模型兜底的意图识别）
+     * 
+     * @param intentService 意图识别服务
+     * @param preClassifier 规则预分类器，可为 null
+     * @param intentCache   意图语义缓存，可为 null
+     */
+    public static CompiledGraph<MedicalConsultationState> buildGraph(IntentRecognitionService intentService,
+                                                                     IntentPreClassifier preClassifier,
+                                                                     SemanticIntentCache intentCache) throws GraphStateException {
+        return buildGraph(intentService, preClassifier, intentCache, null);
+    }
+
+    /**
+     * 构建医疗咨询图（意图识别与最可能分支的回答生成推测并行）
+     * 
+     * @param intentService 意图识别服务
+     * @param preClassifier 规则预分类器，可为 null
+     * @param intentCache   意图语义缓存，可为 null
+     * @param speculator    分支推测执行器，可为 null
+     */
+    public static CompiledGraph<MedicalConsultationState> buildGraph(IntentRecognitionService intentService,
+                                                                     IntentPreClassifier preClassifier,
+                                                                     SemanticIntentCache intentCache,
+                                                                     BranchSpeculator speculator) throws GraphStateException {
+        return buildGraph(intentService, preClassifier, intentCache, speculator, null);
+    }
+
+    /**
+     * 构建医疗咨询图（意图识别与上下文收集并行，最可能分支的回答生成推测执行）
+     * 
+     * @param intentService 意图识别服务
+     * @param preClassifier 规则预分类器，可为 null
+     * @param intentCache   意图语义缓存，可为 null
+     * @param speculator    分支推测执行器，可为 null
+     * @param context       上下文来源，可为 null（不收集上下文）
+     */
+    public static CompiledGraph<MedicalConsultationState> buildGraph(IntentRecognitionService intentService,
+                                                                     IntentPreClassifier preClassifier,
+                                                                     SemanticIntentCache intentCache,
+                                                                     BranchSpeculator speculator,
+                                                                     ConsultationContext context) throws GraphStateException {
+        return buildGraphWithNoCompile(intentService, preClassifier, intentCache, speculator, context)
                 // 编译图
                 .compile();
     }
     public static StateGraph<MedicalConsultationState> buildGraphWithNoCompile(IntentRecognitionService intentService) throws GraphStateException {
+        return buildGraphWithNoCompile(intentService, null, null);
+    }
+    public static StateGraph<MedicalConsultationState> buildGraphWithNoCompile(IntentRecognitionService intentService,
+                                                                               IntentPreClassifier preClassifier,
+                                                                               SemanticIntentCache intentCache) throws GraphStateException {
+        return buildGraphWithNoCompile(intentService, preClassifier, intentCache, null);
+    }
+    public static StateGraph<MedicalConsultationState> buildGraphWithNoCompile(IntentRecognitionService intentService,
+                                                                               IntentPreClassifier preClassifier,
+                                                                               SemanticIntentCache intentCache,
+                                                                               BranchSpeculator speculator) throws GraphStateException {
+        return buildGraphWithNoCompile(intentService, preClassifier, intentCache, speculator, null);
+    }
+    public static StateGraph<MedicalConsultationState> buildGraphWithNoCompile(IntentRecognitionService intentService,
+                                                                               IntentPreClassifier preClassifier,
+                                                                               SemanticIntentCache intentCache,
+                                                                               BranchSpeculator speculator,
+                                                                               ConsultationContext context) throws GraphStateException {
+        AsyncNodeAction<MedicalConsultationState> intentNode =
+                createIntentRecognitionNode(intentService, preClassifier, intentCache, speculator, context);
+        ConsultationContext.ContextualAnswerer answerer = context == null ? null : context.answerer();
         return new StateGraph<>(MedicalConsultationState.SCHEMA, MedicalConsultationState::new)
                 // 添加节点
                 .addNode("processUserInput", processUserInputNode)                          // 处理用户输入
-                .addNode("intentRecognition", createIntentRecognitionNode(intentService))  // 意图识别（使用大模型）
-                .addNode("generalChat", generalChatNode)                               // 普通对话
-                .addNode("highRiskMedical", highRiskMedicalNode)                        // 高危医疗
-                .addNode("lowRiskMedical", lowRiskMedicalNode)                          // 非高危医疗
+                .addNode("intentRecognition", createIntentStage(intentNode, preClassifier, context))  // 意图识别（规则预分类 + 语义缓存 + 大模型），可与上下文收集并行
+                .addNode("generalChat", createAnswerNode("general_chat", generalChatNode, speculator, answerer))                // 普通对话
+                .addNode("highRiskMedical", createAnswerNode("high_risk_medical", highRiskMedicalNode, speculator, answerer))   // 高危医疗
+                .addNode("lowRiskMedical", createAnswerNode("low_risk_medical", lowRiskMedicalNode, speculator, answerer))      // 非高危医疗
 
                 // START -> 处理用户输入
                 .addEdge(START, "processUserInput")
 
-                // 处理用户输入 -> 意图识别
-                .addEdge("processUserInput", "intentRecognition")
+                // 处理用户输入 -> 意图识别；从检查点继续的会话可直接回到上一轮的分支
+                .addConditionalEdges(
+                        "processUserInput",
+                        createEntryRoute(preClassifier),
+                        Map.of(
+                                "intentRecognition", "intentRecognition",
+                                IntentType.GENERAL_CHAT.key(), "generalChat",
+                                IntentType.HIGH_RISK_MEDICAL.key(), "highRiskMedical",
+                                IntentType.LOW_RISK_MEDICAL.key(), "lowRiskMedical"
+                        )
+                )
 
                 // 意图识别 -> 三个分支（条件边）
                 .addConditionalEdges(
                         "intentRecognition",           // 源节点：意图识别节点
-                        routeByIntent,                 // 条件路由函数
+                        createIntentRoute(),           // 条件路由函数（风险升级时进入高危分支）
                         Map.of(
-                                "general_chat", "generalChat",           // 普通对话
-                                "high_risk_medical", "highRiskMedical",  // 高危医疗
-                                "low_risk_medical", "lowRiskMedical"     // 非高危医疗
+                                IntentType.GENERAL_CHAT.key(), "generalChat",           // 普通对话
+                                IntentType.HIGH_RISK_MEDICAL.key(), "highRiskMedical",  // 高危医疗
+                                IntentType.LOW_RISK_MEDICAL.key(), "lowRiskMedical"     // 非高危医疗
                         )
                 )
 
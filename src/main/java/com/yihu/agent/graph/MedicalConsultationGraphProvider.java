@@ -0,0 +1,193 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.graph.checkpoint.CompactCheckpointSaver;
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import com.yihu.agent.service.ConsultationAnswerAssistant;
+import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.MedicalKnowledgeAssistant;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.CompileConfig;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.GraphStateException;
+import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.StateGraph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 医疗咨询图提供者
+ * 应用启动时编译一次 CompiledGraph，所有请求共享同一个实例。
+ * 启用检查点时另外编译一个带检查点的图，供带 conversationId 的多轮会话使用
+ */
+@Slf4j
+@Component
+public class MedicalConsultationGraphProvider {
+
+    @Autowired
+    private IntentRecognitionService intentRecognitionService;
+
+    @Autowired
+    private IntentPreClassifier intentPreClassifier;
+
+    @Autowired
+    private SemanticIntentCache semanticIntentCache;
+
+    @Autowired
+    private MedicalKnowledgeAssistant medicalKnowledgeAssistant;
+
+    @Autowired
+    private ConsultationAnswerAssistant consultationAnswerAssistant;
+
+    @Autowired
+    private EmbeddingStore<TextSegment> medicalEmbeddingStore;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired(required = false)
+    private CompactCheckpointSaver checkpointSaver;
+
+    @Autowired
+    @Qualifier("speculationTaskExecutor")
+    private MonitoredTaskExecutor speculationTaskExecutor;
+
+    @Autowired
+    @Qualifier("graphParallelTaskExecutor")
+    private MonitoredTaskExecutor graphParallelTaskExecutor;
+
+    @Value("${healthcare.graph.parallel.enabled:true}")
+    private boolean parallelEnabled;
+
+    @Value("${healthcare.graph.parallel.guideline-results:3}")
+    private int guidelineResults;
+
+    @Value("${healthcare.graph.parallel.history-messages:6}")
+    private int historyMessages;
+
+    @Value("${healthcare.graph.parallel.risk-escalation-threshold:0.8}")
+    private double riskEscalationThreshold;
+
+    @Value("${healthcare.graph.generate-answers:false}")
+    private boolean generateAnswers;
+
+    @Value("${healthcare.graph.speculation.enabled:true}")
+    private boolean speculationEnabled;
+
+    @Value("${healthcare.graph.speculation.min-confidence:0.3}")
+    private double speculationMinConfidence;
+
+    private BranchSpeculator branchSpeculator;
+
+    private ConsultationContext consultationContext;
+
+    /**
+     * 已编译的图（无检查点，可被多个线程并发执行）
+     */
+    private CompiledGraph<MedicalConsultationState> graph;
+
+    /**
+     * 带检查点的图，以会话 ID 作为 threadId 保存状态；未启用检查点时为 null
+     */
+    private CompiledGraph<MedicalConsultationState> conversationGraph;
+
+    /**
+     * 启动时编译图，编译失败直接阻止应用启动
+     */
+    @PostConstruct
+    public void init() throws GraphStateException {
+        branchSpeculator = createSpeculator();
+        consultationContext = parallelEnabled ? createContext() : null;
+        compile();
+    }
+
+    /**
+     * 启用 generate-answers 时非高危医疗分支用知识库问答生成回答；推测任务在 speculationTaskExecutor 上执行。
+     * 并行收集上下文时，推测任务自行检索指南片段并带上历史对话生成回答，与分支节点使用的上下文一致
+     */
+    private BranchSpeculator createSpeculator() {
+        Map<String, Function<String, String>> generators = new HashMap<>();
+        if (generateAnswers) {
+            generators.put(IntentPreClassifier.LOW_RISK_MEDICAL, medicalKnowledgeAssistant::answer);
+        }
+        return new BranchSpeculator(generators, intentPreClassifier, speculationTaskExecutor.getThreadPoolExecutor(),
+                speculationMinConfidence, speculationEnabled);
+    }
+
+    /**
+     * 意图识别阶段并行收集的上下文：知识库指南片段、风险评分和会话历史（取自检查点恢复的消息日志）；
+     * 风险评分用于升级路由，指南片段和会话历史用于生成分支回答
+     */
+    private ConsultationContext createContext() {
+        EmbeddingStoreContentRetriever guidelineRetriever = EmbeddingStoreContentRetriever.builder()
+                .embeddingStore(medicalEmbeddingStore)
+                .embeddingModel(embeddingModel)
+                .maxResults(guidelineResults)
+                .minScore(0.5)
+                .build();
+        ConsultationContext.ContextualAnswerer answerer = (question, guidelines, history) ->
+                consultationAnswerAssistant.answer(question, String.join("\n", guidelines), String.join("\n", history));
+        return new ConsultationContext(guidelineRetriever, historyMessages, riskEscalationThreshold,
+                answerer, graphParallelTaskExecutor);
+    }
+
+    public BranchSpeculator branchSpeculator() {
+        return branchSpeculator;
+    }
+
+    /**
+     * 检查点保存器，未启用检查点时为 null
+     */
+    public CompactCheckpointSaver checkpointSaver() {
+        return checkpointSaver;
+    }
+
+    /**
+     * 获取已编译的共享图
+     */
+    public CompiledGraph<MedicalConsultationState> graph() {
+        return graph;
+    }
+
+    /**
+     * 执行图：输入带 conversationId 且启用了检查点时使用带检查点的图，
+     * 同一会话的后续消息在上一轮的状态上继续（已识别的医疗意图直接进入对应分支）；否则使用无检查点的共享图
+     *
+     * @param input 图输入，包含 userInput，可选 conversationId
+     */
+    public Iterable<NodeOutput<MedicalConsultationState>> stream(Map<String, Object> input) throws Exception {
+        Object conversationId = input.get("conversationId");
+        if (conversationGraph == null || !(conversationId instanceof String threadId) || threadId.isEmpty()) {
+            return graph.stream(input);
+        }
+        return conversationGraph.stream(input, RunnableConfig.builder().threadId(threadId).build());
+    }
+
+    /**
+     * 构建并编译图
+     */
+    private void compile() throws GraphStateException {
+        long start = System.nanoTime();
+        StateGraph<MedicalConsultationState> stateGraph = MedicalConsultationGraph.buildGraphWithNoCompile(
+                intentRecognitionService, intentPreClassifier, semanticIntentCache, branchSpeculator, consultationContext);
+        graph = stateGraph.compile();
+        conversationGraph = checkpointSaver == null
+                ? null
+                : stateGraph.compile(CompileConfig.builder().checkpointSaver(checkpointSaver).build());
+        log.info("医疗咨询图编译完成，耗时: {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,98 @@
+package com.yihu.agent.graph;
+
+import org.bsc.langgraph4j.action.AsyncNodeAction;
+import org.bsc.langgraph4j.state.AgentState;
+import org.bsc.langgraph4j.state.Channel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 并行节点：把多个互不依赖的子节点扇出到线程池并发执行，全部完成后合并各自的状态增量（扇入）
+ * 合并规则：不同子节点写入不同字段时直接合并；多个子节点写入同一字段时，
+ * 该字段的通道必须带 reducer（如 messages 的 appender），各子节点的值按注册顺序拼接后交给 reducer；
+ * 否则视为冲突并抛出异常。
+ * 节点耗时约等于最慢的子节点，而不是各子节点之和
+ *
+ * @param <S> 图状态类型
+ */
+public class ParallelNodeAction<S extends AgentState> implements AsyncNodeAction<S> {
+
+    private final Map<String, AsyncNodeAction<S>> branches;
+    private final Map<String, Channel<?>> schema;
+    private final Executor executor;
+
+    /**
+     * @param branches 子节点名到子节点的映射，按迭代顺序合并（子节点名仅用于区分，不是图中的节点）
+     * @param schema   图状态 schema，用于判断字段能否被多个子节点同时写入
+     * @param executor 执行子节点的线程池；线程池拒绝时在当前线程执行
+     */
+    public ParallelNodeAction(Map<String, AsyncNodeAction<S>> branches, Map<String, Channel<?>> schema, Executor executor) {
+        if (branches.isEmpty()) {
+            throw new IllegalArgumentException("并行节点至少需要一个子节点");
+        }
+        this.branches = new LinkedHashMap<>(branches);
+        this.schema = schema;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> apply(S state) {
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(branches.size());
+        branches.values().forEach(branch -> futures.add(submit(branch, state)));
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> merge(futures.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private CompletableFuture<Map<String, Object>> submit(AsyncNodeAction<S> branch, S state) {
+        // node_async 包装的子节点在调用线程上同步执行，因此 apply 本身要提交到线程池
+        Supplier<CompletableFuture<Map<String, Object>>> task = () -> branch.apply(state);
+        try {
+            return CompletableFuture.supplyAsync(task, executor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return task.get();
+        }
+    }
+
+    /**
+     * 合并各子节点的状态增量
+     */
+    private Map<String, Object> merge(List<Map<String, Object>> results) {
+        Map<String, Object> merged = new HashMap<>();
+        Map<String, List<Object>> shared = new HashMap<>();
+        for (Map<String, Object> result : results) {
+            result.forEach((key, value) -> {
+                if (!merged.containsKey(key)) {
+                    merged.put(key, value);
+                    return;
+                }
+                Channel<?> channel = schema.get(key);
+                if (channel == null || channel.getReducer().isEmpty()) {
+                    throw new IllegalStateException("多个并行子节点写入了没有 reducer 的字段: " + key);
+                }
+                List<Object> values = shared.computeIfAbsent(key, k -> flatten(new ArrayList<>(), merged.get(k)));
+                flatten(values, value);
+            });
+        }
+        merged.putAll(shared);
+        return merged;
+    }
+
+    private static List<Object> flatten(List<Object> target, Object value) {
+        if (value instanceof Collection<?> collection) {
+            target.addAll(collection);
+        } else {
+            target.add(value);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,295 @@
+package com.yihu.agent.graph.checkpoint;
+
+import com.yihu.agent.graph.state.IntentType;
+import com.yihu.agent.graph.state.MessageLog;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 检查点的紧凑二进制编码
+ * 状态字段按类型编码：已知字段名只写一个字节的编号，字符串为变长长度 + UTF-8，
+ * 意图写 key，消息日志和字符串列表写条数 + 各条字符串；
+ * 其他可序列化的值退回 Java 序列化。编码的第一个字节是格式版本。
+ * 检查点可能来自文件或数据库，反序列化只接受 JDK 的基础类型、集合和时间类型，其他类一律拒绝
+ */
+public final class CheckpointCodec {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 已知字段，编号即下标，只能在末尾追加
+     */
+    private static final List<String> FIELDS = List.of(
+            "userInput", "modelResponse", "messages", "intent", "requestId",
+            "conversationId", "guidelines", "riskScore", "history", "escalated");
+    private static final int NAMED_FIELD = 0xFF;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTENT = 2;
+    private static final int MESSAGE_LOG = 3;
+    private static final int STRING_LIST = 4;
+    private static final int DOUBLE = 5;
+    private static final int LONG = 6;
+    private static final int INTEGER = 7;
+    private static final int BOOLEAN = 8;
+    private static final int SERIALIZED = 9;
+
+    /**
+     * Java 序列化值的反序列化白名单
+     */
+    private static final ObjectInputFilter SERIALIZED_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;maxrefs=100000;maxbytes=16777216;java.lang.*;java.util.*;java.time.*;java.math.*;!*");
+
+    private CheckpointCodec() {
+    }
+
+    public static byte[] encode(Checkpoint checkpoint) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, checkpoint.getId());
+            writeNullableString(out, checkpoint.getNodeId());
+            writeNullableString(out, checkpoint.getNextNodeId());
+            Map<String, Object> state = checkpoint.getState();
+            writeVarInt(out, state.size());
+            for (Map.Entry<String, Object> entry : state.entrySet()) {
+                int field = FIELDS.indexOf(entry.getKey());
+                if (field >= 0) {
+                    out.writeByte(field);
+                } else {
+                    out.writeByte(NAMED_FIELD);
+                    writeString(out, entry.getKey());
+                }
+                writeValue(out, entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("检查点编码失败: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Checkpoint decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("不支持的检查点格式版本: " + version);
+            }
+            String id = readString(in);
+            String nodeId = readNullableString(in);
+            String nextNodeId = readNullableString(in);
+            int size = readVarInt(in);
+            Map<String, Object> state = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                int field = in.readUnsignedByte();
+                String key = field == NAMED_FIELD ? readString(in) : FIELDS.get(field);
+                Object value = readValue(in);
+                if (value != null) {
+                    state.put(key, value);
+                }
+            }
+            return Checkpoint.builder()
+                    .id(id)
+                    .nodeId(nodeId)
+                    .nextNodeId(nextNodeId)
+                    .state(state)
+                    .build();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("检查点解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取已编码检查点的 ID，不解码状态
+     */
+    public static String idOf(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            in.readUnsignedByte();
+            return readString(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("检查点解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把一个会话的多个已编码检查点拼成一个字节数组：条数 + 各检查点的长度和内容
+     */
+    public static byte[] pack(List<byte[]> checkpoints) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarInt(out, checkpoints.size());
+            for (byte[] checkpoint : checkpoints) {
+                writeVarInt(out, checkpoint.length);
+                out.write(checkpoint);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("检查点编码失败: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<byte[]> unpack(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int size = readVarInt(in);
+            List<byte[]> checkpoints = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                byte[] checkpoint = new byte[readVarInt(in)];
+                in.readFully(checkpoint);
+                checkpoints.add(checkpoint);
+            }
+            return checkpoints;
+        } catch (IOException e) {
+            throw new IllegalStateException("检查点解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, String key, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String string) {
+            out.writeByte(STRING);
+            writeString(out, string);
+        } else if (value instanceof IntentType intent) {
+            out.writeByte(INTENT);
+            writeString(out, intent.key());
+        } else if (value instanceof MessageLog messages) {
+            out.writeByte(MESSAGE_LOG);
+            writeStrings(out, messages);
+        } else if (value instanceof List<?> list && isStringList(list)) {
+            out.writeByte(STRING_LIST);
+            writeStrings(out, list);
+        } else if (value instanceof Double number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number);
+        } else if (value instanceof Long number) {
+            out.writeByte(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Integer number) {
+            out.writeByte(INTEGER);
+            writeVarInt(out, number);
+        } else if (value instanceof Boolean flag) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(flag);
+        } else if (value instanceof Serializable) {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            writeVarInt(out, bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IllegalArgumentException("状态字段 " + key + " 的值无法序列化: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        int type = in.readUnsignedByte();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case INTENT -> IntentType.fromKey(readString(in));
+            case MESSAGE_LOG -> MessageLog.of(readStrings(in));
+            case STRING_LIST -> Collections.unmodifiableList(readStrings(in));
+            case DOUBLE -> in.readDouble();
+            case LONG -> in.readLong();
+            case INTEGER -> readVarInt(in);
+            case BOOLEAN -> in.readBoolean();
+            case SERIALIZED -> {
+                byte[] bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    objects.setObjectInputFilter(SERIALIZED_FILTER);
+                    yield objects.readObject();
+                }
+            }
+            default -> throw new IOException("未知的值类型: " + type);
+        };
+    }
+
+    private static boolean isStringList(List<?> list) {
+        for (Object item : list) {
+            if (!(item instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<?> strings) throws IOException {
+        writeVarInt(out, strings.size());
+        for (Object string : strings) {
+            writeString(out, (String) string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /**
+     * 变长长度 + UTF-8 字节；不用 writeUTF，它限制 64KB 且使用修改版 UTF-8
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+}
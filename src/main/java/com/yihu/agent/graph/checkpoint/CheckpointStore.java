@@ -0,0 +1,25 @@
+package com.yihu.agent.graph.checkpoint;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 检查点存储：按会话（threadId）整体保存该会话已编码的检查点列表
+ * 编码与检查点的增删由 {@link CompactCheckpointSaver} 负责，存储只读写字节
+ */
+public interface CheckpointStore {
+
+    Optional<byte[]> load(String threadId);
+
+    void save(String threadId, byte[] checkpoints);
+
+    /**
+     * @return 会话原本是否存在
+     */
+    boolean delete(String threadId);
+
+    /**
+     * 存储统计信息（会话数、占用字节等）
+     */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,151 @@
+package com.yihu.agent.graph.checkpoint;
+
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.BaseCheckpointSaver;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 紧凑编码的检查点保存器
+ * 检查点按 threadId（即会话 ID）分组，用 {@link CheckpointCodec} 编码后交给 {@link CheckpointStore} 保存；
+ * 每个会话最多保留最近 maxCheckpointsPerThread 个检查点（最新的在前）。
+ * 语义与 langgraph4j 的 MemorySaver 一致：config 带 checkPointId 时替换该检查点，否则追加
+ */
+public class CompactCheckpointSaver implements BaseCheckpointSaver {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final CheckpointStore store;
+    private final int maxCheckpointsPerThread;
+
+    /**
+     * 同一会话的读改写串行执行，不同会话按分段锁并发
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder putNanos = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+
+    public CompactCheckpointSaver(CheckpointStore store, int maxCheckpointsPerThread) {
+        if (maxCheckpointsPerThread < 1) {
+            throw new IllegalArgumentException("每个会话至少保留一个检查点");
+        }
+        this.store = store;
+        this.maxCheckpointsPerThread = maxCheckpointsPerThread;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public Collection<Checkpoint> list(RunnableConfig config) {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        for (byte[] checkpoint : load(threadIdOf(config))) {
+            checkpoints.add(CheckpointCodec.decode(checkpoint));
+        }
+        return checkpoints;
+    }
+
+    @Override
+    public Optional<Checkpoint> get(RunnableConfig config) {
+        List<byte[]> checkpoints = load(threadIdOf(config));
+        Optional<String> checkPointId = config.checkPointId();
+        if (checkPointId.isEmpty()) {
+            return checkpoints.stream().findFirst().map(CheckpointCodec::decode);
+        }
+        return checkpoints.stream()
+                .filter(checkpoint -> checkPointId.get().equals(CheckpointCodec.idOf(checkpoint)))
+                .findFirst()
+                .map(CheckpointCodec::decode);
+    }
+
+    @Override
+    public RunnableConfig put(RunnableConfig config, Checkpoint checkpoint) throws Exception {
+        long start = System.nanoTime();
+        String threadId = threadIdOf(config);
+        byte[] encoded = CheckpointCodec.encode(checkpoint);
+        RunnableConfig result;
+        synchronized (lockOf(threadId)) {
+            List<byte[]> checkpoints = load(threadId);
+            if (config.checkPointId().isPresent()) {
+                // 替换指定的检查点
+                String checkPointId = config.checkPointId().get();
+                int index = indexOf(checkpoints, checkPointId);
+                if (index < 0) {
+                    throw new NoSuchElementException("检查点不存在: " + checkPointId);
+                }
+                checkpoints.set(index, encoded);
+                result = config;
+            } else {
+                checkpoints.add(0, encoded);
+                while (checkpoints.size() > maxCheckpointsPerThread) {
+                    checkpoints.remove(checkpoints.size() - 1);
+                }
+                result = RunnableConfig.builder(config).checkPointId(checkpoint.getId()).build();
+            }
+            store.save(threadId, CheckpointCodec.pack(checkpoints));
+        }
+        puts.increment();
+        encodedBytes.add(encoded.length);
+        putNanos.add(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 释放会话：删除该会话的全部检查点，返回删除前的检查点（最新的在前）
+     */
+    @Override
+    public Tag release(RunnableConfig config) throws Exception {
+        String threadId = threadIdOf(config);
+        synchronized (lockOf(threadId)) {
+            List<Checkpoint> checkpoints = new ArrayList<>();
+            for (byte[] checkpoint : load(threadId)) {
+                checkpoints.add(CheckpointCodec.decode(checkpoint));
+            }
+            store.delete(threadId);
+            return new Tag(threadId, checkpoints);
+        }
+    }
+
+    /**
+     * 保存统计：存储占用及每次写入的平均编码大小和耗时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = store.stats();
+        long count = puts.sum();
+        stats.put("maxCheckpointsPerThread", maxCheckpointsPerThread);
+        stats.put("puts", count);
+        stats.put("avgCheckpointBytes", count == 0 ? 0 : encodedBytes.sum() / count);
+        stats.put("avgPutMs", count == 0 ? 0 : putNanos.sum() / 1_000_000.0 / count);
+        return stats;
+    }
+
+    private List<byte[]> load(String threadId) {
+        return store.load(threadId).map(CheckpointCodec::unpack).orElseGet(ArrayList::new);
+    }
+
+    private static int indexOf(List<byte[]> checkpoints, String checkPointId) {
+        for (int i = 0; i < checkpoints.size(); i++) {
+            if (checkPointId.equals(CheckpointCodec.idOf(checkpoints.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object lockOf(String threadId) {
+        return locks[Math.floorMod(threadId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String threadIdOf(RunnableConfig config) {
+        return config.threadId().orElse(THREAD_ID_DEFAULT);
+    }
+}
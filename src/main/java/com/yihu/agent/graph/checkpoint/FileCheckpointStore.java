@@ -0,0 +1,158 @@
+package com.yihu.agent.graph.checkpoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.nio.file.attribute.FileTime;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 基于文件的检查点存储
+ * 每个会话一个文件，应用重启后会话仍可继续。文件名取会话 ID 的 SHA-256，
+ * 不同会话 ID 不会因为字符替换落到同一个文件。
+ * 超过 idleTimeout 未保存（文件修改时间）的会话由后台线程每分钟清除一次
+ */
+@Slf4j
+public class FileCheckpointStore implements CheckpointStore, AutoCloseable {
+
+    private static final String SUFFIX = ".ckpt";
+
+    private final Path directory;
+    private final Duration idleTimeout;
+    private final LongAdder evicted = new LongAdder();
+    private final ScheduledExecutorService evictionScheduler;
+
+    /**
+     * @param idleTimeout 会话空闲超过该时间后被清除
+     */
+    public FileCheckpointStore(Path directory, Duration idleTimeout) {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法创建检查点目录: " + directory, e);
+        }
+        this.evictionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionScheduler.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public Optional<byte[]> load(String threadId) {
+        try {
+            return Optional.of(Files.readAllBytes(fileOf(threadId)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取检查点失败: " + threadId, e);
+        }
+    }
+
+    @Override
+    public void save(String threadId, byte[] checkpoints) {
+        Path file = fileOf(threadId);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            // 先写临时文件再原子替换，避免写到一半时被读取
+            Files.write(tmp, checkpoints);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存检查点失败: " + threadId, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String threadId) {
+        try {
+            return Files.deleteIfExists(fileOf(threadId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除检查点失败: " + threadId, e);
+        }
+    }
+
+    /**
+     * 清除空闲会话
+     *
+     * @return 清除的会话数
+     */
+    public int evictIdle() {
+        FileTime deadline = FileTime.fromMillis(System.currentTimeMillis() - idleTimeout.toMillis());
+        int removed = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(SUFFIX))::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(deadline) < 0 && Files.deleteIfExists(file)) {
+                        removed++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // 已被并发删除
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清除空闲检查点失败: {}", e.getMessage());
+        }
+        if (removed > 0) {
+            evicted.add(removed);
+            log.debug("清除空闲检查点会话 {} 个", removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        evictionScheduler.shutdownNow();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long threads = 0;
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(SUFFIX))::iterator) {
+                threads++;
+                bytes += Files.size(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "file");
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("threads", threads);
+        stats.put("diskBytes", bytes);
+        stats.put("avgBytesPerThread", threads == 0 ? 0 : bytes / threads);
+        stats.put("idleTimeout", idleTimeout.toString());
+        stats.put("evicted", evicted.sum());
+        return stats;
+    }
+
+    private Path fileOf(String threadId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(threadId.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
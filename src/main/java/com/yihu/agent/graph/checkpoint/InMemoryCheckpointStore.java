@@ -0,0 +1,62 @@
+package com.yihu.agent.graph.checkpoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内检查点存储
+ * 检查点以编码后的 byte[] 保存，按最近访问顺序最多保留 maxThreads 个会话，超出时淘汰最久未访问的会话
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private final int maxThreads;
+    private final LongAdder evicted = new LongAdder();
+    private final Map<String, byte[]> threads;
+
+    public InMemoryCheckpointStore(int maxThreads) {
+        this.maxThreads = maxThreads;
+        this.threads = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (size() <= InMemoryCheckpointStore.this.maxThreads) {
+                    return false;
+                }
+                evicted.increment();
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<byte[]> load(String threadId) {
+        return Optional.ofNullable(threads.get(threadId));
+    }
+
+    @Override
+    public synchronized void save(String threadId, byte[] checkpoints) {
+        threads.put(threadId, checkpoints);
+    }
+
+    @Override
+    public synchronized boolean delete(String threadId) {
+        return threads.remove(threadId) != null;
+    }
+
+    @Override
+    public synchronized Map<String, Object> stats() {
+        long bytes = 0;
+        for (byte[] checkpoints : threads.values()) {
+            bytes += checkpoints.length;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "memory");
+        stats.put("threads", threads.size());
+        stats.put("maxThreads", maxThreads);
+        stats.put("evicted", evicted.sum());
+        stats.put("bytes", bytes);
+        stats.put("avgBytesPerThread", threads.isEmpty() ? 0 : bytes / threads.size());
+        return stats;
+    }
+}
@@ -0,0 +1,154 @@
+package com.yihu.agent.graph.checkpoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 PostgreSQL 的检查点存储
+ * 每个会话一行，检查点列表以 bytea 保存；写入为单条 upsert，读取为按主键查询，各一次往返。
+ * updated_at 早于 idleTimeout 的会话由后台线程每分钟按数据库时间删除一次
+ */
+@Slf4j
+public class JdbcCheckpointStore implements CheckpointStore, AutoCloseable {
+
+    private final DataSource dataSource;
+    private final String table;
+    private final Duration idleTimeout;
+    private final LongAdder evicted = new LongAdder();
+    private final ScheduledExecutorService evictionScheduler;
+
+    /**
+     * @param dataSource  数据源（生产环境使用连接池）
+     * @param table       表名
+     * @param createTable 是否在表不存在时建表
+     * @param idleTimeout 会话空闲超过该时间后被清除
+     */
+    public JdbcCheckpointStore(DataSource dataSource, String table, boolean createTable, Duration idleTimeout) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.idleTimeout = idleTimeout;
+        if (createTable) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                        + "thread_id TEXT PRIMARY KEY, "
+                        + "checkpoints BYTEA NOT NULL, "
+                        + "updated_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_updated_at_idx ON " + table + " (updated_at)");
+            } catch (SQLException e) {
+                throw new IllegalStateException("初始化检查点表失败: " + e.getMessage(), e);
+            }
+        }
+        this.evictionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionScheduler.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public Optional<byte[]> load(String threadId) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT checkpoints FROM " + table + " WHERE thread_id = ?")) {
+            statement.setString(1, threadId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? Optional.of(resultSet.getBytes(1)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取检查点失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void save(String threadId, byte[] checkpoints) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO " + table + " (thread_id, checkpoints, updated_at) VALUES (?, ?, now())"
+                             + " ON CONFLICT (thread_id) DO UPDATE SET"
+                             + " checkpoints = EXCLUDED.checkpoints, updated_at = EXCLUDED.updated_at")) {
+            statement.setString(1, threadId);
+            statement.setBytes(2, checkpoints);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("保存检查点失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean delete(String threadId) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE thread_id = ?")) {
+            statement.setString(1, threadId);
+            return statement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("删除检查点失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 清除空闲会话
+     *
+     * @return 清除的会话数
+     */
+    public int evictIdle() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE updated_at < now() - ? * interval '1 millisecond'")) {
+            statement.setLong(1, idleTimeout.toMillis());
+            int removed = statement.executeUpdate();
+            if (removed > 0) {
+                evicted.add(removed);
+                log.debug("清除空闲检查点会话 {} 个", removed);
+            }
+            return removed;
+        } catch (SQLException e) {
+            log.warn("清除空闲检查点失败: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        evictionScheduler.shutdownNow();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "jdbc");
+        stats.put("table", table);
+        stats.put("idleTimeout", idleTimeout.toString());
+        stats.put("evicted", evicted.sum());
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT count(*), coalesce(sum(octet_length(checkpoints)), 0) FROM " + table)) {
+            resultSet.next();
+            long threads = resultSet.getLong(1);
+            long bytes = resultSet.getLong(2);
+            stats.put("threads", threads);
+            stats.put("bytes", bytes);
+            stats.put("avgBytesPerThread", threads == 0 ? 0 : bytes / threads);
+        } catch (SQLException e) {
+            stats.put("error", e.getMessage());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,54 @@
+package com.yihu.agent.graph.state;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 咨询意图
+ * 状态中以枚举保存，路由和对外输出使用 key（与意图识别服务的返回值一致）
+ */
+public enum IntentType {
+
+    /**
+     * 尚未识别
+     */
+    UNKNOWN(""),
+    GENERAL_CHAT("general_chat"),
+    HIGH_RISK_MEDICAL("high_risk_medical"),
+    LOW_RISK_MEDICAL("low_risk_medical");
+
+    private final String key;
+
+    IntentType(String key) {
+        this.key = key;
+    }
+
+    @JsonValue
+    public String key() {
+        return key;
+    }
+
+    /**
+     * 按 key 查找意图，未知的 key 返回 UNKNOWN
+     */
+    public static IntentType fromKey(String key) {
+        if (key == null) {
+            return UNKNOWN;
+        }
+        return switch (key) {
+            case "general_chat" -> GENERAL_CHAT;
+            case "high_risk_medical" -> HIGH_RISK_MEDICAL;
+            case "low_risk_medical" -> LOW_RISK_MEDICAL;
+            default -> UNKNOWN;
+        };
+    }
+
+    /**
+     * 状态值转换为意图：兼容以字符串传入的意图（如调用方输入、旧的检查点）
+     */
+    static IntentType from(Object value) {
+        if (value instanceof IntentType intent) {
+            return intent;
+        }
+        return value instanceof String key ? fromKey(key) : UNKNOWN;
+    }
+}
@@ -5,38 +5,89 @@ import org.bsc.langgraph4j.state.AgentState;
 import org.bsc.langgraph4j.state.Channel;
 import org.bsc.langgraph4j.state.Channels;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class MedicalConsultationState extends AgentState {
 
     // 1. 定义 Schema（状态结构）
-    public static final Map<String, Channel<?>> SCHEMA = Map.of(
-            "userInput", Channels.base(()->"default user input") ,// 用户输入
-            "modelResponse", Channels.base(()->"default model response") ,// 模型响应
-            "messages", Channels.appender(ArrayList::new) ,// 消息列表
-            "intent", Channels.base(()->"default intent") // 意图
+    public static final Map<String, Channel<?>> SCHEMA = Map.ofEntries(
+            Map.entry("userInput", Channels.base(()->"default user input")) ,// 用户输入
+            Map.entry("modelResponse", Channels.base(()->"default model response")) ,// 模型响应
+            Map.entry("messages", Channels.<Object>base(MessageLog::reduce, MessageLog::empty)) ,// 消息列表（结构共享的只追加日志）
+            Map.entry("intent", Channels.base(()->IntentType.UNKNOWN)), // 意图
+            Map.entry("requestId", Channels.base(()->"")), // 单次图执行的标识，用于关联推测执行的结果
+            Map.entry("conversationId", Channels.base(()->"")), // 会话 ID（可选输入），用于按会话保存检查点
+            Map.entry("guidelines", Channels.base(()->List.<String>of())), // 检索到的指南片段
+            Map.entry("riskScore", Channels.base(()->0.0)), // 规则风险评分（高危关键词得分，0-1）
+            Map.entry("history", Channels.base(()->List.<String>of())), // 最近的历史对话
+            Map.entry("escalated", Channels.base(()->false)) // 风险评分达到阈值、升级到高危医疗分支（意图字段不变）
 
     );
+
+    // 每一步都会创建新的状态对象，常用字段在构造时读取一次，访问时不再查 Map、不分配 Optional
+    private final String userInput;
+    private final String modelResponse;
+    private final IntentType intent;
+    private final MessageLog messages;
+
     // 2. 构造函数
     public MedicalConsultationState(Map<String, Object> initData) {
         super(initData);
+        this.userInput = initData.get("userInput") instanceof String value ? value : "";
+        this.modelResponse = initData.get("modelResponse") instanceof String value ? value : "";
+        this.intent = IntentType.from(initData.get("intent"));
+        this.messages = MessageLog.from(initData.get("messages"));
     }
     // 3. getter
 
     // 3. 添加便捷访问方法
     public String userInput() {
-        return this.<String>value("userInput").orElse("");
+        return userInput;
     }
     public String modelResponse() {
-        return this.<String>value("modelResponse").orElse("");
+        return modelResponse;
     }
     public List<String> messages() {
-        return this.<List<String>>value("messages").orElse(new ArrayList<>());
+        return messages;
     }
-    
+
     public String intent() {
-        return this.<String>value("intent").orElse("");
+        return intent.key();
+    }
+
+    public IntentType intentType() {
+        return intent;
+    }
+
+    public String requestId() {
+        return this.<String>value("requestId").orElse("");
+    }
+
+    public String conversationId() {
+        return this.<String>value("conversationId").orElse("");
+    }
+
+    public List<String> guidelines() {
+        return this.<List<String>>value("guidelines").orElse(List.of());
+    }
+
+    public double riskScore() {
+        return this.<Double>value("riskScore").orElse(0.0);
+    }
+
+    public List<String> history() {
+        return this.<List<String>>value("history").orElse(List.of());
+    }
+
+    public boolean escalated() {
+        return this.<Boolean>value("escalated").orElse(false);
+    }
+
+    /**
+     * 路由目标分支对应的意图：风险评分升级时为高危医疗，否则为识别出的意图
+     */
+    public IntentType branchIntent() {
+        return escalated() ? IntentType.HIGH_RISK_MEDICAL : intent;
     }
 }
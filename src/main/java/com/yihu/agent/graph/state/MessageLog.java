@@ -0,0 +1,152 @@
+package com.yihu.agent.graph.state;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只追加的不可变消息日志（结构共享）
+ * 每个实例是共享缓冲区的一个前缀视图：在最新版本上追加时直接写入缓冲区的下一个位置，
+ * 只分配一个新的视图对象，不复制已有消息；在旧版本上追加（分叉）或缓冲区已满时才复制。
+ * 已发布的位置不会再被改写，因此各版本可以跨线程共享
+ */
+public final class MessageLog extends AbstractList<String> implements RandomAccess, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final MessageLog EMPTY = new MessageLog(new Buffer(0), 0);
+
+    /**
+     * 共享缓冲区，claimed 为已被某个版本占用的位置数
+     */
+    private static final class Buffer {
+        final String[] items;
+        final AtomicInteger claimed;
+
+        Buffer(int capacity) {
+            this(new String[capacity], 0);
+        }
+
+        Buffer(String[] items, int claimed) {
+            this.items = items;
+            this.claimed = new AtomicInteger(claimed);
+        }
+    }
+
+    private final transient Buffer buffer;
+    private final int size;
+
+    private MessageLog(Buffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    public static MessageLog empty() {
+        return EMPTY;
+    }
+
+    public static MessageLog of(Collection<String> messages) {
+        return EMPTY.appendAll(messages);
+    }
+
+    /**
+     * 状态值转换为消息日志：兼容以普通列表传入的消息
+     */
+    @SuppressWarnings("unchecked")
+    static MessageLog from(Object value) {
+        if (value instanceof MessageLog log) {
+            return log;
+        }
+        return value instanceof Collection<?> messages ? of((Collection<String>) messages) : EMPTY;
+    }
+
+    /**
+     * messages 通道的 reducer：更新值可以是单条消息、消息集合（并行子节点合并后）或另一个消息日志
+     */
+    @SuppressWarnings("unchecked")
+    static Object reduce(Object current, Object update) {
+        MessageLog log = from(current);
+        if (update instanceof String message) {
+            return log.append(message);
+        }
+        if (update instanceof Collection<?> messages) {
+            return log.appendAll((Collection<String>) messages);
+        }
+        return log;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return buffer.items[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 追加一条消息，返回新版本，当前版本不变
+     */
+    public MessageLog append(String message) {
+        if (size < buffer.items.length && buffer.claimed.compareAndSet(size, size + 1)) {
+            buffer.items[size] = message;
+            return new MessageLog(buffer, size + 1);
+        }
+        Buffer grown = copy(size + 1);
+        grown.items[size] = message;
+        return new MessageLog(grown, size + 1);
+    }
+
+    /**
+     * 追加多条消息，返回新版本，当前版本不变
+     */
+    public MessageLog appendAll(Collection<String> messages) {
+        int count = messages.size();
+        if (count == 0) {
+            return this;
+        }
+        int newSize = size + count;
+        Buffer target = newSize <= buffer.items.length && buffer.claimed.compareAndSet(size, newSize)
+                ? buffer
+                : copy(newSize);
+        int index = size;
+        for (String message : messages) {
+            target.items[index++] = message;
+        }
+        return new MessageLog(target, newSize);
+    }
+
+    private Buffer copy(int minCapacity) {
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(minCapacity, buffer.items.length * 2));
+        String[] items = new String[capacity];
+        System.arraycopy(buffer.items, 0, items, 0, size);
+        return new Buffer(items, minCapacity);
+    }
+
+    /**
+     * 序列化时只写出当前版本的消息，不写出共享缓冲区中其他版本追加的内容
+     */
+    @Serial
+    private Object writeReplace() {
+        return new SerializedForm(toArray(new String[0]));
+    }
+
+    private record SerializedForm(String[] messages) implements Serializable {
+
+        @Serial
+        private Object readResolve() {
+            return of(Arrays.asList(messages));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.yihu.agent.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑的进程内会话记忆存储
+ * 每个会话的消息序列化为 JSON 后用 Deflate 压缩成一个 byte[] 保存，
+ * 避免大量 ChatMessage 对象常驻堆内存；长时间未访问的会话由后台线程每分钟清除一次
+ */
+@Slf4j
+public class CompactInMemoryChatMemoryStore implements MonitoredChatMemoryStore, AutoCloseable {
+
+    private static final class Entry {
+        final byte[] compressed;
+        final int rawLength;
+        final int messageCount;
+        volatile long lastAccess;
+
+        Entry(byte[] compressed, int rawLength, int messageCount) {
+            this.compressed = compressed;
+            this.rawLength = rawLength;
+            this.messageCount = messageCount;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private final Map<Object, Entry> sessions = new ConcurrentHashMap<>();
+    private final Duration idleTimeout;
+    private final LongAdder evicted = new LongAdder();
+    private final ScheduledExecutorService evictionScheduler;
+
+    /**
+     * @param idleTimeout 会话空闲超过该时间后被清除
+     */
+    public CompactInMemoryChatMemoryStore(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        this.evictionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-memory-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionScheduler.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Entry entry = sessions.get(memoryId);
+        if (entry == null) {
+            return new ArrayList<>();
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return new ArrayList<>(ChatMessageDeserializer.messagesFromJson(inflate(entry)));
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        byte[] raw = ChatMessageSerializer.messagesToJson(messages).getBytes(StandardCharsets.UTF_8);
+        sessions.put(memoryId, new Entry(deflate(raw), raw.length, messages.size()));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        sessions.remove(memoryId);
+    }
+
+    /**
+     * 清除空闲会话
+     *
+     * @return 清除的会话数
+     */
+    public int evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeout.toMillis();
+        int before = sessions.size();
+        sessions.entrySet().removeIf(e -> e.getValue().lastAccess < deadline);
+        int removed = before - sessions.size();
+        if (removed > 0) {
+            evicted.add(removed);
+            log.debug("清除空闲会话记忆 {} 个", removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        evictionScheduler.shutdownNow();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long compressedBytes = 0;
+        long rawBytes = 0;
+        long messages = 0;
+        for (Entry entry : sessions.values()) {
+            compressedBytes += entry.compressed.length;
+            rawBytes += entry.rawLength;
+            messages += entry.messageCount;
+        }
+        int activeSessions = sessions.size();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "compact-in-memory");
+        stats.put("activeSessions", activeSessions);
+        stats.put("messages", messages);
+        stats.put("compressedBytes", compressedBytes);
+        stats.put("rawJsonBytes", rawBytes);
+        stats.put("avgBytesPerSession", activeSessions == 0 ? 0 : compressedBytes / activeSessions);
+        stats.put("idleTimeout", idleTimeout.toString());
+        stats.put("evictedSessions", evicted.sum());
+        return stats;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(Entry entry) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(entry.compressed);
+            byte[] raw = new byte[entry.rawLength];
+            int offset = 0;
+            while (offset < raw.length && !inflater.finished()) {
+                offset += inflater.inflate(raw, offset, raw.length - offset);
+            }
+            return new String(raw, 0, offset, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("会话记忆数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
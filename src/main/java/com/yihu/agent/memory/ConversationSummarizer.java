@@ -0,0 +1,265 @@
+package com.yihu.agent.memory;
+
+import com.yihu.agent.metrics.LatencyRecorder;
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话摘要器
+ * 会话 token 数超过预算后，在后台线程把较早的对话压缩成一段滚动摘要，
+ * 只保留最近若干 token 的原始对话，使提示词长度基本不随对话轮数增长
+ */
+@Slf4j
+public class ConversationSummarizer {
+
+    /**
+     * 摘要消息的前缀，用于在存储的消息列表中识别摘要
+     */
+    public static final String SUMMARY_PREFIX = "【此前对话摘要】";
+
+    private static final String SUMMARY_INSTRUCTION = """
+            你是医疗咨询对话的记录员。请把给出的“已有摘要”和“新增对话”合并成一段新的摘要。
+            必须保留：患者描述的症状、持续时间、严重程度、既往病史、过敏史、用药情况，以及助手给出的关键建议。
+            可以省略：寒暄、重复内容。
+            只输出摘要正文，不超过 300 字。
+            """;
+
+    private final ChatModel chatModel;
+    private final TokenCountEstimator estimator;
+    private final MonitoredTaskExecutor executor;
+    private final int tokenBudget;
+    private final int keepRecentTokens;
+
+    private final Object[] locks = new Object[64];
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder promptRequests = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAccumulator maxPromptTokens = new LongAccumulator(Math::max, 0);
+    private final LongAdder summaries = new LongAdder();
+    private final LongAdder summarizedTokens = new LongAdder();
+    private final LongAdder summaryTokens = new LongAdder();
+    private final LongAdder summaryFailures = new LongAdder();
+    private final LongAdder hardLimitTrims = new LongAdder();
+    private final LatencyRecorder summaryLatency = new LatencyRecorder(1024);
+
+    /**
+     * @param chatModel        生成摘要使用的模型
+     * @param estimator        token 数估算器
+     * @param executor         执行摘要任务的线程池（不在请求线程上执行）
+     * @param tokenBudget      会话 token 预算，超过后触发摘要
+     * @param keepRecentTokens 摘要时保留的最近对话 token 数
+     */
+    public ConversationSummarizer(ChatModel chatModel, TokenCountEstimator estimator, MonitoredTaskExecutor executor,
+                                  int tokenBudget, int keepRecentTokens) {
+        this.chatModel = chatModel;
+        this.estimator = estimator;
+        this.executor = executor;
+        this.tokenBudget = tokenBudget;
+        this.keepRecentTokens = keepRecentTokens;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 会话级锁（分段），保证同一会话的读改写不交错
+     */
+    Object lockFor(Object memoryId) {
+        return locks[(memoryId.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    int estimate(List<ChatMessage> messages) {
+        return estimator.estimateTokenCountInMessages(messages);
+    }
+
+    /**
+     * 记录一次请求的提示词 token 数；若超过硬上限（两倍预算，摘要尚未完成时）则丢弃最早的对话兜底。
+     * 与摘要切分相同，按整轮丢弃，保留的对话总是从用户消息开始，最后一轮始终保留
+     */
+    List<ChatMessage> prepareForPrompt(List<ChatMessage> messages) {
+        int tokens = estimate(messages);
+        if (tokens > tokenBudget * 2) {
+            hardLimitTrims.increment();
+            int start = headerSize(messages);
+            List<ChatMessage> trimmed = new ArrayList<>(messages);
+            while (tokens > tokenBudget * 2) {
+                int next = start + 1;
+                while (next < trimmed.size() && !(trimmed.get(next) instanceof UserMessage)) {
+                    next++;
+                }
+                if (next >= trimmed.size()) {
+                    break;
+                }
+                trimmed.subList(start, next).clear();
+                tokens = estimate(trimmed);
+            }
+            messages = trimmed;
+        }
+        promptRequests.increment();
+        promptTokens.add(tokens);
+        maxPromptTokens.accumulate(tokens);
+        return messages;
+    }
+
+    /**
+     * 超过预算时提交后台摘要任务；同一会话同时最多一个摘要任务，线程池满时跳过（下次写入时重试）
+     *
+     * @param messages 刚写入存储的完整消息列表，用于估算 token 数，避免再从存储读取
+     */
+    void maybeSummarize(Object memoryId, ChatMemoryStore store, List<ChatMessage> messages) {
+        if (estimate(messages) <= tokenBudget || !inFlight.add(memoryId)) {
+            return;
+        }
+        boolean accepted = executor.tryExecute(() -> {
+            try {
+                summarize(memoryId, store);
+            } catch (Exception e) {
+                summaryFailures.increment();
+                log.warn("会话 {} 摘要失败: {}", memoryId, e.getMessage());
+            } finally {
+                inFlight.remove(memoryId);
+            }
+        });
+        if (!accepted) {
+            inFlight.remove(memoryId);
+        }
+    }
+
+    private void summarize(Object memoryId, ChatMemoryStore store) {
+        List<ChatMessage> snapshot;
+        synchronized (lockFor(memoryId)) {
+            snapshot = new ArrayList<>(store.getMessages(memoryId));
+        }
+        int header = headerSize(snapshot);
+        int cut = cutIndex(snapshot, header);
+        if (cut <= header) {
+            return;
+        }
+
+        String previousSummary = existingSummary(snapshot);
+        List<ChatMessage> toSummarize = snapshot.subList(header, cut);
+        long start = System.nanoTime();
+        String summary = chatModel.chat(
+                SystemMessage.from(SUMMARY_INSTRUCTION),
+                UserMessage.from(render(previousSummary, toSummarize))
+        ).aiMessage().text();
+        summaryLatency.record(System.nanoTime() - start);
+
+        synchronized (lockFor(memoryId)) {
+            List<ChatMessage> current = store.getMessages(memoryId);
+            // 摘要期间只会追加消息；若前缀已变化（如会话被清空），放弃本次摘要
+            if (current.size() < cut || !current.subList(0, cut).equals(snapshot.subList(0, cut))) {
+                return;
+            }
+            List<ChatMessage> rebuilt = new ArrayList<>();
+            if (!snapshot.isEmpty() && snapshot.get(0) instanceof SystemMessage system) {
+                rebuilt.add(system);
+            }
+            rebuilt.add(AiMessage.from(SUMMARY_PREFIX + summary));
+            rebuilt.addAll(current.subList(cut, current.size()));
+            store.updateMessages(memoryId, rebuilt);
+        }
+
+        summaries.increment();
+        summarizedTokens.add(estimate(toSummarize));
+        summaryTokens.add(estimator.estimateTokenCountInText(summary));
+        log.debug("会话 {} 已将 {} 条消息压缩为摘要", memoryId, toSummarize.size());
+    }
+
+    /**
+     * 从末尾向前累计，保留 keepRecentTokens 以内的最近对话；切分点对齐到用户消息，不拆开一问一答
+     */
+    private int cutIndex(List<ChatMessage> messages, int header) {
+        int tokens = 0;
+        int cut = messages.size();
+        while (cut > header) {
+            tokens += estimator.estimateTokenCountInMessage(messages.get(cut - 1));
+            if (tokens > keepRecentTokens) {
+                break;
+            }
+            cut--;
+        }
+        while (cut < messages.size() && !(messages.get(cut) instanceof UserMessage)) {
+            cut++;
+        }
+        return cut;
+    }
+
+    /**
+     * 系统消息和已有摘要构成的头部长度
+     */
+    static int headerSize(List<ChatMessage> messages) {
+        int header = 0;
+        if (header < messages.size() && messages.get(header) instanceof SystemMessage) {
+            header++;
+        }
+        if (header < messages.size() && isSummary(messages.get(header))) {
+            header++;
+        }
+        return header;
+    }
+
+    static boolean isSummary(ChatMessage message) {
+        return message instanceof AiMessage ai && ai.text() != null && ai.text().startsWith(SUMMARY_PREFIX);
+    }
+
+    private static String existingSummary(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (isSummary(message)) {
+                return ((AiMessage) message).text().substring(SUMMARY_PREFIX.length());
+            }
+        }
+        return "";
+    }
+
+    private static String render(String previousSummary, List<ChatMessage> messages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("已有摘要：").append(previousSummary.isEmpty() ? "无" : previousSummary).append("\n\n新增对话：\n");
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage user) {
+                sb.append("患者：").append(user.singleText()).append('\n');
+            } else if (message instanceof AiMessage ai && ai.text() != null) {
+                sb.append("助手：").append(ai.text()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 提示词 token 数及摘要统计
+     */
+    public Map<String, Object> stats() {
+        long requests = promptRequests.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tokenBudget", tokenBudget);
+        stats.put("keepRecentTokens", keepRecentTokens);
+        stats.put("promptRequests", requests);
+        stats.put("avgPromptTokens", requests == 0 ? 0 : promptTokens.sum() / requests);
+        stats.put("maxPromptTokens", maxPromptTokens.get());
+        stats.put("summaries", summaries.sum());
+        stats.put("summarizedTokens", summarizedTokens.sum());
+        stats.put("summaryTokens", summaryTokens.sum());
+        stats.put("summaryFailures", summaryFailures.sum());
+        stats.put("hardLimitTrims", hardLimitTrims.sum());
+        stats.put("inFlight", inFlight.size());
+        stats.put("summaryLatency", summaryLatency.stats());
+        return stats;
+    }
+}
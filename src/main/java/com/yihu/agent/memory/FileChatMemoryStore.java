@@ -0,0 +1,107 @@
+package com.yihu.agent.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 基于文件的持久化会话记忆存储
+ * 每个会话一个 JSON 文件，应用重启后会话记忆仍然可用
+ */
+public class FileChatMemoryStore implements MonitoredChatMemoryStore {
+
+    private final Path directory;
+
+    public FileChatMemoryStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法创建会话记忆目录: " + directory, e);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Path file = fileOf(memoryId);
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+        try {
+            return new ArrayList<>(ChatMessageDeserializer.messagesFromJson(Files.readString(file, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取会话记忆失败: " + memoryId, e);
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Path file = fileOf(memoryId);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            // 先写临时文件再原子替换，避免写到一半时被读取
+            Files.writeString(tmp, ChatMessageSerializer.messagesToJson(messages), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存会话记忆失败: " + memoryId, e);
+        }
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        try {
+            Files.deleteIfExists(fileOf(memoryId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除会话记忆失败: " + memoryId, e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long sessions = 0;
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".json"))::iterator) {
+                sessions++;
+                bytes += Files.size(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "file");
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("sessions", sessions);
+        stats.put("diskBytes", bytes);
+        stats.put("avgBytesPerSession", sessions == 0 ? 0 : bytes / sessions);
+        return stats;
+    }
+
+    /**
+     * 会话 ID 取 SHA-256 作为文件名，不同的 ID 不会映射到同一个文件，也不会逃出存储目录
+     */
+    private Path fileOf(Object memoryId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(memoryId).getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.yihu.agent.memory;
+
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.Map;
+
+/**
+ * 可统计占用的会话记忆存储
+ */
+public interface MonitoredChatMemoryStore extends ChatMemoryStore {
+
+    /**
+     * 活跃会话数、占用字节数等统计信息
+     */
+    Map<String, Object> stats();
+}
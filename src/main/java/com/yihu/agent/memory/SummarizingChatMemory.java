@@ -0,0 +1,67 @@
+package com.yihu.agent.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带滚动摘要的会话记忆
+ * 消息列表结构为：[系统消息] [此前对话摘要] 最近的原始对话……
+ * 写入后若超过 token 预算，由 ConversationSummarizer 在后台压缩较早的对话
+ */
+public class SummarizingChatMemory implements ChatMemory {
+
+    private final Object id;
+    private final ChatMemoryStore store;
+    private final ConversationSummarizer summarizer;
+
+    public SummarizingChatMemory(Object id, ChatMemoryStore store, ConversationSummarizer summarizer) {
+        this.id = id;
+        this.store = store;
+        this.summarizer = summarizer;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages;
+        synchronized (summarizer.lockFor(id)) {
+            messages = new ArrayList<>(store.getMessages(id));
+            if (message instanceof SystemMessage) {
+                // 系统消息只保留一条，始终位于首位
+                if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+                    if (messages.get(0).equals(message)) {
+                        return;
+                    }
+                    messages.set(0, message);
+                } else {
+                    messages.add(0, message);
+                }
+            } else {
+                messages.add(message);
+            }
+            store.updateMessages(id, messages);
+        }
+        summarizer.maybeSummarize(id, store, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return summarizer.prepareForPrompt(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        synchronized (summarizer.lockFor(id)) {
+            store.deleteMessages(id);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.yihu.agent.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟采样记录器
+ * 用固定大小的环形缓冲保存最近的采样，按需计算 p50/p99，内存占用恒定
+ */
+public class LatencyRecorder {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+
+    public LatencyRecorder() {
+        this(4096);
+    }
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long elapsedNanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), elapsedNanos);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * 最近采样的百分位耗时（毫秒）
+     *
+     * @param percentile 0-100
+     */
+    public double percentileMs(double percentile) {
+        long[] sorted = snapshot();
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    /**
+     * 统计快照：采样数、p50、p99、平均值（毫秒）
+     */
+    public Map<String, Object> stats() {
+        long[] sorted = snapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count.get());
+        if (sorted.length == 0) {
+            stats.put("p50Ms", 0.0);
+            stats.put("p99Ms", 0.0);
+            stats.put("avgMs", 0.0);
+            return stats;
+        }
+        stats.put("p50Ms", sorted[(int) Math.ceil(0.50 * sorted.length) - 1] / 1_000_000.0);
+        stats.put("p99Ms", sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1_000_000.0);
+        stats.put("avgMs", Arrays.stream(sorted).average().orElse(0) / 1_000_000.0);
+        return stats;
+    }
+
+    private long[] snapshot() {
+        int size = (int) Math.min(count.get(), samples.length());
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        return copy;
+    }
+}
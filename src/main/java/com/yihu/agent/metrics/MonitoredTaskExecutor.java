@@ -0,0 +1,60 @@
+package com.yihu.agent.metrics;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带监控的有界线程池
+ * 队列满时拒绝任务（由调用方决定降级方式），并统计队列深度、活跃线程数和拒绝次数
+ */
+public class MonitoredTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public MonitoredTaskExecutor(String threadNamePrefix, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        setThreadNamePrefix(threadNamePrefix);
+        setCorePoolSize(corePoolSize);
+        setMaxPoolSize(maxPoolSize);
+        setQueueCapacity(queueCapacity);
+        setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        setWaitForTasksToCompleteOnShutdown(true);
+        setAwaitTerminationSeconds(30);
+    }
+
+    /**
+     * 提交任务，队列已满时返回 false 而不是抛出异常
+     */
+    public boolean tryExecute(Runnable task) {
+        try {
+            execute(task);
+            submitted.increment();
+            return true;
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 线程池运行统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("corePoolSize", getCorePoolSize());
+        stats.put("maxPoolSize", getMaxPoolSize());
+        stats.put("queueCapacity", getQueueCapacity());
+        stats.put("poolSize", getPoolSize());
+        stats.put("activeCount", getActiveCount());
+        stats.put("queueDepth", getQueueSize());
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("completed", getThreadPoolExecutor().getCompletedTaskCount());
+        return stats;
+    }
+}
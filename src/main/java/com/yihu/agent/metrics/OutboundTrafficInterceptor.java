@@ -0,0 +1,43 @@
+package com.yihu.agent.metrics;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出站流量统计拦截器
+ * 统计经 clientOutboundChannel 写给客户端的消息数和负载字节数
+ */
+public class OutboundTrafficInterceptor implements ChannelInterceptor {
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder payloadBytes = new LongAdder();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        messages.increment();
+        if (message.getPayload() instanceof byte[] payload) {
+            payloadBytes.add(payload.length);
+        }
+        return message;
+    }
+
+    public long messages() {
+        return messages.sum();
+    }
+
+    public long payloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("messages", messages.sum());
+        stats.put("payloadBytes", payloadBytes.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,264 @@
+package com.yihu.agent.rag;
+
+import com.yihu.agent.rag.retrieval.Bm25Index;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.parser.TextDocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 医疗文档入库服务
+ * 两级流水线：加载/切分线程把片段放入有界队列，向量化线程按批取出片段、批量向量化并写入向量库；
+ * 有界队列在向量化跟不上时阻塞上游，内存占用与语料规模无关
+ */
+@Slf4j
+@Service
+public class DocumentIngestionService {
+
+    private static final TextSegment END_OF_STREAM = TextSegment.from("\u0000END\u0000");
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private EmbeddingStore<TextSegment> medicalEmbeddingStore;
+
+    /**
+     * 关键词索引，未启用混合检索时为空
+     */
+    @Autowired(required = false)
+    private Bm25Index medicalKeywordIndex;
+
+    @Value("${healthcare.rag.documents-dir:src/main/resources/documents}")
+    private String documentsDir;
+
+    @Value("${healthcare.rag.max-segment-size:300}")
+    private int maxSegmentSize;
+
+    @Value("${healthcare.rag.max-overlap-size:0}")
+    private int maxOverlapSize;
+
+    @Value("${healthcare.rag.ingestion.batch-size:64}")
+    private int batchSize;
+
+    @Value("${healthcare.rag.ingestion.loader-threads:2}")
+    private int loaderThreads;
+
+    @Value("${healthcare.rag.ingestion.embedding-threads:0}")
+    private int embeddingThreads;
+
+    @Value("${healthcare.rag.ingestion.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private final AtomicReference<IngestionReport> lastReport = new AtomicReference<>();
+
+    /**
+     * 最近一次入库的统计，尚未入库时为 null
+     */
+    public IngestionReport lastReport() {
+        return lastReport.get();
+    }
+
+    /**
+     * 入库配置的文档目录
+     */
+    public IngestionReport ingest() throws IOException, InterruptedException {
+        return ingest(Path.of(documentsDir));
+    }
+
+    /**
+     * 入库指定目录下的所有文档（递归）
+     */
+    public IngestionReport ingest(Path directory) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile).toList();
+        }
+        return ingestFiles(directory, files);
+    }
+
+    /**
+     * 入库指定文件
+     *
+     * @param root  文档根目录，文件所在的一级子目录名作为知识库名写入片段元数据
+     * @param files 根目录下的文件
+     */
+    public IngestionReport ingestFiles(Path root, List<Path> files) throws InterruptedException {
+        int embedders = embeddingThreads > 0 ? embeddingThreads : Runtime.getRuntime().availableProcessors();
+        int loaders = Math.max(1, Math.min(loaderThreads, files.size()));
+        log.info("开始文档入库: {} 个文件，加载线程 {}，向量化线程 {}，批大小 {}",
+                files.size(), loaders, embedders, batchSize);
+
+        resetPeakHeap();
+        long start = System.nanoTime();
+
+        BlockingQueue<Path> fileQueue = new ArrayBlockingQueue<>(Math.max(1, files.size()), false, files);
+        BlockingQueue<TextSegment> segmentQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger documents = new AtomicInteger();
+        AtomicInteger segments = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<Throwable> embeddingError = new AtomicReference<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(loaders + embedders, r -> {
+            Thread thread = new Thread(r, "ingestion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            DocumentSplitter splitter = DocumentSplitters.recursive(maxSegmentSize, maxOverlapSize);
+            List<Future<?>> loaderFutures = new ArrayList<>();
+            for (int i = 0; i < loaders; i++) {
+                loaderFutures.add(pool.submit(() -> {
+                    Path file;
+                    while ((file = fileQueue.poll()) != null) {
+                        try {
+                            Document document = FileSystemDocumentLoader.loadDocument(file, new TextDocumentParser());
+                            String knowledgeBase = KnowledgeBases.nameOf(root.relativize(file));
+                            if (knowledgeBase != null) {
+                                document.metadata().put(KnowledgeBases.METADATA_KEY, knowledgeBase);
+                            }
+                            for (TextSegment segment : splitter.split(document)) {
+                                segmentQueue.put(segment);
+                            }
+                            documents.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            log.warn("文档加载失败: {} - {}", file, e.getMessage());
+                        }
+                    }
+                }));
+            }
+
+            List<Future<?>> embedderFutures = new ArrayList<>();
+            for (int i = 0; i < embedders; i++) {
+                embedderFutures.add(pool.submit(() -> {
+                    List<TextSegment> batch = new ArrayList<>(batchSize);
+                    try {
+                        while (true) {
+                            TextSegment segment = segmentQueue.take();
+                            if (segment == END_OF_STREAM) {
+                                break;
+                            }
+                            batch.add(segment);
+                            segmentQueue.drainTo(batch, batchSize - batch.size());
+                            if (batch.remove(END_OF_STREAM)) {
+                                break;
+                            }
+                            if (batch.size() >= batchSize) {
+                                embedBatch(batch, segments, embeddingError);
+                            }
+                        }
+                        embedBatch(batch, segments, embeddingError);
+                        // 其他向量化线程同样需要看到结束标记
+                        segmentQueue.put(END_OF_STREAM);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+
+            await(loaderFutures);
+            segmentQueue.put(END_OF_STREAM);
+            await(embedderFutures);
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        if (embeddingError.get() != null) {
+            throw new IllegalStateException("向量化失败: " + embeddingError.get().getMessage(), embeddingError.get());
+        }
+
+        IngestionReport report = new IngestionReport(documents.get(), segments.get(), failed.get(),
+                (System.nanoTime() - start) / 1_000_000, peakHeap());
+        lastReport.set(report);
+        log.info("文档入库完成: {} 文档，{} 片段，耗时 {} ms（{} 文档/秒，{} 片段/秒），堆峰值 {} MB",
+                report.documents(), report.segments(), report.elapsedMs(),
+                String.format("%.1f", report.documentsPerSecond()), String.format("%.1f", report.segmentsPerSecond()),
+                report.peakHeapBytes() / 1024 / 1024);
+        return report;
+    }
+
+    /**
+     * 向量化并写入一批片段
+     * 出错后记录第一个异常并丢弃后续批次，但继续消费队列，避免上游加载线程阻塞在满队列上
+     */
+    private void embedBatch(List<TextSegment> batch, AtomicInteger segments, AtomicReference<Throwable> error) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (error.get() == null) {
+                List<Embedding> embeddings = embeddingModel.embedAll(batch).content();
+                List<String> ids = medicalEmbeddingStore.addAll(embeddings, batch);
+                if (medicalKeywordIndex != null) {
+                    medicalKeywordIndex.addAll(ids, batch);
+                }
+                segments.addAndGet(batch.size());
+            }
+        } catch (RuntimeException e) {
+            error.compareAndSet(null, e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static void await(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("入库任务异常结束: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
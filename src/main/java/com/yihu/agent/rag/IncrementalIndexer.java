@@ -0,0 +1,398 @@
+package com.yihu.agent.rag;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yihu.agent.rag.retrieval.Bm25Index;
+import com.yihu.agent.rag.store.PersistentEmbeddingStore;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 增量索引器
+ * 为每篇文档和每个片段计算 SHA-256，清单（manifest）记录文档哈希及其片段 ID；
+ * 片段 ID 由“文档路径 + 片段哈希”确定性生成，刷新时只删除消失的片段、只向量化新出现的片段，
+ * 刷新成本与变更量成正比，而不是与语料规模成正比
+ */
+@Slf4j
+@Service
+public class IncrementalIndexer {
+
+    /**
+     * 清单中的文档条目
+     *
+     * @param hash       文档内容哈希
+     * @param segmentIds 文档当前的片段 ID
+     */
+    public record DocumentEntry(String hash, List<String> segmentIds) {
+    }
+
+    /**
+     * 一次刷新的统计
+     *
+     * @param addedDocuments     新增文档数
+     * @param changedDocuments   内容变化的文档数
+     * @param deletedDocuments   删除的文档数
+     * @param unchangedDocuments 未变化（跳过）的文档数
+     * @param embeddedSegments   重新向量化的片段数
+     * @param removedSegments    从向量库删除的片段数
+     * @param elapsedMs          耗时（毫秒）
+     */
+    public record RefreshReport(int addedDocuments,
+                                int changedDocuments,
+                                int deletedDocuments,
+                                int unchangedDocuments,
+                                int embeddedSegments,
+                                int removedSegments,
+                                long elapsedMs) {
+    }
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private EmbeddingStore<TextSegment> medicalEmbeddingStore;
+
+    /**
+     * 关键词索引，未启用混合检索时为空
+     */
+    @Autowired(required = false)
+    private Bm25Index medicalKeywordIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${healthcare.rag.documents-dir:src/main/resources/documents}")
+    private String documentsDir;
+
+    @Value("${healthcare.rag.max-segment-size:300}")
+    private int maxSegmentSize;
+
+    @Value("${healthcare.rag.max-overlap-size:0}")
+    private int maxOverlapSize;
+
+    @Value("${healthcare.rag.ingestion.batch-size:64}")
+    private int batchSize;
+
+    /**
+     * 清单文件路径；为空时使用持久化向量库目录下的 manifest.json，
+     * 向量库不持久化时清单只保存在内存中（两者生命周期一致）
+     */
+    @Value("${healthcare.rag.incremental.manifest-path:}")
+    private String manifestPath;
+
+    @Value("${healthcare.rag.incremental.watch:false}")
+    private boolean watch;
+
+    @Value("${healthcare.rag.incremental.watch-debounce:500ms}")
+    private Duration watchDebounce;
+
+    private Map<String, DocumentEntry> manifest = new HashMap<>();
+
+    private volatile WatchService watchService;
+
+    @PostConstruct
+    public void init() throws IOException {
+        loadManifest();
+        if (watch) {
+            startWatching(Path.of(documentsDir));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        WatchService service = watchService;
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /**
+     * 按配置的文档目录增量刷新
+     */
+    public RefreshReport refresh() throws IOException {
+        return refresh("");
+    }
+
+    /**
+     * 增量刷新文档目录下的一个子目录（如单个知识库）：新增/变化的文档只向量化新片段，删除的文档移除其全部片段。
+     * 清单键始终相对文档目录，只有该子目录下的清单条目参与比对，其他文档保持不变
+     *
+     * @param subdirectory 相对文档目录的子目录，为空时刷新整个文档目录；不允许指向文档目录之外
+     */
+    public synchronized RefreshReport refresh(String subdirectory) throws IOException {
+        long start = System.nanoTime();
+        DocumentSplitter splitter = DocumentSplitters.recursive(maxSegmentSize, maxOverlapSize);
+
+        Path root = Path.of(documentsDir).toAbsolutePath().normalize();
+        Path directory = root.resolve(subdirectory == null ? "" : subdirectory).normalize();
+        if (!directory.startsWith(root)) {
+            throw new IllegalArgumentException("目录不在文档目录内: " + subdirectory);
+        }
+        String prefix = directory.equals(root) ? "" : root.relativize(directory).toString().replace('\\', '/') + "/";
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        int added = 0;
+        int changed = 0;
+        int unchanged = 0;
+        List<String> idsToRemove = new ArrayList<>();
+        List<String> idsToAdd = new ArrayList<>();
+        List<TextSegment> segmentsToAdd = new ArrayList<>();
+        Map<String, DocumentEntry> next = new LinkedHashMap<>();
+        for (Map.Entry<String, DocumentEntry> entry : manifest.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                next.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Path file : files) {
+            String key = root.relativize(file).toString().replace('\\', '/');
+            byte[] content = Files.readAllBytes(file);
+            String documentHash = sha256(content);
+            DocumentEntry previous = manifest.get(key);
+            if (previous != null && previous.hash().equals(documentHash)) {
+                next.put(key, previous);
+                unchanged++;
+                continue;
+            }
+
+            Metadata metadata = Metadata.from("file_name", file.getFileName().toString())
+                    .put("source", key)
+                    .put("doc_hash", documentHash);
+            String knowledgeBase = KnowledgeBases.nameOf(root.relativize(file));
+            if (knowledgeBase != null) {
+                metadata.put(KnowledgeBases.METADATA_KEY, knowledgeBase);
+            }
+            Document document = Document.from(new String(content, StandardCharsets.UTF_8), metadata);
+
+            Set<String> oldIds = previous == null ? Set.of() : new HashSet<>(previous.segmentIds());
+            List<String> newIds = new ArrayList<>();
+            Map<String, Integer> occurrences = new HashMap<>();
+            for (TextSegment segment : splitter.split(document)) {
+                String segmentHash = sha256(segment.text().getBytes(StandardCharsets.UTF_8));
+                // 同一文档中的重复片段按出现次序区分
+                int occurrence = occurrences.merge(segmentHash, 1, Integer::sum);
+                String id = segmentId(key, segmentHash, occurrence);
+                newIds.add(id);
+                if (!oldIds.contains(id)) {
+                    segment.metadata().put("segment_hash", segmentHash);
+                    idsToAdd.add(id);
+                    segmentsToAdd.add(segment);
+                }
+            }
+            Set<String> kept = new HashSet<>(newIds);
+            for (String id : oldIds) {
+                if (!kept.contains(id)) {
+                    idsToRemove.add(id);
+                }
+            }
+
+            next.put(key, new DocumentEntry(documentHash, newIds));
+            if (previous == null) {
+                added++;
+            } else {
+                changed++;
+            }
+        }
+
+        int deleted = 0;
+        for (Map.Entry<String, DocumentEntry> entry : manifest.entrySet()) {
+            if (!next.containsKey(entry.getKey())) {
+                idsToRemove.addAll(entry.getValue().segmentIds());
+                deleted++;
+            }
+        }
+
+        // 先向量化全部新片段，再写入新片段、删除旧片段；向量化失败时向量库和清单保持不变，
+        // 替换期间检索到的是新旧片段之一，而不是两者都缺失
+        List<Embedding> embeddings = new ArrayList<>(segmentsToAdd.size());
+        for (int from = 0; from < segmentsToAdd.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, segmentsToAdd.size());
+            embeddings.addAll(embeddingModel.embedAll(segmentsToAdd.subList(from, to)).content());
+        }
+        if (!segmentsToAdd.isEmpty()) {
+            medicalEmbeddingStore.addAll(idsToAdd, embeddings, segmentsToAdd);
+            if (medicalKeywordIndex != null) {
+                medicalKeywordIndex.addAll(idsToAdd, segmentsToAdd);
+            }
+        }
+        if (!idsToRemove.isEmpty()) {
+            medicalEmbeddingStore.removeAll(idsToRemove);
+            if (medicalKeywordIndex != null) {
+                medicalKeywordIndex.removeAll(idsToRemove);
+            }
+        }
+
+        manifest = next;
+        saveManifest();
+
+        RefreshReport report = new RefreshReport(added, changed, deleted, unchanged,
+                segmentsToAdd.size(), idsToRemove.size(), (System.nanoTime() - start) / 1_000_000);
+        log.info("增量索引完成: 新增 {}，变化 {}，删除 {}，未变化 {} 篇文档；向量化 {} 个片段，删除 {} 个片段，耗时 {} ms",
+                added, changed, deleted, unchanged, report.embeddedSegments(), report.removedSegments(), report.elapsedMs());
+        return report;
+    }
+
+    /**
+     * 向量库是否由增量索引器维护：持久化向量库（启动时只做增量刷新）或清单中已有文档时为 true。
+     * 全量入库生成随机片段 ID，不在清单中，两种方式写入同一向量库会使语料重复
+     */
+    public synchronized boolean ownsStore() {
+        return medicalEmbeddingStore instanceof PersistentEmbeddingStore || !manifest.isEmpty();
+    }
+
+    /**
+     * 当前清单中的文档数
+     */
+    public synchronized int indexedDocuments() {
+        return manifest.size();
+    }
+
+    /**
+     * 监听文档目录，文件变化后（防抖）自动增量刷新
+     */
+    private void startWatching(Path directory) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        registerRecursively(directory);
+        Thread thread = new Thread(() -> watchLoop(directory), "rag-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("已开始监听文档目录: {}", directory.toAbsolutePath());
+    }
+
+    private void watchLoop(Path directory) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean newDirectory = drain(key);
+                // 防抖：批量文件变更合并为一次刷新
+                WatchKey more;
+                while ((more = watchService.poll(watchDebounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    newDirectory |= drain(more);
+                }
+                if (newDirectory) {
+                    registerRecursively(directory);
+                }
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    log.error("文档目录变化后增量刷新失败: {}", e.getMessage(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.info("文档目录监听已停止");
+        } catch (IOException e) {
+            log.error("文档目录监听异常: {}", e.getMessage(), e);
+        }
+    }
+
+    private static boolean drain(WatchKey key) {
+        boolean newDirectory = key.pollEvents().stream()
+                .anyMatch(event -> event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && key.watchable() instanceof Path parent
+                        && event.context() instanceof Path child
+                        && Files.isDirectory(parent.resolve(child)));
+        key.reset();
+        return newDirectory;
+    }
+
+    private void registerRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path dir : paths.filter(Files::isDirectory).toList()) {
+                dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    private Path manifestFile() {
+        if (manifestPath != null && !manifestPath.isBlank()) {
+            return Path.of(manifestPath);
+        }
+        if (medicalEmbeddingStore instanceof PersistentEmbeddingStore persistent) {
+            return persistent.directory().resolve("manifest.json");
+        }
+        return null;
+    }
+
+    private void loadManifest() throws IOException {
+        Path path = manifestFile();
+        if (path != null && Files.exists(path)) {
+            manifest = new HashMap<>(objectMapper.readValue(path.toFile(),
+                    new TypeReference<Map<String, DocumentEntry>>() {
+                    }));
+            log.info("已加载索引清单: {} 篇文档", manifest.size());
+        }
+    }
+
+    /**
+     * 清单先写临时文件再原子替换，避免中途崩溃留下不完整的清单
+     */
+    private void saveManifest() throws IOException {
+        if (manifestFile() == null) {
+            return;
+        }
+        Path path = manifestFile().toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), manifest);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String segmentId(String documentKey, String segmentHash, int occurrence) {
+        String name = documentKey + '\n' + segmentHash + '\n' + occurrence;
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.yihu.agent.rag;
+
+/**
+ * 文档入库统计
+ *
+ * @param documents       处理的文档数
+ * @param segments        生成的片段数
+ * @param failedDocuments 加载或切分失败的文档数
+ * @param elapsedMs       总耗时（毫秒）
+ * @param peakHeapBytes   入库期间堆内存峰值（字节）
+ */
+public record IngestionReport(int documents,
+                              int segments,
+                              int failedDocuments,
+                              long elapsedMs,
+                              long peakHeapBytes) {
+
+    public double documentsPerSecond() {
+        return elapsedMs == 0 ? 0 : documents * 1000.0 / elapsedMs;
+    }
+
+    public double segmentsPerSecond() {
+        return elapsedMs == 0 ? 0 : segments * 1000.0 / elapsedMs;
+    }
+}
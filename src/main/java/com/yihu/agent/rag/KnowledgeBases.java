@@ -0,0 +1,24 @@
+package com.yihu.agent.rag;
+
+import java.nio.file.Path;
+
+/**
+ * 知识库划分
+ * 文档目录下的每个一级子目录是一个知识库，入库时把子目录名写入片段元数据 knowledge_base，
+ * 多知识库路由按该字段过滤检索；直接放在文档目录下的文件不属于任何知识库
+ */
+public final class KnowledgeBases {
+
+    public static final String METADATA_KEY = "knowledge_base";
+
+    private KnowledgeBases() {
+    }
+
+    /**
+     * @param relativePath 文件相对文档目录的路径
+     * @return 知识库名，文件不在子目录中时为 null
+     */
+    public static String nameOf(Path relativePath) {
+        return relativePath.getNameCount() > 1 ? relativePath.getName(0).toString() : null;
+    }
+}
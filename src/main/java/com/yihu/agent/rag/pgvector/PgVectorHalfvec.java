@@ -0,0 +1,76 @@
+package com.yihu.agent.rag.pgvector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+/**
+ * pgvector halfvec 存储
+ * 把 PgVectorEmbeddingStore 建的 vector(n) 列转换为 halfvec(n)（16 位浮点，需要 pgvector 0.7+），
+ * 表和索引体积约减半，召回损失可忽略。PgVectorEmbeddingStore 的写入和检索 SQL 无需修改：
+ * 写入时 vector 参数按赋值转换为 halfvec，检索时向量字面量直接按 halfvec 解析
+ */
+@Slf4j
+public final class PgVectorHalfvec {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private PgVectorHalfvec() {
+    }
+
+    /**
+     * 转换 embedding 列为 halfvec 并重建 HNSW 余弦索引；已经是 halfvec 时只确保索引存在
+     *
+     * @param dataSource 数据源
+     * @param table      PgVectorEmbeddingStore 使用的表名
+     * @param dimension  向量维度
+     */
+    public static void convert(DataSource dataSource, String table, int dimension) throws SQLException {
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("非法表名: " + table);
+        }
+        long before = tableBytes(dataSource, table);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            if (!columnType(connection, table).startsWith("halfvec")) {
+                // PgVectorEmbeddingStore 建的 IVFFlat 索引使用 vector_cosine_ops，转换列类型前需要先删除
+                statement.execute("DROP INDEX IF EXISTS " + table + "_ivfflat_index");
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN embedding TYPE halfvec(" + dimension + ")"
+                        + " USING embedding::halfvec(" + dimension + ")");
+            }
+            statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_halfvec_hnsw_index ON " + table
+                    + " USING hnsw (embedding halfvec_cosine_ops)");
+        }
+        log.info("表 {} 已使用 halfvec 存储，占用 {} KB -> {} KB", table, before / 1024, tableBytes(dataSource, table) / 1024);
+    }
+
+    /**
+     * 表（含索引和 TOAST）的总字节数
+     */
+    public static long tableBytes(DataSource dataSource, String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_total_relation_size(?::regclass)")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static String columnType(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT format_type(atttypid, atttypmod) FROM pg_attribute"
+                        + " WHERE attrelid = ?::regclass AND attname = 'embedding'")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : "";
+            }
+        }
+    }
+}
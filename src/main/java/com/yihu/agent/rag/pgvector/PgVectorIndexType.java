@@ -0,0 +1,22 @@
+package com.yihu.agent.rag.pgvector;
+
+/**
+ * pgvector 近似最近邻索引类型
+ */
+public enum PgVectorIndexType {
+
+    /**
+     * 分层图索引：召回高、检索快，可在空表上建立并随写入增量维护；检索宽度由 hnsw.ef_search 控制
+     */
+    HNSW,
+
+    /**
+     * 倒排聚类索引：构建快、占用小，但聚类中心在建索引时确定，应在数据入库后建立；检索宽度由 ivfflat.probes 控制
+     */
+    IVFFLAT,
+
+    /**
+     * 不建向量索引，精确扫描（小表或基准对照）
+     */
+    NONE
+}
@@ -0,0 +1,55 @@
+package com.yihu.agent.rag.pgvector;
+
+import java.util.regex.Pattern;
+
+/**
+ * pgvector 向量库参数
+ *
+ * @param table          表名
+ * @param dimension      向量维度
+ * @param indexType      近似最近邻索引类型
+ * @param halfvec        是否以 halfvec（16 位浮点）存储，表和索引体积约减半，需要 pgvector 0.7+
+ * @param m              HNSW 每个节点的邻居数
+ * @param efConstruction HNSW 构建时的候选集大小
+ * @param lists          IVFFlat 聚类数，建议约为 行数 / 1000
+ * @param efSearch       HNSW 默认检索候选集大小
+ * @param probes         IVFFlat 默认检索的聚类数
+ * @param batchSize      批量写入时每个事务的行数
+ * @param iterativeScan  带过滤条件检索时启用迭代扫描，过滤后结果不足时继续扫描索引，需要 pgvector 0.8+
+ * @param createTable    启动时自动建表和索引
+ */
+public record PgVectorSettings(String table,
+                               int dimension,
+                               PgVectorIndexType indexType,
+                               boolean halfvec,
+                               int m,
+                               int efConstruction,
+                               int lists,
+                               int efSearch,
+                               int probes,
+                               int batchSize,
+                               boolean iterativeScan,
+                               boolean createTable) {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    public PgVectorSettings {
+        if (table == null || !IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("非法表名: " + table);
+        }
+        if (dimension <= 0 || m <= 1 || efConstruction <= 0 || lists <= 0
+                || efSearch <= 0 || probes <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("pgvector 参数必须为正数");
+        }
+        if (indexType == null) {
+            indexType = PgVectorIndexType.HNSW;
+        }
+    }
+
+    /**
+     * 向量列类型名（vector 或 halfvec）
+     */
+    public String vectorType() {
+        return halfvec ? "halfvec" : "vector";
+    }
+}
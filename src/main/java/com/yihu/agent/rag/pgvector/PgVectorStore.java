@@ -0,0 +1,501 @@
+package com.yihu.agent.rag.pgvector;
+
+import com.yihu.agent.rag.store.ScannableEmbeddingStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于 pgvector 的向量库
+ * 相比 langchain4j 自带的 PgVectorEmbeddingStore：
+ * <ul>
+ *     <li>支持 HNSW 与 IVFFlat 两种索引，检索宽度（hnsw.ef_search / ivfflat.probes）可逐次查询调整，
+ *     通过事务内的 set_config(..., true) 设置，不会污染连接池中的其他会话</li>
+ *     <li>批量写入走 COPY 到会话临时表再 upsert，每批一个事务，而不是每行一次往返</li>
+ *     <li>元数据过滤翻译为 JSONB 条件在数据库内执行（见 {@link SqlFilter}），配合 GIN 索引</li>
+ * </ul>
+ * 数据源由调用方提供（生产环境使用连接池）；相似度为余弦相似度
+ */
+@Slf4j
+public class PgVectorStore implements EmbeddingStore<TextSegment>, ScannableEmbeddingStore {
+
+    private static final String UPSERT_CLAUSE = " ON CONFLICT (embedding_id) DO UPDATE SET"
+            + " embedding = EXCLUDED.embedding, text = EXCLUDED.text, metadata = EXCLUDED.metadata";
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final DataSource dataSource;
+    private final PgVectorSettings settings;
+    private final String table;
+    private final String vectorType;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public PgVectorStore(DataSource dataSource, PgVectorSettings settings) {
+        this.dataSource = dataSource;
+        this.settings = settings;
+        this.table = settings.table();
+        this.vectorType = settings.vectorType();
+        if (settings.createTable()) {
+            try {
+                createTable();
+                createIndex();
+            } catch (SQLException e) {
+                throw new IllegalStateException("初始化 pgvector 表失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public PgVectorSettings settings() {
+        return settings;
+    }
+
+    /**
+     * 建表（已存在时跳过）及元数据 GIN 索引
+     */
+    public void createTable() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "embedding_id UUID PRIMARY KEY, "
+                    + "embedding " + vectorType + "(" + settings.dimension() + ") NOT NULL, "
+                    + "text TEXT, "
+                    + "metadata JSONB NOT NULL DEFAULT '{}')");
+            statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_metadata_index ON " + table
+                    + " USING gin (metadata jsonb_path_ops)");
+        }
+    }
+
+    /**
+     * 按配置建立向量索引（已存在时跳过）
+     * IVFFlat 的聚类中心取自建索引时的数据，大批量入库后应先 {@link #dropIndex()} 再重建
+     */
+    public void createIndex() throws SQLException {
+        String ops = vectorType + "_cosine_ops";
+        String sql = switch (settings.indexType()) {
+            case HNSW -> "CREATE INDEX IF NOT EXISTS " + table + "_hnsw_index ON " + table
+                    + " USING hnsw (embedding " + ops + ")"
+                    + " WITH (m = " + settings.m() + ", ef_construction = " + settings.efConstruction() + ")";
+            case IVFFLAT -> "CREATE INDEX IF NOT EXISTS " + table + "_ivfflat_index ON " + table
+                    + " USING ivfflat (embedding " + ops + ")"
+                    + " WITH (lists = " + settings.lists() + ")";
+            case NONE -> null;
+        };
+        if (sql == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        log.info("pgvector 表 {} 的 {} 索引就绪，耗时 {} ms",
+                table, settings.indexType(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 删除向量索引（大批量入库前删除、入库后重建通常比边写边维护索引快）
+     */
+    public void dropIndex() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP INDEX IF EXISTS " + table + "_hnsw_index");
+            statement.execute("DROP INDEX IF EXISTS " + table + "_ivfflat_index");
+        }
+    }
+
+    /**
+     * 表中的行数
+     */
+    public long size() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询 pgvector 行数失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 流式遍历全部带文本的记录（游标分批读取，不一次性载入内存）
+     */
+    @Override
+    public void forEachSegment(BiConsumer<String, TextSegment> consumer) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL 驱动只在事务内按 fetchSize 使用游标
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(settings.batchSize());
+                try (ResultSet resultSet = statement.executeQuery(
+                        "SELECT embedding_id, text, metadata FROM " + table + " WHERE text IS NOT NULL")) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getString("embedding_id"), TextSegment.from(
+                                resultSet.getString("text"), parseMetadata(resultSet.getString("metadata"))));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("遍历 pgvector 记录失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    /**
+     * 批量 upsert：按 batchSize 分批，每批一个事务
+     * 同一批内重复的 id 只保留最后一次写入（ON CONFLICT 不允许一条语句两次更新同一行）
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids、embeddings 与 embedded 数量不一致");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean copy = connection.isWrapperFor(PGConnection.class);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < ids.size(); from += settings.batchSize()) {
+                    int to = Math.min(from + settings.batchSize(), ids.size());
+                    Map<String, Integer> lastIndexById = new LinkedHashMap<>();
+                    for (int i = from; i < to; i++) {
+                        lastIndexById.put(ids.get(i), i);
+                    }
+                    List<Integer> rows = new ArrayList<>(lastIndexById.values());
+                    if (copy) {
+                        copyBatch(connection, rows, ids, embeddings, embedded);
+                    } else {
+                        insertBatch(connection, rows, ids, embeddings, embedded);
+                    }
+                    connection.commit();
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("写入 pgvector 失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * COPY 到会话级临时表（事务提交时清空），再一条 INSERT ... ON CONFLICT 合并到正式表
+     */
+    private void copyBatch(Connection connection, List<Integer> rows, List<String> ids,
+                           List<Embedding> embeddings, List<TextSegment> embedded) throws SQLException {
+        String staging = table + "_staging";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + staging
+                    + " (LIKE " + table + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+        }
+        StringBuilder data = new StringBuilder(rows.size() * (settings.dimension() * 12 + 256));
+        for (int i : rows) {
+            TextSegment segment = embedded == null ? null : embedded.get(i);
+            data.append(UUID.fromString(ids.get(i))).append('\t');
+            appendVector(data, embeddings.get(i).vector());
+            data.append('\t');
+            appendCopyText(data, segment == null ? null : segment.text());
+            data.append('\t');
+            appendCopyText(data, metadataJson(segment));
+            data.append('\n');
+        }
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + staging + " (embedding_id, embedding, text, metadata) FROM STDIN",
+                    new StringReader(data.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY 写入失败: " + e.getMessage(), e);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO " + table + " (embedding_id, embedding, text, metadata)"
+                    + " SELECT embedding_id, embedding, text, metadata FROM " + staging
+                    + UPSERT_CLAUSE);
+        }
+    }
+
+    /**
+     * 非 PostgreSQL 原生连接（如被代理包装且不支持 unwrap）时退化为 JDBC 批量 INSERT
+     */
+    private void insertBatch(Connection connection, List<Integer> rows, List<String> ids,
+                             List<Embedding> embeddings, List<TextSegment> embedded) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + table + " (embedding_id, embedding, text, metadata)"
+                        + " VALUES (?, ?::" + vectorType + ", ?, ?::jsonb)" + UPSERT_CLAUSE)) {
+            for (int i : rows) {
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                statement.setObject(1, UUID.fromString(ids.get(i)));
+                statement.setString(2, vectorLiteral(embeddings.get(i).vector()));
+                statement.setString(3, segment == null ? null : segment.text());
+                statement.setString(4, metadataJson(segment));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE embedding_id = ANY (?)")) {
+            statement.setArray(1, connection.createArrayOf("uuid", ids.stream().map(UUID::fromString).toArray()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("删除 pgvector 记录失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        SqlFilter where = SqlFilter.of(filter);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE " + where.sql())) {
+            bind(statement, 1, where.parameters());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("删除 pgvector 记录失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE " + table);
+        } catch (SQLException e) {
+            throw new IllegalStateException("清空 pgvector 表失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 使用配置的默认检索宽度
+     */
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        int width = settings.indexType() == PgVectorIndexType.IVFFLAT ? settings.probes() : settings.efSearch();
+        return search(request, width);
+    }
+
+    /**
+     * 指定本次检索宽度：HNSW 为 ef_search（不小于 maxResults），IVFFlat 为 probes；宽度越大召回越高、越慢
+     */
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int width) {
+        SqlFilter where = request.filter() == null ? null : SqlFilter.of(request.filter());
+        String query = vectorLiteral(request.queryEmbedding().vector());
+        String sql = "SELECT embedding_id, embedding, text, metadata, embedding <=> ?::" + vectorType + " AS distance"
+                + " FROM " + table
+                + (where == null ? "" : " WHERE " + where.sql())
+                + " ORDER BY distance LIMIT ?";
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            // set_config 的第三个参数为 true 时只在当前事务内生效，归还连接后不影响其他请求
+            connection.setAutoCommit(false);
+            try {
+                applySearchSettings(connection, request, width, where != null);
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, query);
+                    int next = bind(statement, 2, where == null ? List.of() : where.parameters());
+                    statement.setInt(next, request.maxResults());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            double score = RelevanceScore.fromCosineSimilarity(1 - resultSet.getDouble("distance"));
+                            if (score < request.minScore()) {
+                                continue;
+                            }
+                            String text = resultSet.getString("text");
+                            TextSegment segment = text == null ? null
+                                    : TextSegment.from(text, parseMetadata(resultSet.getString("metadata")));
+                            matches.add(new EmbeddingMatch<>(score, resultSet.getString("embedding_id"),
+                                    Embedding.from(parseVector(resultSet.getString("embedding"))), segment));
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("pgvector 检索失败: " + e.getMessage(), e);
+        }
+        // 迭代扫描的 relaxed_order 模式下结果可能略有乱序
+        matches.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> match) -> match.score()).reversed());
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    private void applySearchSettings(Connection connection, EmbeddingSearchRequest request,
+                                     int width, boolean filtered) throws SQLException {
+        String prefix = switch (settings.indexType()) {
+            case HNSW -> {
+                setLocal(connection, "hnsw.ef_search", String.valueOf(Math.max(width, request.maxResults())));
+                yield "hnsw";
+            }
+            case IVFFLAT -> {
+                setLocal(connection, "ivfflat.probes", String.valueOf(Math.min(width, settings.lists())));
+                yield "ivfflat";
+            }
+            case NONE -> null;
+        };
+        if (prefix != null && filtered && settings.iterativeScan()) {
+            setLocal(connection, prefix + ".iterative_scan", "relaxed_order");
+        }
+    }
+
+    private static void setLocal(Connection connection, String name, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT set_config(?, ?, true)")) {
+            statement.setString(1, name);
+            statement.setString(2, value);
+            statement.execute();
+        }
+    }
+
+    private static int bind(PreparedStatement statement, int index, List<Object> parameters) throws SQLException {
+        for (Object parameter : parameters) {
+            statement.setObject(index++, parameter);
+        }
+        return index;
+    }
+
+    private String metadataJson(TextSegment segment) {
+        if (segment == null) {
+            return "{}";
+        }
+        try {
+            return objectMapper.writeValueAsString(segment.metadata().toMap());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化元数据: " + e.getMessage(), e);
+        }
+    }
+
+    private Metadata parseMetadata(String json) {
+        if (json == null || json.isEmpty()) {
+            return new Metadata();
+        }
+        try {
+            return Metadata.from(objectMapper.readValue(json, METADATA_TYPE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("无法解析元数据: " + e.getMessage(), e);
+        }
+    }
+
+    static String vectorLiteral(float[] vector) {
+        StringBuilder builder = new StringBuilder(vector.length * 12);
+        appendVector(builder, vector);
+        return builder.toString();
+    }
+
+    private static void appendVector(StringBuilder builder, float[] vector) {
+        builder.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(vector[i]);
+        }
+        builder.append(']');
+    }
+
+    static float[] parseVector(String literal) {
+        String body = literal.substring(1, literal.length() - 1);
+        if (body.isEmpty()) {
+            return new float[0];
+        }
+        String[] parts = body.split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+
+    /**
+     * COPY 文本格式转义：反斜杠、制表符、换行、回车；null 写作 \N
+     */
+    static void appendCopyText(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> builder.append("\\\\");
+                case '\t' -> builder.append("\\t");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                default -> builder.append(c);
+            }
+        }
+    }
+}
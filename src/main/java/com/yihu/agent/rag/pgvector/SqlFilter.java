@@ -0,0 +1,114 @@
+package com.yihu.agent.rag.pgvector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 把 langchain4j 元数据过滤条件翻译为 JSONB 上的 SQL 条件，在数据库内过滤而不是取回后再筛
+ * 相等判断使用 {@code metadata @> ?::jsonb}，可命中 jsonb_path_ops GIN 索引；
+ * 所有键和值都以参数绑定，不拼接进 SQL
+ *
+ * @param sql        条件片段（不含 WHERE）
+ * @param parameters 按出现顺序绑定的参数
+ */
+record SqlFilter(String sql, List<Object> parameters) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static SqlFilter of(Filter filter) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = translate(filter, parameters);
+        return new SqlFilter(sql, parameters);
+    }
+
+    private static String translate(Filter filter, List<Object> parameters) {
+        if (filter instanceof And and) {
+            return "(" + translate(and.left(), parameters) + " AND " + translate(and.right(), parameters) + ")";
+        }
+        if (filter instanceof Or or) {
+            return "(" + translate(or.left(), parameters) + " OR " + translate(or.right(), parameters) + ")";
+        }
+        if (filter instanceof Not not) {
+            return "(NOT " + translate(not.expression(), parameters) + ")";
+        }
+        if (filter instanceof IsEqualTo equalTo) {
+            return contains(equalTo.key(), equalTo.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsNotEqualTo notEqualTo) {
+            // 与进程内实现一致：缺少该键的记录视为“不相等”
+            return "(NOT " + contains(notEqualTo.key(), notEqualTo.comparisonValue(), parameters) + ")";
+        }
+        if (filter instanceof IsIn in) {
+            return anyOf(in.key(), in.comparisonValues(), parameters);
+        }
+        if (filter instanceof IsNotIn notIn) {
+            return "(NOT " + anyOf(notIn.key(), notIn.comparisonValues(), parameters) + ")";
+        }
+        if (filter instanceof IsGreaterThan greaterThan) {
+            return compare(greaterThan.key(), ">", greaterThan.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greaterThanOrEqualTo) {
+            return compare(greaterThanOrEqualTo.key(), ">=", greaterThanOrEqualTo.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsLessThan lessThan) {
+            return compare(lessThan.key(), "<", lessThan.comparisonValue(), parameters);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lessThanOrEqualTo) {
+            return compare(lessThanOrEqualTo.key(), "<=", lessThanOrEqualTo.comparisonValue(), parameters);
+        }
+        throw new UnsupportedOperationException("不支持的过滤条件: " + filter.getClass().getSimpleName());
+    }
+
+    private static String contains(String key, Object value, List<Object> parameters) {
+        try {
+            parameters.add(JSON.writeValueAsString(Map.of(key, jsonValue(value))));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化过滤值: " + value, e);
+        }
+        return "metadata @> ?::jsonb";
+    }
+
+    private static String anyOf(String key, Collection<?> values, List<Object> parameters) {
+        if (values.isEmpty()) {
+            return "FALSE";
+        }
+        List<String> terms = new ArrayList<>(values.size());
+        for (Object value : values) {
+            terms.add(contains(key, value, parameters));
+        }
+        return "(" + String.join(" OR ", terms) + ")";
+    }
+
+    private static String compare(String key, String operator, Object value, List<Object> parameters) {
+        parameters.add(key);
+        if (value instanceof Number number) {
+            parameters.add(new BigDecimal(number.toString()));
+            return "(metadata ->> ?)::numeric " + operator + " ?";
+        }
+        parameters.add(value.toString());
+        return "metadata ->> ? " + operator + " ?";
+    }
+
+    private static Object jsonValue(Object value) {
+        return value instanceof UUID ? value.toString() : value;
+    }
+}
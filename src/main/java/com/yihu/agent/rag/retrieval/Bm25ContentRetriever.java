@@ -0,0 +1,33 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 {@link Bm25Index} 的关键词检索器
+ * 返回的内容带有 EMBEDDING_ID 元数据，便于与向量检索结果按 ID 融合
+ */
+public class Bm25ContentRetriever implements ContentRetriever {
+
+    private final Bm25Index index;
+    private final int maxResults;
+
+    public Bm25ContentRetriever(Bm25Index index, int maxResults) {
+        this.index = index;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        return index.search(query.text(), maxResults).stream()
+                .map(hit -> Content.from(hit.segment(), Map.of(
+                        ContentMetadata.SCORE, hit.score(),
+                        ContentMetadata.EMBEDDING_ID, hit.id())))
+                .toList();
+    }
+}
@@ -0,0 +1,199 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内 BM25 倒排索引
+ * 与向量库使用相同的片段 ID，由入库流程同步写入和删除；检索只遍历查询词的倒排表，
+ * 耗时与命中文档数成正比。读写锁保护，检索可并发执行
+ */
+public class Bm25Index {
+
+    /**
+     * 一条检索结果
+     *
+     * @param id      片段 ID（与向量库一致）
+     * @param segment 片段
+     * @param score   BM25 得分
+     */
+    public record Hit(String id, TextSegment segment, double score) {
+    }
+
+    /**
+     * 已索引的片段：distinctTerms 用于删除时定位倒排表
+     */
+    private record IndexedSegment(TextSegment segment, int length, String[] distinctTerms) {
+    }
+
+    private static final Comparator<Hit> LOWEST_FIRST = Comparator.comparingDouble(Hit::score);
+
+    private final double k1;
+    private final double b;
+
+    private final Map<String, IndexedSegment> segments = new HashMap<>();
+    /**
+     * 词 -> (片段 ID -> 词频)
+     */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public Bm25Index() {
+        this(1.2, 0.75);
+    }
+
+    /**
+     * @param k1 词频饱和参数
+     * @param b  文档长度归一化参数
+     */
+    public Bm25Index(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(String id, TextSegment segment) {
+        addAll(List.of(id), List.of(segment));
+    }
+
+    /**
+     * 写入一批片段，ID 已存在时覆盖
+     */
+    public void addAll(List<String> ids, List<TextSegment> segmentsToAdd) {
+        if (ids.size() != segmentsToAdd.size()) {
+            throw new IllegalArgumentException("ids 与 segments 数量不一致");
+        }
+        // 分词在锁外完成
+        List<Map<String, Integer>> termFrequencies = new ArrayList<>(ids.size());
+        List<Integer> lengths = new ArrayList<>(ids.size());
+        for (TextSegment segment : segmentsToAdd) {
+            List<String> tokens = ChineseTokenizer.tokenize(segment.text());
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            termFrequencies.add(frequencies);
+            lengths.add(tokens.size());
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                remove(id);
+                Map<String, Integer> frequencies = termFrequencies.get(i);
+                frequencies.forEach((term, frequency) ->
+                        postings.computeIfAbsent(term, key -> new HashMap<>()).put(id, frequency));
+                segments.put(id, new IndexedSegment(segmentsToAdd.get(i), lengths.get(i),
+                        frequencies.keySet().toArray(String[]::new)));
+                totalLength += lengths.get(i);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            postings.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索得分最高的 maxResults 个片段；查询中重复的词只计一次
+     */
+    public List<Hit> search(String query, int maxResults) {
+        Set<String> terms = new LinkedHashSet<>(ChineseTokenizer.tokenize(query));
+        if (terms.isEmpty() || maxResults <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int documentCount = segments.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documentCount;
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((id, frequency) -> {
+                    double norm = k1 * (1 - b + b * segments.get(id).length() / averageLength);
+                    scores.merge(id, idf * frequency * (k1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(maxResults + 1, LOWEST_FIRST);
+            scores.forEach((id, score) -> {
+                if (top.size() < maxResults) {
+                    top.add(new Hit(id, segments.get(id).segment(), score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new Hit(id, segments.get(id).segment(), score));
+                }
+            });
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(LOWEST_FIRST.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(String id) {
+        IndexedSegment existing = segments.remove(id);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.distinctTerms()) {
+            Map<String, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= existing.length();
+    }
+}
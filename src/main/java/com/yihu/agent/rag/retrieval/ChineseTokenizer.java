@@ -0,0 +1,59 @@
+package com.yihu.agent.rag.retrieval;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 面向中文医疗文本的分词器
+ * 汉字连续段切为重叠二元组（“布洛芬” -> “布洛”“洛芬”），单个汉字保留为一元词；
+ * 字母数字连续段作为一个词（药名、剂量如 “ibuprofen”“500mg”）；标点和空白丢弃。
+ * 不依赖词典，新药名和专有名词同样能被精确匹配；全角字符先按 NFKC 归一化并转小写
+ */
+public final class ChineseTokenizer {
+
+    private ChineseTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isHan(codePoint)) {
+                int previous = -1;
+                int runLength = 0;
+                while (i < length && isHan(codePoint = normalized.codePointAt(i))) {
+                    if (previous >= 0) {
+                        tokens.add(new StringBuilder(4).appendCodePoint(previous).appendCodePoint(codePoint).toString());
+                    }
+                    previous = codePoint;
+                    runLength++;
+                    i += Character.charCount(codePoint);
+                }
+                if (runLength == 1) {
+                    tokens.add(new String(Character.toChars(previous)));
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length && !isHan(codePoint = normalized.codePointAt(i)) && Character.isLetterOrDigit(codePoint)) {
+                    i += Character.charCount(codePoint);
+                }
+                tokens.add(normalized.substring(start, i));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
@@ -0,0 +1,124 @@
+package com.yihu.agent.rag.retrieval;
+
+import com.yihu.agent.vector.VectorMath;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.rag.query.router.QueryRouter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于向量相似度的查询路由器，替代 LanguageModelQueryRouter
+ * 每个检索器的描述（及示例问题）在构建时向量化并求质心；路由时只需一次本地向量化和几次点积，
+ * 省去一次阻塞的大模型调用。
+ * 最相似检索器的相似度达到 minSimilarity 时，返回与其相差不超过 margin 的检索器；
+ * 否则视为无法判断，扇出到全部检索器（DefaultRetrievalAugmentor 会并发执行，
+ * 配合 {@link TimeLimitedContentRetriever} 限制单个检索器的耗时）
+ */
+@Slf4j
+public class EmbeddingQueryRouter implements QueryRouter {
+
+    private final EmbeddingModel embeddingModel;
+    private final List<ContentRetriever> retrievers = new ArrayList<>();
+    private final List<float[]> centroids = new ArrayList<>();
+    private final double minSimilarity;
+    private final double margin;
+
+    private final LongAdder routed = new LongAdder();
+    private final LongAdder fannedOut = new LongAdder();
+
+    /**
+     * @param embeddingModel      向量模型，用于向量化检索器描述和查询
+     * @param retrieverToExamples 每个检索器的描述和示例问题
+     * @param minSimilarity       选定检索器所需的最小余弦相似度，低于该值时扇出到全部检索器
+     * @param margin              与最佳检索器相似度相差不超过该值的检索器一并返回
+     */
+    public EmbeddingQueryRouter(EmbeddingModel embeddingModel,
+                                Map<ContentRetriever, ? extends Collection<String>> retrieverToExamples,
+                                double minSimilarity,
+                                double margin) {
+        if (retrieverToExamples.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个检索器");
+        }
+        this.embeddingModel = embeddingModel;
+        this.minSimilarity = minSimilarity;
+        this.margin = margin;
+        retrieverToExamples.forEach((retriever, examples) -> {
+            if (examples.isEmpty()) {
+                throw new IllegalArgumentException("检索器缺少描述: " + retriever);
+            }
+            List<TextSegment> segments = examples.stream().map(TextSegment::from).toList();
+            retrievers.add(retriever);
+            centroids.add(centroid(embeddingModel.embedAll(segments).content()));
+        });
+    }
+
+    /**
+     * 与 LanguageModelQueryRouter 相同的入参：每个检索器一句描述
+     */
+    public static EmbeddingQueryRouter fromDescriptions(EmbeddingModel embeddingModel,
+                                                        Map<ContentRetriever, String> retrieverToDescription,
+                                                        double minSimilarity) {
+        Map<ContentRetriever, List<String>> examples = new LinkedHashMap<>();
+        retrieverToDescription.forEach((retriever, description) -> examples.put(retriever, List.of(description)));
+        return new EmbeddingQueryRouter(embeddingModel, examples, minSimilarity, 0.05);
+    }
+
+    @Override
+    public Collection<ContentRetriever> route(Query query) {
+        routed.increment();
+        float[] vector = VectorMath.normalize(embeddingModel.embed(query.text()).content().vector());
+        double[] similarities = new double[centroids.size()];
+        double best = -1;
+        for (int i = 0; i < centroids.size(); i++) {
+            similarities[i] = VectorMath.dot(vector, centroids.get(i));
+            best = Math.max(best, similarities[i]);
+        }
+        if (best < minSimilarity) {
+            fannedOut.increment();
+            log.debug("查询与各检索器的最高相似度 {} 低于阈值，扇出到全部 {} 个检索器", best, retrievers.size());
+            return List.copyOf(retrievers);
+        }
+        List<ContentRetriever> selected = new ArrayList<>();
+        for (int i = 0; i < retrievers.size(); i++) {
+            if (similarities[i] >= best - margin) {
+                selected.add(retrievers.get(i));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 路由统计：总次数与扇出次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retrievers", retrievers.size());
+        stats.put("routed", routed.sum());
+        stats.put("fannedOut", fannedOut.sum());
+        return stats;
+    }
+
+    /**
+     * 归一化向量的均值再归一化
+     */
+    private static float[] centroid(List<Embedding> embeddings) {
+        float[] sum = new float[embeddings.get(0).dimension()];
+        for (Embedding embedding : embeddings) {
+            float[] normalized = VectorMath.normalize(embedding.vector());
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += normalized[i];
+            }
+        }
+        return VectorMath.normalize(sum);
+    }
+}
@@ -0,0 +1,67 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.aggregator.ContentAggregator;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 倒数排名融合（RRF）聚合器
+ * 各检索器（向量、关键词）的得分量纲不同，只按排名融合：score = Σ 1 / (k + rank)；
+ * 同一片段按 EMBEDDING_ID 去重（无 ID 时按文本），最终只保留前 maxResults 个，控制提示词长度。
+ * 与默认聚合器不同，融合后的内容数量有上限
+ */
+public class ReciprocalRankFusionAggregator implements ContentAggregator {
+
+    private final int k;
+    private final int maxResults;
+
+    /**
+     * @param k          平滑常数，越大排名靠后的结果权重衰减越慢（常用 60）
+     * @param maxResults 融合后保留的内容数
+     */
+    public ReciprocalRankFusionAggregator(int k, int maxResults) {
+        this.k = k;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public List<Content> aggregate(Map<Query, Collection<List<Content>>> queryToContents) {
+        Map<Object, Double> scores = new HashMap<>();
+        Map<Object, Content> contents = new LinkedHashMap<>();
+        for (Collection<List<Content>> lists : queryToContents.values()) {
+            for (List<Content> list : lists) {
+                for (int rank = 0; rank < list.size(); rank++) {
+                    Content content = list.get(rank);
+                    Object key = key(content);
+                    scores.merge(key, 1.0 / (k + rank + 1), Double::sum);
+                    contents.putIfAbsent(key, content);
+                }
+            }
+        }
+
+        List<Object> keys = new ArrayList<>(contents.keySet());
+        // 稳定排序：同分时保持首次出现的顺序
+        keys.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<Content> fused = new ArrayList<>(Math.min(maxResults, keys.size()));
+        for (Object key : keys.subList(0, Math.min(maxResults, keys.size()))) {
+            Content content = contents.get(key);
+            Map<ContentMetadata, Object> metadata = new HashMap<>(content.metadata());
+            metadata.put(ContentMetadata.SCORE, scores.get(key));
+            fused.add(Content.from(content.textSegment(), metadata));
+        }
+        return fused;
+    }
+
+    private static Object key(Content content) {
+        Object id = content.metadata().get(ContentMetadata.EMBEDDING_ID);
+        return id != null ? id : content.textSegment().text();
+    }
+}
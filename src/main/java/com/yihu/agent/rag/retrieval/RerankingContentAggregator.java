@@ -0,0 +1,147 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.aggregator.ContentAggregator;
+import dev.langchain4j.rag.query.Query;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 重排序聚合器
+ * 先由 candidateAggregator（如 RRF 融合）得到较大的候选池，再用本地交叉编码器（ONNX 打分模型）
+ * 对“查询-片段”逐对打分，只把得分最高的 maxResults 个片段送进提示词。
+ * 候选按 batchSize 分批，在独立线程池上并行打分；线程池满时在调用线程上打分，打分失败时退回候选池顺序
+ */
+@Slf4j
+public class RerankingContentAggregator implements ContentAggregator {
+
+    private final ScoringModel scoringModel;
+    private final ContentAggregator candidateAggregator;
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxResults;
+    private final double minScore;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder scoredCandidates = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param scoringModel        交叉编码器打分模型
+     * @param candidateAggregator 产生候选池的聚合器，其结果数量即候选池大小
+     * @param executor            打分线程池
+     * @param batchSize           每批打分的片段数
+     * @param maxResults          重排序后保留的片段数
+     * @param minScore            最低重排序得分，低于该值的片段丢弃
+     */
+    public RerankingContentAggregator(ScoringModel scoringModel, ContentAggregator candidateAggregator,
+                                      Executor executor, int batchSize, int maxResults, double minScore) {
+        this.scoringModel = scoringModel;
+        this.candidateAggregator = candidateAggregator;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxResults = maxResults;
+        this.minScore = minScore;
+    }
+
+    @Override
+    public List<Content> aggregate(Map<Query, Collection<List<Content>>> queryToContents) {
+        List<Content> candidates = candidateAggregator.aggregate(queryToContents);
+        if (candidates.isEmpty() || queryToContents.isEmpty()) {
+            return candidates;
+        }
+        // 经过查询改写时有多个查询，以第一个（原始查询）作为打分依据
+        String query = queryToContents.keySet().iterator().next().text();
+
+        requests.increment();
+        long start = System.nanoTime();
+        List<Double> scores;
+        try {
+            scores = score(query, candidates);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("重排序打分失败，使用候选池顺序: {}", e.getMessage());
+            return candidates.subList(0, Math.min(maxResults, candidates.size()));
+        }
+        scoringNanos.add(System.nanoTime() - start);
+        scoredCandidates.add(candidates.size());
+
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (scores.get(i) >= minScore) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores.get(i)).reversed());
+
+        List<Content> reranked = new ArrayList<>(Math.min(maxResults, order.size()));
+        for (int i : order.subList(0, Math.min(maxResults, order.size()))) {
+            Content content = candidates.get(i);
+            Map<ContentMetadata, Object> metadata = new HashMap<>(content.metadata());
+            metadata.put(ContentMetadata.RERANKED_SCORE, scores.get(i));
+            reranked.add(Content.from(content.textSegment(), metadata));
+        }
+        return reranked;
+    }
+
+    /**
+     * 分批并行打分，返回与 candidates 顺序一致的得分
+     */
+    private List<Double> score(String query, List<Content> candidates) {
+        List<CompletableFuture<List<Double>>> futures = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            List<TextSegment> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()))
+                    .stream().map(Content::textSegment).toList();
+            futures.add(submit(() -> scoringModel.scoreAll(batch, query).content()));
+        }
+        List<Double> scores = new ArrayList<>(candidates.size());
+        try {
+            for (CompletableFuture<List<Double>> future : futures) {
+                scores.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return scores;
+    }
+
+    private CompletableFuture<List<Double>> submit(Supplier<List<Double>> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+    }
+
+    /**
+     * 重排序统计：调用次数、平均候选数和平均打分耗时
+     */
+    public Map<String, Object> stats() {
+        long calls = requests.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", calls);
+        stats.put("failures", failures.sum());
+        stats.put("maxResults", maxResults);
+        stats.put("batchSize", batchSize);
+        stats.put("avgCandidates", calls == 0 ? 0 : (double) scoredCandidates.sum() / calls);
+        stats.put("avgScoringMs", calls == 0 ? 0 : scoringNanos.sum() / 1_000_000.0 / calls);
+        return stats;
+    }
+}
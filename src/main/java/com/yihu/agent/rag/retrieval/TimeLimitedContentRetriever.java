@@ -0,0 +1,91 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带超时的检索器
+ * 在独立线程池上执行被包装的检索器，超时、异常或线程池已满时返回空结果，
+ * 扇出检索时一个慢（或故障）的知识库不会拖慢整个请求；超时后中断检索线程，及时归还线程池
+ */
+@Slf4j
+public class TimeLimitedContentRetriever implements ContentRetriever {
+
+    private final String name;
+    private final ContentRetriever delegate;
+    private final ExecutorService executor;
+    private final Duration timeout;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param name     检索器名称（日志用）
+     * @param delegate 被包装的检索器
+     * @param executor 执行检索的线程池
+     * @param timeout  单次检索超时
+     */
+    public TimeLimitedContentRetriever(String name, ContentRetriever delegate, ExecutorService executor, Duration timeout) {
+        this.name = name;
+        this.delegate = delegate;
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        Future<List<Content>> future;
+        try {
+            future = executor.submit(() -> delegate.retrieve(query));
+        } catch (RejectedExecutionException e) {
+            // 线程池已满：放弃该检索器，而不是在请求线程上无超时地执行
+            rejections.increment();
+            log.warn("检索线程池已满，跳过检索器 {}", name);
+            return List.of();
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            log.warn("检索器 {} 超过 {} ms 未返回，忽略其结果", name, timeout.toMillis());
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("检索器 {} 执行失败，忽略其结果: {}", name, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        }
+        return List.of();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,571 @@
+package com.yihu.agent.rag.store;
+
+import com.yihu.agent.vector.VectorMath;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于 HNSW（分层可导航小世界图）的进程内近似最近邻向量库
+ * 检索复杂度约为 O(log n)，语料规模增长时仍能保持亚毫秒级；
+ * 支持多线程并发写入（节点级加锁），删除采用墓碑标记（节点仍参与图遍历，但不出现在结果中）；
+ * 写满 maxElements 个槽位后，新向量复用已删除节点的槽位，反复增量刷新不会耗尽容量。
+ * 元数据过滤在图遍历中进行：不满足条件的节点照常用于导航，只是不进入候选结果，选择性高的过滤也能返回足量结果。
+ * 向量在写入时归一化，相似度为余弦相似度
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    /**
+     * 图节点
+     */
+    private static final class Node {
+        final int index;
+        final String id;
+        final float[] vector;
+        final TextSegment segment;
+        final int level;
+        /**
+         * 每层的邻居列表，读写都在节点锁内进行
+         */
+        final int[][] neighbors;
+        final int[] neighborCounts;
+        volatile boolean deleted;
+
+        Node(int index, String id, float[] vector, TextSegment segment, int level, int m) {
+            this.index = index;
+            this.id = id;
+            this.vector = vector;
+            this.segment = segment;
+            this.level = level;
+            this.neighbors = new int[level + 1][];
+            this.neighborCounts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                // 第 0 层允许 2M 个邻居，其余层 M 个
+                neighbors[l] = new int[l == 0 ? 2 * m : m];
+            }
+        }
+
+        /**
+         * 槽位被复用后，其他节点可能仍在更高层指向该下标，此时返回空列表
+         */
+        synchronized int[] neighborsAt(int level) {
+            if (level > this.level) {
+                return new int[0];
+            }
+            return Arrays.copyOf(neighbors[level], neighborCounts[level]);
+        }
+    }
+
+    /**
+     * 检索候选（节点下标 + 距离，距离为 1 - 余弦相似度）
+     */
+    private record Candidate(int node, float distance) {
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+    private static final Comparator<Candidate> FARTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    /**
+     * 每个线程复用的已访问标记，避免每次检索分配与图同等大小的位图
+     */
+    private static final class VisitedList {
+        int[] marks = new int[0];
+        int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean visit(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    private final ThreadLocal<VisitedList> visitedLists = ThreadLocal.withInitial(VisitedList::new);
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private volatile int efSearch;
+
+    private final AtomicReferenceArray<Node> nodes;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final Map<String, Integer> indexById = new ConcurrentHashMap<>();
+    private final AtomicInteger liveCount = new AtomicInteger();
+
+    /**
+     * 已删除、可复用的槽位
+     */
+    private final Queue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 入口节点和最高层，只在更新最高层时加锁
+     */
+    private volatile Node entryPoint;
+    private final Object entryPointLock = new Object();
+
+    /**
+     * @param dimension      向量维度
+     * @param m              每个节点的邻居数（第 0 层为 2M），越大召回越高、内存和构建开销越大
+     * @param efConstruction 构建时的候选集大小，越大图质量越好、构建越慢
+     * @param efSearch       检索时的候选集大小（不小于 maxResults），越大召回越高、检索越慢
+     * @param maxElements    槽位数；写满后复用已删除节点的槽位，存活向量数不能超过该值
+     */
+    public HnswEmbeddingStore(int dimension, int m, int efConstruction, int efSearch, int maxElements) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M 不能小于 2");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.nodes = new AtomicReferenceArray<>(maxElements);
+    }
+
+    public int efSearch() {
+        return efSearch;
+    }
+
+    /**
+     * 调整检索时的候选集大小，无需重建索引
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 存活的向量数
+     */
+    public int size() {
+        return liveCount.get();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        insert(id, embedding, null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        insert(id, embedding, textSegment);
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            insert(ids.get(i), embeddings.get(i), null);
+        }
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (embedded != null && embedded.size() != embeddings.size()) {
+            throw new IllegalArgumentException("embeddings 与 embedded 数量不一致");
+        }
+        for (int i = 0; i < embeddings.size(); i++) {
+            insert(ids.get(i), embeddings.get(i), embedded == null ? null : embedded.get(i));
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        for (String id : ids) {
+            Integer index = indexById.remove(id);
+            if (index != null) {
+                markDeleted(nodes.get(index));
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        for (int i = 0, n = nodeCount.get(); i < n; i++) {
+            Node node = nodes.get(i);
+            if (node != null && !node.deleted && node.segment != null && filter.test(node.segment.metadata())) {
+                indexById.remove(node.id, node.index);
+                markDeleted(node);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        removeAll(List.copyOf(indexById.keySet()));
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Node entry = entryPoint;
+        if (entry == null) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+        float[] query = VectorMath.normalize(request.queryEmbedding().vector());
+        Filter filter = request.filter();
+        IntPredicate accept = index -> matches(nodes.get(index), filter);
+
+        Candidate nearest = new Candidate(entry.index, distance(query, entry.vector));
+        for (int level = entry.level; level > 0; level--) {
+            nearest = greedyClosest(query, nearest, level);
+        }
+        int ef = Math.max(efSearch, request.maxResults());
+        PriorityQueue<Candidate> candidates = searchLayer(query, List.of(nearest), ef, 0, accept);
+
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(NEAREST_FIRST);
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (Candidate candidate : sorted) {
+            // 检索期间节点可能被并发删除或槽位被复用，再校验一次
+            Node node = nodes.get(candidate.node());
+            if (!matches(node, filter)) {
+                continue;
+            }
+            double score = RelevanceScore.fromCosineSimilarity(1 - candidate.distance());
+            if (score < request.minScore()) {
+                break;
+            }
+            matches.add(new EmbeddingMatch<>(score, node.id, Embedding.from(node.vector), node.segment));
+            if (matches.size() == request.maxResults()) {
+                break;
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    private static boolean matches(Node node, Filter filter) {
+        return !node.deleted && (filter == null || (node.segment != null && filter.test(node.segment.metadata())));
+    }
+
+    private void insert(String id, Embedding embedding, TextSegment segment) {
+        float[] vector = embedding.vector();
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度应为 " + dimension + "，实际为 " + vector.length);
+        }
+        int index = allocateSlot();
+        Node reused = nodes.get(index);
+        if (reused != null) {
+            unlink(reused);
+        }
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        Node node = new Node(index, id, VectorMath.normalize(vector), segment, level, m);
+        nodes.set(index, node);
+
+        Integer previous = indexById.put(id, index);
+        if (previous != null) {
+            markDeleted(nodes.get(previous));
+        }
+        liveCount.incrementAndGet();
+
+        Node entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryPointLock) {
+                if (entryPoint == null) {
+                    entryPoint = node;
+                    return;
+                }
+                entry = entryPoint;
+            }
+        }
+
+        Candidate nearest = new Candidate(entry.index, distance(node.vector, entry.vector));
+        for (int l = entry.level; l > level; l--) {
+            nearest = greedyClosest(node.vector, nearest, l);
+        }
+        List<Candidate> entryPoints = List.of(nearest);
+        for (int l = Math.min(level, entry.level); l >= 0; l--) {
+            PriorityQueue<Candidate> candidates = searchLayer(node.vector, entryPoints, efConstruction, l, null);
+            List<Candidate> selected = selectNeighbors(candidates, l == 0 ? 2 * m : m);
+            for (Candidate candidate : selected) {
+                // 双向连接；其他线程可能已经把新节点选为邻居，因此两个方向都按“追加或裁剪”处理
+                Node neighbor = nodes.get(candidate.node());
+                connect(node, neighbor, candidate.distance(), l);
+                connect(neighbor, node, candidate.distance(), l);
+            }
+            entryPoints = new ArrayList<>(candidates);
+        }
+
+        if (level > entry.level) {
+            synchronized (entryPointLock) {
+                if (level > entryPoint.level) {
+                    entryPoint = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * 优先分配未使用过的槽位；全部用完后复用已删除节点的槽位（入口节点除外，它承载着最高层）
+     */
+    private int allocateSlot() {
+        int index = nodeCount.getAndIncrement();
+        if (index < nodes.length()) {
+            return index;
+        }
+        nodeCount.decrementAndGet();
+        for (int attempts = freeSlots.size(); attempts > 0; attempts--) {
+            Integer slot = freeSlots.poll();
+            if (slot == null) {
+                break;
+            }
+            if (nodes.get(slot) != entryPoint) {
+                return slot;
+            }
+            freeSlots.add(slot);
+        }
+        throw new IllegalStateException("HNSW 索引已满（max-elements=" + nodes.length() + "），且没有可复用的已删除槽位");
+    }
+
+    /**
+     * 槽位复用前，把已删除节点从其邻居的邻居列表中移除，并用它自己的邻居补位，
+     * 避免这些边指向复用后的新向量而降低召回；只有单向指向该节点的边不做修复
+     */
+    private void unlink(Node deleted) {
+        for (int level = 0; level <= deleted.level; level++) {
+            int[] replacements = deleted.neighborsAt(level);
+            for (int neighbor : replacements) {
+                Node owner = nodes.get(neighbor);
+                if (owner != deleted) {
+                    relink(owner, deleted.index, replacements, level);
+                }
+            }
+        }
+    }
+
+    private void relink(Node owner, int removed, int[] replacements, int level) {
+        int max = level == 0 ? 2 * m : m;
+        synchronized (owner) {
+            if (level > owner.level) {
+                return;
+            }
+            int[] list = owner.neighbors[level];
+            int count = owner.neighborCounts[level];
+            Set<Integer> current = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                current.add(list[i]);
+            }
+            if (!current.remove(removed)) {
+                return;
+            }
+            for (int replacement : replacements) {
+                if (replacement != owner.index && replacement != removed) {
+                    current.add(replacement);
+                }
+            }
+            List<Candidate> candidates = new ArrayList<>(current.size());
+            for (int candidate : current) {
+                candidates.add(new Candidate(candidate, distance(owner.vector, nodes.get(candidate).vector)));
+            }
+            List<Candidate> kept = selectNeighbors(candidates, max);
+            for (int i = 0; i < kept.size(); i++) {
+                list[i] = kept.get(i).node();
+            }
+            owner.neighborCounts[level] = kept.size();
+        }
+    }
+
+    /**
+     * 把 target 加入 owner 在指定层的邻居列表，超出上限时用启发式裁剪
+     */
+    private void connect(Node owner, Node target, float distance, int level) {
+        int max = level == 0 ? 2 * m : m;
+        synchronized (owner) {
+            // owner 所在槽位可能已被层数更低的新节点复用
+            if (level > owner.level) {
+                return;
+            }
+            int[] list = owner.neighbors[level];
+            int count = owner.neighborCounts[level];
+            for (int i = 0; i < count; i++) {
+                if (list[i] == target.index) {
+                    return;
+                }
+            }
+            if (count < max) {
+                list[count] = target.index;
+                owner.neighborCounts[level] = count + 1;
+                return;
+            }
+            List<Candidate> candidates = new ArrayList<>(count + 1);
+            candidates.add(new Candidate(target.index, distance));
+            for (int i = 0; i < count; i++) {
+                candidates.add(new Candidate(list[i], distance(owner.vector, nodes.get(list[i]).vector)));
+            }
+            List<Candidate> kept = selectNeighbors(candidates, max);
+            for (int i = 0; i < kept.size(); i++) {
+                list[i] = kept.get(i).node();
+            }
+            owner.neighborCounts[level] = kept.size();
+        }
+    }
+
+    /**
+     * 启发式邻居选择：候选只有在离查询点比离已选邻居都近时才保留，使邻居分布在不同方向上，
+     * 保证图在聚簇数据上的连通性
+     */
+    private List<Candidate> selectNeighbors(Collection<Candidate> candidates, int max) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(NEAREST_FIRST);
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate candidate : sorted) {
+            if (selected.size() >= max) {
+                break;
+            }
+            float[] vector = nodes.get(candidate.node()).vector;
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(vector, nodes.get(chosen.node()).vector) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 在上层做贪心搜索，只保留最近的一个节点
+     */
+    private Candidate greedyClosest(float[] query, Candidate start, int level) {
+        Candidate best = start;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : nodes.get(best.node()).neighborsAt(level)) {
+                Node node = nodes.get(neighbor);
+                // 指向已复用槽位的旧边：新节点不在这一层，不能作为这一层的落脚点
+                if (node.level < level) {
+                    continue;
+                }
+                float d = distance(query, node.vector);
+                if (d < best.distance()) {
+                    best = new Candidate(neighbor, d);
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 在指定层做 ef 宽度的最佳优先搜索，返回最近的 ef 个候选（堆顶为最远者）
+     *
+     * @param accept 为 null 时所有节点都可作为结果；否则不满足条件的节点只参与遍历，不进入结果
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int level,
+                                                 IntPredicate accept) {
+        VisitedList visited = visitedLists.get();
+        visited.reset(nodeCount.get());
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(ef + 1, FARTHEST_FIRST);
+        for (Candidate entry : entryPoints) {
+            if (visited.visit(entry.node())) {
+                frontier.add(entry);
+                if (accept == null || accept.test(entry.node())) {
+                    results.add(entry);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (results.size() >= ef && current.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighbor : nodes.get(current.node()).neighborsAt(level)) {
+                // 并发写入时可能读到尚未登记到访问标记范围内的新节点，直接跳过
+                if (neighbor >= visited.marks.length || !visited.visit(neighbor)) {
+                    continue;
+                }
+                Node node = nodes.get(neighbor);
+                if (node.level < level) {
+                    continue;
+                }
+                float d = distance(query, node.vector);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    frontier.add(candidate);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在节点锁内标记删除，保证同一槽位只进入一次空闲队列
+     */
+    private void markDeleted(Node node) {
+        if (node == null) {
+            return;
+        }
+        synchronized (node) {
+            if (node.deleted) {
+                return;
+            }
+            node.deleted = true;
+        }
+        liveCount.decrementAndGet();
+        freeSlots.add(node.index);
+    }
+
+    private static float distance(float[] a, float[] b) {
+        return 1 - VectorMath.dot(a, b);
+    }
+}
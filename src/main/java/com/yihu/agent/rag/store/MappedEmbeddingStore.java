@@ -0,0 +1,587 @@
+package com.yihu.agent.rag.store;
+
+import com.yihu.agent.vector.VectorMath;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 内存映射的本地向量库
+ * 向量按定长记录连续存放在 vectors.bin 中并通过 mmap 访问，不占用堆内存，由操作系统页缓存负责加载；
+ * 片段文本和元数据追加写入 segments.jsonl 旁路文件，启动时回放即可恢复索引，无需重新向量化。
+ * 检索为暴力扫描（余弦相似度，SIMD 点积），向量在写入时归一化
+ */
+@Slf4j
+public class MappedEmbeddingStore implements EmbeddingStore<TextSegment>, PersistentEmbeddingStore, AutoCloseable {
+
+    private static final int MAGIC = 0x59484956;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+
+    /**
+     * 记录头：存活标记（int）+ 缩放系数（float，仅 INT8 使用）
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * 单个映射区的字节数：MappedByteBuffer 以 int 寻址，文件按映射区逐段扩展
+     */
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    private static final String VECTORS_FILE = "vectors.bin";
+    private static final String SIDECAR_FILE = "segments.jsonl";
+
+    /**
+     * 旁路文件中的一行
+     *
+     * @param op       add 或 remove
+     * @param slot     向量记录下标
+     * @param id       片段 ID
+     * @param text     片段文本（可为空）
+     * @param metadata 片段元数据
+     */
+    record SidecarEntry(String op, int slot, String id, String text, Map<String, Object> metadata) {
+    }
+
+    private final Path directory;
+    private final int dimension;
+    private final VectorEncoding encoding;
+    private final int recordBytes;
+    private final int recordsPerChunk;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * 与 chunks 一一对应的 float 视图（记录按 4 字节对齐），用于整块读取 FLOAT32 向量
+     */
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+    private final ThreadLocal<float[]> floatScratch;
+    private final ThreadLocal<byte[]> byteScratch;
+    private final BufferedWriter sidecar;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final Map<Integer, String> idBySlot = new HashMap<>();
+    private final Map<Integer, TextSegment> segmentBySlot = new HashMap<>();
+    private int count;
+
+    /**
+     * 打开（或创建）向量库；已有索引的维度和编码以文件头为准
+     *
+     * @param directory 索引目录
+     * @param dimension 向量维度（新建索引时使用）
+     * @param encoding  向量编码（新建索引时使用）
+     */
+    public MappedEmbeddingStore(Path directory, int dimension, VectorEncoding encoding) {
+        this.directory = directory;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            Path vectors = directory.resolve(VECTORS_FILE);
+            boolean exists = Files.exists(vectors) && Files.size(vectors) >= HEADER_BYTES;
+            channel = FileChannel.open(vectors, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (exists) {
+                if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                    throw new IllegalStateException("不是有效的向量索引文件: " + vectors);
+                }
+                this.dimension = header.getInt(8);
+                this.encoding = VectorEncoding.values()[header.getInt(12)];
+                this.count = header.getInt(COUNT_OFFSET);
+            } else {
+                this.dimension = dimension;
+                this.encoding = encoding;
+                header.putInt(0, MAGIC);
+                header.putInt(4, FORMAT_VERSION);
+                header.putInt(8, dimension);
+                header.putInt(12, encoding.ordinal());
+                header.putInt(COUNT_OFFSET, 0);
+                header.force();
+            }
+            chunks.add(header);
+            floatViews.add(header.asFloatBuffer());
+
+            this.recordBytes = RECORD_HEADER_BYTES + (this.encoding == VectorEncoding.INT8 ? this.dimension : this.dimension * 4);
+            this.recordsPerChunk = (int) (CHUNK_BYTES / recordBytes);
+            int dim = this.dimension;
+            this.floatScratch = ThreadLocal.withInitial(() -> new float[dim]);
+            this.byteScratch = ThreadLocal.withInitial(() -> new byte[dim]);
+            for (int slot = 0; slot < count; slot += recordsPerChunk) {
+                ensureChunk(slot);
+            }
+
+            replaySidecar(directory.resolve(SIDECAR_FILE));
+            sidecar = Files.newBufferedWriter(directory.resolve(SIDECAR_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量索引失败: " + directory, e);
+        }
+        log.info("向量索引已加载: {}，{} 条向量（{} 维，{}），耗时 {} ms",
+                directory, slotById.size(), this.dimension, this.encoding, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public Path directory() {
+        return directory;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public VectorEncoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * 按 ID 读取归一化后的向量（INT8 编码时为反量化结果），不存在时返回 null
+     */
+    public float[] vector(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            return slot == null ? null : readVector(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按 ID 读取片段，不存在或未保存片段时返回 null
+     */
+    public TextSegment segment(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            return slot == null ? null : segmentBySlot.get(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历全部存活向量（按写入顺序），用于在启动时重建派生索引
+     */
+    public void forEach(BiConsumer<String, float[]> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < count; slot++) {
+                if (isLive(slot)) {
+                    consumer.accept(idBySlot.get(slot), readVector(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachSegment(BiConsumer<String, TextSegment> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < count; slot++) {
+                TextSegment segment = segmentBySlot.get(slot);
+                if (segment != null && isLive(slot)) {
+                    consumer.accept(idBySlot.get(slot), segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 存活的向量数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 向量文件占用的字节数（含已删除记录）
+     */
+    public long vectorBytes() {
+        return HEADER_BYTES + (long) count * recordBytes;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (embedded != null && embedded.size() != embeddings.size()) {
+            throw new IllegalArgumentException("embeddings 与 embedded 数量不一致");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < embeddings.size(); i++) {
+                String id = ids.get(i);
+                Integer existing = slotById.get(id);
+                if (existing != null) {
+                    markRemoved(existing);
+                }
+                int slot = count;
+                writeVector(slot, embeddings.get(i).vector());
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                slotById.put(id, slot);
+                idBySlot.put(slot, id);
+                if (segment != null) {
+                    segmentBySlot.put(slot, segment);
+                }
+                appendSidecar(new SidecarEntry("add", slot, id,
+                        segment == null ? null : segment.text(),
+                        segment == null ? null : segment.metadata().toMap()));
+                count++;
+            }
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer slot = slotById.get(id);
+                if (slot != null) {
+                    markRemoved(slot);
+                }
+            }
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> matched = new ArrayList<>();
+            segmentBySlot.forEach((slot, segment) -> {
+                if (filter.test(segment.metadata())) {
+                    matched.add(slot);
+                }
+            });
+            matched.forEach(this::markRemoved);
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            new ArrayList<>(slotById.values()).forEach(this::markRemoved);
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorMath.normalize(request.queryEmbedding().vector());
+        Filter filter = request.filter();
+        int maxResults = request.maxResults();
+        PriorityQueue<ScoredSlot> top = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(ScoredSlot::score));
+
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < count; slot++) {
+                if (!isLive(slot)) {
+                    continue;
+                }
+                if (filter != null) {
+                    TextSegment segment = segmentBySlot.get(slot);
+                    if (segment == null || !filter.test(segment.metadata())) {
+                        continue;
+                    }
+                }
+                double score = RelevanceScore.fromCosineSimilarity(dot(slot, query));
+                if (score < request.minScore()) {
+                    continue;
+                }
+                if (top.size() < maxResults) {
+                    top.add(new ScoredSlot(slot, score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new ScoredSlot(slot, score));
+                }
+            }
+
+            // 只为最终结果还原向量和片段，扫描过程中不在堆上创建 float[]
+            List<ScoredSlot> ranked = new ArrayList<>(top);
+            ranked.sort(Comparator.comparingDouble(ScoredSlot::score).reversed());
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+            for (ScoredSlot scored : ranked) {
+                matches.add(new EmbeddingMatch<>(scored.score(), idBySlot.get(scored.slot()),
+                        Embedding.from(readVector(scored.slot())), segmentBySlot.get(scored.slot())));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record ScoredSlot(int slot, double score) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            commit();
+            sidecar.close();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 归一化后的查询向量与指定记录的点积（即余弦相似度）
+     */
+    private double dot(int slot, float[] query) {
+        int offset = offsetInChunk(slot) + RECORD_HEADER_BYTES;
+        if (encoding == VectorEncoding.INT8) {
+            // 先整块拷贝到线程内复用的数组，再交给 SIMD 内核计算
+            byte[] scratch = byteScratch.get();
+            MappedByteBuffer chunk = chunkFor(slot);
+            chunk.get(offset, scratch, 0, dimension);
+            return VectorMath.dot(scratch, query) * chunk.getFloat(offset - 4);
+        }
+        float[] scratch = floatScratch.get();
+        floatViewFor(slot).get(offset / Float.BYTES, scratch, 0, dimension);
+        return VectorMath.dot(scratch, query);
+    }
+
+    private void writeVector(int slot, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度应为 " + dimension + "，实际为 " + vector.length);
+        }
+        float[] normalized = VectorMath.normalize(vector);
+        ensureChunk(slot);
+        MappedByteBuffer chunk = chunkFor(slot);
+        int base = offsetInChunk(slot);
+        int offset = base + RECORD_HEADER_BYTES;
+        if (encoding == VectorEncoding.INT8) {
+            float max = 0;
+            for (float v : normalized) {
+                max = Math.max(max, Math.abs(v));
+            }
+            float scale = max == 0 ? 1 : max / 127f;
+            chunk.putFloat(base + 4, scale);
+            for (int i = 0; i < dimension; i++) {
+                chunk.put(offset + i, (byte) Math.round(normalized[i] / scale));
+            }
+        } else {
+            for (int i = 0; i < dimension; i++) {
+                chunk.putFloat(offset + i * 4, normalized[i]);
+            }
+        }
+        chunk.putInt(base, 1);
+    }
+
+    private float[] readVector(int slot) {
+        MappedByteBuffer chunk = chunkFor(slot);
+        int base = offsetInChunk(slot);
+        int offset = base + RECORD_HEADER_BYTES;
+        float[] vector = new float[dimension];
+        if (encoding == VectorEncoding.INT8) {
+            float scale = chunk.getFloat(base + 4);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = chunk.get(offset + i) * scale;
+            }
+        } else {
+            floatViewFor(slot).get(offset / Float.BYTES, vector, 0, dimension);
+        }
+        return vector;
+    }
+
+    private boolean isLive(int slot) {
+        return chunkFor(slot).getInt(offsetInChunk(slot)) == 1;
+    }
+
+    private void markRemoved(int slot) {
+        chunkFor(slot).putInt(offsetInChunk(slot), 0);
+        String id = idBySlot.remove(slot);
+        segmentBySlot.remove(slot);
+        if (id != null) {
+            slotById.remove(id);
+            appendSidecar(new SidecarEntry("remove", slot, id, null, null));
+        }
+    }
+
+    /**
+     * 先落盘向量和记录数，再刷新旁路文件；旁路文件中引用了超出记录数的下标时在回放时忽略
+     */
+    private void commit() {
+        chunks.get(0).putInt(COUNT_OFFSET, count);
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        try {
+            sidecar.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void appendSidecar(SidecarEntry entry) {
+        try {
+            sidecar.write(objectMapper.writeValueAsString(entry));
+            sidecar.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replaySidecar(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                SidecarEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, SidecarEntry.class);
+                } catch (IOException e) {
+                    // 进程崩溃时最后一行可能不完整
+                    log.warn("忽略损坏的索引旁路记录: {}", e.getMessage());
+                    continue;
+                }
+                if (entry.slot() >= count) {
+                    continue;
+                }
+                if ("add".equals(entry.op())) {
+                    Integer previous = slotById.put(entry.id(), entry.slot());
+                    if (previous != null) {
+                        idBySlot.remove(previous);
+                        segmentBySlot.remove(previous);
+                    }
+                    idBySlot.put(entry.slot(), entry.id());
+                    if (entry.text() != null) {
+                        Metadata metadata = entry.metadata() == null ? new Metadata() : Metadata.from(entry.metadata());
+                        segmentBySlot.put(entry.slot(), TextSegment.from(entry.text(), metadata));
+                    }
+                } else if ("remove".equals(entry.op()) && entry.id().equals(idBySlot.get(entry.slot()))) {
+                    idBySlot.remove(entry.slot());
+                    segmentBySlot.remove(entry.slot());
+                    slotById.remove(entry.id());
+                }
+            }
+        }
+        // 崩溃时两个文件可能不一致：以两者的交集为准
+        for (int slot = 0; slot < count; slot++) {
+            boolean live = isLive(slot);
+            String id = idBySlot.get(slot);
+            if (live && id == null) {
+                chunkFor(slot).putInt(offsetInChunk(slot), 0);
+            } else if (!live && id != null) {
+                idBySlot.remove(slot);
+                segmentBySlot.remove(slot);
+                slotById.remove(id);
+            }
+        }
+    }
+
+    private void ensureChunk(int slot) {
+        int index = slot / recordsPerChunk + 1;
+        while (chunks.size() <= index) {
+            long position = HEADER_BYTES + (long) (chunks.size() - 1) * recordsPerChunk * recordBytes;
+            try {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) recordsPerChunk * recordBytes);
+                chunk.order(ByteOrder.LITTLE_ENDIAN);
+                chunks.add(chunk);
+                floatViews.add(chunk.asFloatBuffer());
+            } catch (IOException e) {
+                throw new UncheckedIOException("扩展向量索引文件失败: " + directory, e);
+            }
+        }
+    }
+
+    private MappedByteBuffer chunkFor(int slot) {
+        return chunks.get(slot / recordsPerChunk + 1);
+    }
+
+    private FloatBuffer floatViewFor(int slot) {
+        return floatViews.get(slot / recordsPerChunk + 1);
+    }
+
+    private int offsetInChunk(int slot) {
+        return (slot % recordsPerChunk) * recordBytes;
+    }
+}
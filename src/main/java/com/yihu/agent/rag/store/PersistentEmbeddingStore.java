@@ -0,0 +1,14 @@
+package com.yihu.agent.rag.store;
+
+import java.nio.file.Path;
+
+/**
+ * 落盘的向量库：重启后索引仍在，增量索引清单等派生文件保存在同一目录
+ */
+public interface PersistentEmbeddingStore extends ScannableEmbeddingStore {
+
+    /**
+     * 索引目录
+     */
+    Path directory();
+}
@@ -0,0 +1,218 @@
+package com.yihu.agent.rag.store;
+
+import com.yihu.agent.vector.VectorMath;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 乘积量化器（PQ）
+ * 向量切分为 subspaces 个子空间，每个子空间用 k-means 训练 256 个中心，编码为最近中心的下标（1 字节）；
+ * 查询时先计算查询子向量与各中心的内积表，估算内积只需 subspaces 次查表相加
+ */
+@Slf4j
+public class ProductQuantizer implements Quantizer {
+
+    private static final int CENTROIDS = 256;
+    private static final int FORMAT_VERSION = 1;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int iterations;
+    private final int[] offsets;
+
+    /**
+     * centroids[s] 为第 s 个子空间的中心，按 [中心下标][子空间维度] 展开
+     */
+    private volatile float[][] centroids;
+
+    /**
+     * @param dimension  向量维度
+     * @param subspaces  子空间数（即每个向量的字节数），不大于维度
+     * @param iterations k-means 迭代次数
+     */
+    public ProductQuantizer(int dimension, int subspaces, int iterations) {
+        if (subspaces < 1 || subspaces > dimension) {
+            throw new IllegalArgumentException("子空间数应在 1 到 " + dimension + " 之间");
+        }
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.iterations = iterations;
+        this.offsets = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            offsets[s] = s * dimension / subspaces;
+        }
+    }
+
+    @Override
+    public int codeBytes() {
+        return subspaces;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return centroids != null;
+    }
+
+    @Override
+    public void train(List<float[]> sample) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        float[][] trained = new float[subspaces][];
+        for (int s = 0; s < subspaces; s++) {
+            trained[s] = kMeans(sample, offsets[s], offsets[s + 1] - offsets[s], random);
+        }
+        centroids = trained;
+        log.info("PQ 码本训练完成: {} 个样本，{} 个子空间，耗时 {} ms",
+                sample.size(), subspaces, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void encode(float[] normalized, byte[] codes, int offset) {
+        float[][] trained = centroids;
+        for (int s = 0; s < subspaces; s++) {
+            codes[offset + s] = (byte) nearest(trained[s], normalized, offsets[s], offsets[s + 1] - offsets[s]);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] normalizedQuery) {
+        float[][] trained = centroids;
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            int from = offsets[s];
+            int width = offsets[s + 1] - from;
+            float[] sub = Arrays.copyOfRange(normalizedQuery, from, from + width);
+            float[] centroid = new float[width];
+            for (int c = 0; c < trained[s].length / width; c++) {
+                System.arraycopy(trained[s], c * width, centroid, 0, width);
+                table[s * CENTROIDS + c] = VectorMath.dot(sub, centroid);
+            }
+        }
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int s = 0; s < subspaces; s++) {
+                sum += table[s * CENTROIDS + (codes[offset + s] & 0xff)];
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public void save(Path file) throws IOException {
+        float[][] trained = centroids;
+        if (trained == null) {
+            return;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dimension);
+            out.writeInt(subspaces);
+            for (float[] centroid : trained) {
+                out.writeInt(centroid.length);
+                for (float v : centroid) {
+                    out.writeFloat(v);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || in.readInt() != dimension || in.readInt() != subspaces) {
+                log.warn("PQ 码本参数与配置不一致，忽略: {}", file);
+                return false;
+            }
+            float[][] loaded = new float[subspaces][];
+            for (int s = 0; s < subspaces; s++) {
+                loaded[s] = new float[in.readInt()];
+                for (int i = 0; i < loaded[s].length; i++) {
+                    loaded[s][i] = in.readFloat();
+                }
+            }
+            centroids = loaded;
+            return true;
+        }
+    }
+
+    /**
+     * 在一个子空间上按欧氏距离做 k-means
+     */
+    private float[] kMeans(List<float[]> sample, int from, int width, Random random) {
+        int k = Math.min(CENTROIDS, sample.size());
+        float[] centers = new float[k * width];
+        // 随机选取不重复的样本作为初始中心
+        int[] order = random.ints(0, sample.size()).distinct().limit(k).toArray();
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(sample.get(order[c]), from, centers, c * width, width);
+        }
+
+        int[] assignment = new int[sample.size()];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < sample.size(); i++) {
+                assignment[i] = nearest(centers, sample.get(i), from, width);
+            }
+            float[] sums = new float[k * width];
+            int[] counts = new int[k];
+            for (int i = 0; i < sample.size(); i++) {
+                int c = assignment[i];
+                counts[c]++;
+                float[] vector = sample.get(i);
+                for (int d = 0; d < width; d++) {
+                    sums[c * width + d] += vector[from + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // 空簇重新随机放置
+                    System.arraycopy(sample.get(random.nextInt(sample.size())), from, centers, c * width, width);
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    centers[c * width + d] = sums[c * width + d] / counts[c];
+                }
+            }
+        }
+        return centers;
+    }
+
+    /**
+     * 欧氏距离最近的中心下标
+     */
+    private static int nearest(float[] centers, float[] vector, int from, int width) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0, n = centers.length / width; c < n; c++) {
+            float distance = 0;
+            int base = c * width;
+            for (int d = 0; d < width; d++) {
+                float diff = centers[base + d] - vector[from + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,17 @@
+package com.yihu.agent.rag.store;
+
+/**
+ * 向量量化方式
+ */
+public enum QuantizationMethod {
+
+    /**
+     * 标量 int8 量化：每维 1 字节 + 4 字节缩放系数，召回损失很小
+     */
+    INT8,
+
+    /**
+     * 乘积量化：向量切分为若干子空间，每个子空间用 1 字节的码本下标表示，压缩率最高，需要训练码本
+     */
+    PQ
+}
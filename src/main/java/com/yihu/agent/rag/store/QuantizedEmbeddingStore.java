@@ -0,0 +1,346 @@
+package com.yihu.agent.rag.store;
+
+import com.yihu.agent.vector.VectorMath;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 量化向量库
+ * 堆内只保存紧凑的量化字节码用于全量扫描，全精度向量保存在内存映射的 FLOAT32 向量库中（不占堆），
+ * 检索时先用字节码选出 maxResults × rerankFactor 个候选，再用全精度向量重新打分排序。
+ * PQ 码本在向量数达到 trainingSize 后自动训练并保存在索引目录中；训练前及带元数据过滤的检索直接走全精度扫描
+ */
+@Slf4j
+public class QuantizedEmbeddingStore implements EmbeddingStore<TextSegment>, PersistentEmbeddingStore, AutoCloseable {
+
+    private static final String CODEBOOK_FILE = "pq-codebook.bin";
+
+    private final MappedEmbeddingStore full;
+    private final Quantizer quantizer;
+    private final int trainingSize;
+    private final int rerankFactor;
+    private final Path codebookFile;
+    private final int codeBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private byte[] codes = new byte[0];
+    private String[] ids = new String[0];
+    private int slots;
+    private final Map<String, Integer> slotById = new HashMap<>();
+
+    /**
+     * @param full         全精度向量库（FLOAT32 编码），负责持久化与重排序
+     * @param quantizer    量化器
+     * @param trainingSize 需要训练的量化器在向量数达到该值后训练
+     * @param rerankFactor 候选倍数，1 表示不扩大候选集（只按全精度分数重排已选出的结果）
+     */
+    public QuantizedEmbeddingStore(MappedEmbeddingStore full, Quantizer quantizer, int trainingSize, int rerankFactor) {
+        if (full.encoding() != VectorEncoding.FLOAT32) {
+            throw new IllegalArgumentException("重排序需要 FLOAT32 编码的全精度向量库");
+        }
+        this.full = full;
+        this.quantizer = quantizer;
+        this.trainingSize = trainingSize;
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.codebookFile = full.directory().resolve(CODEBOOK_FILE);
+        this.codeBytes = quantizer.codeBytes();
+        try {
+            quantizer.load(codebookFile);
+        } catch (IOException e) {
+            log.warn("加载量化码本失败，将重新训练: {}", e.getMessage());
+        }
+        lock.writeLock().lock();
+        try {
+            if (quantizer.isTrained()) {
+                full.forEach(this::append);
+            } else {
+                trainIfReady();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Path directory() {
+        return full.directory();
+    }
+
+    @Override
+    public void forEachSegment(BiConsumer<String, TextSegment> consumer) {
+        full.forEachSegment(consumer);
+    }
+
+    /**
+     * 每个向量在堆内占用的字节码长度
+     */
+    public int codeBytesPerVector() {
+        return codeBytes;
+    }
+
+    public boolean isQuantized() {
+        return quantizer.isTrained();
+    }
+
+    public int size() {
+        return full.size();
+    }
+
+    /**
+     * 内存统计：每百万向量的堆内字节码占用与全精度（mmap）占用
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("vectors", size());
+        stats.put("quantized", isQuantized());
+        stats.put("codeBytesPerVector", codeBytes);
+        stats.put("heapMbPerMillion", codeBytes * 1_000_000L / 1024.0 / 1024.0);
+        stats.put("fullPrecisionMbPerMillion", full.dimension() * (long) Float.BYTES * 1_000_000L / 1024.0 / 1024.0);
+        stats.put("rerankFactor", rerankFactor);
+        return stats;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        full.addAll(ids, embeddings, embedded);
+        lock.writeLock().lock();
+        try {
+            if (quantizer.isTrained()) {
+                for (int i = 0; i < ids.size(); i++) {
+                    append(ids.get(i), VectorMath.normalize(embeddings.get(i).vector()));
+                }
+            } else {
+                trainIfReady();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        full.removeAll(ids);
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer slot = slotById.remove(id);
+                if (slot != null) {
+                    this.ids[slot] = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        full.removeAll(filter);
+        rebuild();
+    }
+
+    @Override
+    public void removeAll() {
+        full.removeAll();
+        rebuild();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        if (!quantizer.isTrained() || request.filter() != null) {
+            return full.search(request);
+        }
+        float[] query = VectorMath.normalize(request.queryEmbedding().vector());
+        int candidates = request.maxResults() * rerankFactor;
+
+        // 第一阶段：扫描量化字节码，保留近似分数最高的候选（小顶堆）
+        int[] heapSlots = new int[candidates];
+        float[] heapScores = new float[candidates];
+        int heapSize = 0;
+        List<String> candidateIds = new ArrayList<>(candidates);
+        lock.readLock().lock();
+        try {
+            Quantizer.Scorer scorer = quantizer.scorer(query);
+            for (int slot = 0; slot < slots; slot++) {
+                if (ids[slot] == null) {
+                    continue;
+                }
+                float score = scorer.score(codes, slot * codeBytes);
+                if (heapSize < candidates) {
+                    heapSlots[heapSize] = slot;
+                    heapScores[heapSize] = score;
+                    siftUp(heapSlots, heapScores, heapSize++);
+                } else if (score > heapScores[0]) {
+                    heapSlots[0] = slot;
+                    heapScores[0] = score;
+                    siftDown(heapSlots, heapScores, heapSize);
+                }
+            }
+            for (int i = 0; i < heapSize; i++) {
+                candidateIds.add(ids[heapSlots[i]]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 第二阶段：用全精度向量重新打分
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(candidateIds.size());
+        for (String id : candidateIds) {
+            float[] vector = full.vector(id);
+            if (vector == null) {
+                continue;
+            }
+            double score = RelevanceScore.fromCosineSimilarity(VectorMath.dot(query, vector));
+            if (score >= request.minScore()) {
+                matches.add(new EmbeddingMatch<>(score, id, Embedding.from(vector), full.segment(id)));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(EmbeddingMatch<TextSegment>::score).reversed());
+        return new EmbeddingSearchResult<>(new ArrayList<>(matches.subList(0, Math.min(request.maxResults(), matches.size()))));
+    }
+
+    @Override
+    public void close() throws IOException {
+        full.close();
+    }
+
+    /**
+     * 向量数达到训练阈值时用已有向量训练码本，并为全部向量编码
+     */
+    private void trainIfReady() {
+        if (full.size() < trainingSize) {
+            return;
+        }
+        List<float[]> sample = new ArrayList<>(full.size());
+        full.forEach((id, vector) -> sample.add(vector));
+        quantizer.train(sample);
+        try {
+            quantizer.save(codebookFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存量化码本失败: " + codebookFile, e);
+        }
+        full.forEach(this::append);
+    }
+
+    private void rebuild() {
+        lock.writeLock().lock();
+        try {
+            codes = new byte[0];
+            ids = new String[0];
+            slots = 0;
+            slotById.clear();
+            if (quantizer.isTrained()) {
+                full.forEach(this::append);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 追加一个向量的字节码，调用方持有写锁
+     */
+    private void append(String id, float[] normalized) {
+        Integer previous = slotById.get(id);
+        if (previous != null) {
+            ids[previous] = null;
+        }
+        if (slots == ids.length) {
+            int capacity = Math.max(1024, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            codes = Arrays.copyOf(codes, capacity * codeBytes);
+        }
+        quantizer.encode(normalized, codes, slots * codeBytes);
+        ids[slots] = id;
+        slotById.put(id, slots);
+        slots++;
+    }
+
+    private static void siftUp(int[] slots, float[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(slots, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] slots, float[] scores, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            int smallest = index;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (left + 1 < size && scores[left + 1] < scores[smallest]) {
+                smallest = left + 1;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(slots, scores, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] slots, float[] scores, int a, int b) {
+        int slot = slots[a];
+        slots[a] = slots[b];
+        slots[b] = slot;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
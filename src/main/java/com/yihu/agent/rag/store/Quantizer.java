@@ -0,0 +1,58 @@
+package com.yihu.agent.rag.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 向量量化器
+ * 把归一化后的 float 向量编码为定长字节码，并基于字节码估算与查询向量的内积
+ */
+public interface Quantizer {
+
+    /**
+     * 查询打分器：对同一个查询向量预先计算的打分上下文，只能在单个线程内使用
+     */
+    interface Scorer {
+
+        /**
+         * 估算内积
+         *
+         * @param codes  字节码存储区
+         * @param offset 该向量字节码的起始位置
+         */
+        float score(byte[] codes, int offset);
+    }
+
+    /**
+     * 每个向量的字节码长度
+     */
+    int codeBytes();
+
+    /**
+     * 是否已可编码（无需训练的量化器恒为 true）
+     */
+    boolean isTrained();
+
+    /**
+     * 用样本训练量化参数，无需训练的量化器忽略
+     */
+    void train(List<float[]> sample);
+
+    void encode(float[] normalized, byte[] codes, int offset);
+
+    Scorer scorer(float[] normalizedQuery);
+
+    /**
+     * 保存训练结果，无需训练的量化器忽略
+     */
+    default void save(Path file) throws IOException {
+    }
+
+    /**
+     * 加载训练结果，返回是否加载成功
+     */
+    default boolean load(Path file) throws IOException {
+        return isTrained();
+    }
+}
@@ -0,0 +1,62 @@
+package com.yihu.agent.rag.store;
+
+import com.yihu.agent.vector.VectorMath;
+
+import java.util.List;
+
+/**
+ * 标量 int8 量化器
+ * 每个向量按最大绝对值对称缩放到 [-127, 127]，字节码布局为 [缩放系数 float][dimension 个 int8]
+ */
+public class ScalarInt8Quantizer implements Quantizer {
+
+    private final int dimension;
+
+    public ScalarInt8Quantizer(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int codeBytes() {
+        return Float.BYTES + dimension;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return true;
+    }
+
+    @Override
+    public void train(List<float[]> sample) {
+    }
+
+    @Override
+    public void encode(float[] normalized, byte[] codes, int offset) {
+        float max = 0;
+        for (float v : normalized) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float scale = max == 0 ? 1 : max / 127f;
+        int bits = Float.floatToRawIntBits(scale);
+        codes[offset] = (byte) bits;
+        codes[offset + 1] = (byte) (bits >>> 8);
+        codes[offset + 2] = (byte) (bits >>> 16);
+        codes[offset + 3] = (byte) (bits >>> 24);
+        for (int i = 0; i < dimension; i++) {
+            codes[offset + Float.BYTES + i] = (byte) Math.round(normalized[i] / scale);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] normalizedQuery) {
+        byte[] scratch = new byte[dimension];
+        return (codes, offset) -> {
+            int bits = (codes[offset] & 0xff)
+                    | (codes[offset + 1] & 0xff) << 8
+                    | (codes[offset + 2] & 0xff) << 16
+                    | (codes[offset + 3] & 0xff) << 24;
+            System.arraycopy(codes, offset + Float.BYTES, scratch, 0, dimension);
+            return VectorMath.dot(scratch, normalizedQuery) * Float.intBitsToFloat(bits);
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.yihu.agent.rag.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 可遍历全部片段的向量库，用于启动时从已有索引重建关键词索引等派生结构
+ */
+public interface ScannableEmbeddingStore {
+
+    /**
+     * 遍历全部存活且带片段的记录
+     */
+    void forEachSegment(BiConsumer<String, TextSegment> consumer);
+}
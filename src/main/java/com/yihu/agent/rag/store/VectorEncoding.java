@@ -0,0 +1,17 @@
+package com.yihu.agent.rag.store;
+
+/**
+ * 向量在磁盘上的编码方式
+ */
+public enum VectorEncoding {
+
+    /**
+     * 32 位浮点，每维 4 字节，无精度损失
+     */
+    FLOAT32,
+
+    /**
+     * 按向量对称量化的 8 位整数，每维 1 字节（外加 4 字节缩放系数），内存占用约为 FLOAT32 的 1/4
+     */
+    INT8
+}
@@ -1,22 +1,28 @@
 package com.yihu.agent.service;
 
+import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.spring.AiService;
 
+import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
+
 /**
  * AI 聊天服务接口
  * 使用 LangChain4j 的 @AiService 注解自动实现
+ * 按会话 ID 保存多轮对话记忆（见 ChatMemoryConfig）
  */
-@AiService
+@AiService(wiringMode = EXPLICIT,
+        chatModel = "openAiChatModel",
+        streamingChatModel = "openAiStreamingChatModel",
+        chatMemoryProvider = "chatMemoryProvider")
 public interface AiChatService {
 
     /**
-     * 与 AI 进行对话
-     * 
-     * @param userMessage 用户消息
-     * @return AI 回复
+     * 系统提示词，同步与流式对话共用
      */
-    @SystemMessage("""
+    String SYSTEM_PROMPT = """
             你是一个友好、专业的AI助手，名字叫"小医"。
             你的任务是帮助用户解答问题、提供建议和进行愉快的对话。
             
@@ -29,7 +35,26 @@ public interface AiChatService {
             6. 对于医疗健康相关的问题，提供一般性建议但提醒用户咨询专业医生
             
             现在，请开始与用户对话吧！
-            """)
-    String chat(String userMessage);
-}
+            """;
 
+    /**
+     * 与 AI 进行对话
+     * 
+     * @param conversationId 会话 ID，同一会话共享对话记忆
+     * @param userMessage    用户消息
+     * @return AI 回复
+     */
+    @SystemMessage(SYSTEM_PROMPT)
+    String chat(@MemoryId String conversationId, @UserMessage String userMessage);
+
+    /**
+     * 与 AI 进行流式对话，逐个 token 返回
+     * 需要配置 langchain4j.open-ai.streaming-chat-model
+     * 
+     * @param conversationId 会话 ID，同一会话共享对话记忆
+     * @param userMessage    用户消息
+     * @return token 流，调用 start() 后开始生成
+     */
+    @SystemMessage(SYSTEM_PROMPT)
+    TokenStream chatStream(@MemoryId String conversationId, @UserMessage String userMessage);
+}
@@ -0,0 +1,42 @@
+package com.yihu.agent.service;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+import dev.langchain4j.service.spring.AiService;
+
+import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
+
+/**
+ * 带上下文的医疗问答服务
+ * 使用 LangChain4j 的 @AiService 注解自动实现
+ * 指南片段和最近的历史对话由医疗咨询图在意图识别阶段并行收集后传入，
+ * 因此不配置检索增强器，也不使用会话记忆
+ */
+@AiService(wiringMode = EXPLICIT, chatModel = "openAiChatModel")
+public interface ConsultationAnswerAssistant {
+
+    /**
+     * 依据指南片段和历史对话回答问题
+     *
+     * @param question   用户问题
+     * @param guidelines 指南片段，每段一行
+     * @param history    最近的历史对话，每条一行
+     * @return 回答
+     */
+    @SystemMessage("""
+            你是一个医疗知识库问答助手，名字叫"小医"。
+            请优先依据提供的资料回答用户的问题，并结合最近的对话理解追问；资料中没有相关内容时，诚实说明并给出一般性建议。
+            回答要简洁准确，涉及用药和诊断时提醒用户咨询专业医生。
+            """)
+    @UserMessage("""
+            资料：
+            {{guidelines}}
+
+            最近的对话：
+            {{history}}
+
+            用户问题：{{question}}
+            """)
+    String answer(@V("question") String question, @V("guidelines") String guidelines, @V("history") String history);
+}
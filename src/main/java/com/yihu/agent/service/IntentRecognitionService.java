@@ -3,12 +3,15 @@ package com.yihu.agent.service;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.spring.AiService;
 
+import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
+
 /**
  * 意图识别服务接口
  * 使用 LangChain4j 的 @AiService 注解自动实现
  * 用于识别用户输入的意图类型
+ * 显式指定模型，不使用会话记忆（每次识别互相独立）
  */
-@AiService
+@AiService(wiringMode = EXPLICIT, chatModel = "openAiChatModel")
 public interface IntentRecognitionService {
 
     /**
@@ -0,0 +1,32 @@
+package com.yihu.agent.service;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.spring.AiService;
+
+import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
+
+/**
+ * 医疗知识库问答服务
+ * 使用 LangChain4j 的 @AiService 注解自动实现
+ * 通过 medicalRetrievalAugmentor（向量 + 关键词混合检索，RRF 融合）把知识库片段注入提示词，
+ * 不使用会话记忆（每次问答互相独立）
+ */
+@AiService(wiringMode = EXPLICIT,
+        chatModel = "openAiChatModel",
+        retrievalAugmentor = "medicalRetrievalAugmentor")
+public interface MedicalKnowledgeAssistant {
+
+    /**
+     * 基于知识库回答问题
+     *
+     * @param question 用户问题
+     * @return 回答
+     */
+    @SystemMessage("""
+            你是一个医疗知识库问答助手，名字叫"小医"。
+            请优先依据提供的资料回答用户的问题；资料中没有相关内容时，诚实说明并给出一般性建议。
+            回答要简洁准确，涉及用药和诊断时提醒用户咨询专业医生。
+            """)
+    String answer(@UserMessage String question);
+}
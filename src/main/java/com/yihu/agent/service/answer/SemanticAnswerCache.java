@@ -0,0 +1,258 @@
+package com.yihu.agent.service.answer;
+
+import com.yihu.agent.cache.SemanticCache;
+import com.yihu.agent.metrics.LatencyRecorder;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对话回复语义缓存
+ * 重复或近似的问题（如“感冒了吃什么药”“感冒吃啥药好”）直接返回之前的大模型回复，不再调用 AiChatService。
+ * 按意图设置存活时间，高危医疗问题永不缓存；意图无法低成本判定（规则预分类不可信且意图缓存未命中）的回复也不写入。
+ * 缓存全局共享、按问题文本匹配，而大模型回复依赖会话记忆，因此只对会话的第一轮（记忆中还没有对话）读写缓存，
+ * 追问总是交给大模型。命中时把问答写入会话记忆，后续追问仍有上下文
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    /**
+     * 一次查询的上下文，未命中时用于回填缓存，避免重复计算向量
+     *
+     * @param answer      命中的回复，未命中为空
+     * @param intent      低成本判定出的意图，无法判定时为 null
+     * @param vector      问题的向量，未计算时为 null
+     * @param startNanos  查询开始时间
+     * @param contextFree 会话记忆中是否还没有对话，即回复不依赖上下文
+     */
+    public record Lookup(Optional<String> answer, String intent, float[] vector, long startNanos,
+                         boolean contextFree) {
+
+        /**
+         * 是否应回填缓存：会话的第一轮，且意图已判定、不是高危医疗
+         */
+        public boolean cacheable() {
+            return contextFree && intent != null && !IntentPreClassifier.HIGH_RISK_MEDICAL.equals(intent);
+        }
+    }
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private IntentPreClassifier intentPreClassifier;
+
+    @Autowired
+    private SemanticIntentCache semanticIntentCache;
+
+    @Autowired
+    private ChatMemoryProvider chatMemoryProvider;
+
+    @Value("${healthcare.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${healthcare.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${healthcare.answer-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${healthcare.answer-cache.max-answer-length:4000}")
+    private int maxAnswerLength;
+
+    @Value("${healthcare.answer-cache.ttl.general-chat:24h}")
+    private Duration generalChatTtl;
+
+    @Value("${healthcare.answer-cache.ttl.low-risk-medical:2h}")
+    private Duration lowRiskMedicalTtl;
+
+    private SemanticCache<String> cache;
+
+    private final LongAdder highRiskBypasses = new LongAdder();
+    private final LongAdder followUpBypasses = new LongAdder();
+    private final LongAdder unclassifiedSkips = new LongAdder();
+    private final LongAdder oversizedSkips = new LongAdder();
+    private final Map<String, LongAdder> putsByIntent = new LinkedHashMap<>();
+
+    private final LatencyRecorder hitLatency = new LatencyRecorder();
+    private final LatencyRecorder missLatency = new LatencyRecorder();
+    private final LatencyRecorder modelLatency = new LatencyRecorder();
+
+    @PostConstruct
+    public void init() {
+        cache = new SemanticCache<>(maxEntries, similarityThreshold);
+        putsByIntent.put(IntentPreClassifier.GENERAL_CHAT, new LongAdder());
+        putsByIntent.put(IntentPreClassifier.LOW_RISK_MEDICAL, new LongAdder());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找缓存的回复
+     * 会话记忆中已有对话时（追问）直接跳过；再用规则预分类和意图缓存判定意图（不调用大模型），高危医疗问题直接跳过；
+     * 最后按原文精确匹配，再按向量相似度匹配。查询失败时按未命中处理
+     *
+     * @param conversationId 会话 ID，与会话记忆的 ID 一致
+     * @param question       用户问题
+     */
+    public Lookup lookup(String conversationId, String question) {
+        long start = System.nanoTime();
+        if (!enabled || question == null || question.isBlank()) {
+            return new Lookup(Optional.empty(), null, null, start, false);
+        }
+        if (hasHistory(conversationId)) {
+            followUpBypasses.increment();
+            return new Lookup(Optional.empty(), null, null, start, false);
+        }
+
+        float[] vector = null;
+        IntentPreClassifier.IntentPrediction prediction = intentPreClassifier.score(question.trim());
+        String intent = prediction.confidence() >= intentPreClassifier.threshold() ? prediction.intent() : null;
+        if (!IntentPreClassifier.HIGH_RISK_MEDICAL.equals(prediction.intent())
+                && intent == null && semanticIntentCache.isEnabled()) {
+            try {
+                SemanticIntentCache.Lookup intentLookup = semanticIntentCache.lookup(question);
+                intent = intentLookup.intent().orElse(null);
+                vector = intentLookup.vector();
+            } catch (Exception e) {
+                log.warn("意图缓存查询失败: {}", e.getMessage());
+            }
+        }
+        // 规则打分倾向高危时，即使置信度不足也不走缓存
+        if (IntentPreClassifier.HIGH_RISK_MEDICAL.equals(prediction.intent())
+                || IntentPreClassifier.HIGH_RISK_MEDICAL.equals(intent)) {
+            highRiskBypasses.increment();
+            return new Lookup(Optional.empty(), IntentPreClassifier.HIGH_RISK_MEDICAL, vector, start, true);
+        }
+
+        Optional<SemanticCache.Hit<String>> hit = cache.getExact(question);
+        if (hit.isEmpty()) {
+            try {
+                if (vector == null) {
+                    vector = embeddingModel.embed(question).content().vector();
+                }
+                hit = cache.getSimilar(vector);
+            } catch (Exception e) {
+                // 向量模型不可用时不影响主流程，本次不读写缓存
+                log.warn("回复缓存查询失败: {}", e.getMessage());
+                return new Lookup(Optional.empty(), null, null, start, true);
+            }
+        }
+        if (hit.isPresent()) {
+            hitLatency.record(System.nanoTime() - start);
+            log.debug("回复缓存命中: {} -> {} (相似度 {})", question, hit.get().key(), hit.get().similarity());
+            return new Lookup(Optional.of(hit.get().value()), intent, vector, start, true);
+        }
+        return new Lookup(Optional.empty(), intent, vector, start, true);
+    }
+
+    /**
+     * 缓存未命中后，按意图写入大模型回复并记录耗时
+     *
+     * @param lookup     lookup() 返回的查询上下文
+     * @param question   用户问题
+     * @param answer     大模型回复
+     * @param modelNanos 大模型调用耗时
+     */
+    public void complete(Lookup lookup, String question, String answer, long modelNanos) {
+        if (!enabled) {
+            return;
+        }
+        modelLatency.record(modelNanos);
+        missLatency.record(System.nanoTime() - lookup.startNanos());
+        if (!lookup.cacheable()) {
+            if (lookup.contextFree() && lookup.intent() == null) {
+                unclassifiedSkips.increment();
+            }
+            return;
+        }
+        if (answer == null || answer.isBlank() || answer.length() > maxAnswerLength) {
+            oversizedSkips.increment();
+            return;
+        }
+        Duration ttl = ttlFor(lookup.intent());
+        if (ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        float[] vector = lookup.vector() != null
+                ? lookup.vector()
+                : embeddingModel.embed(question).content().vector();
+        cache.put(question, vector, answer, ttl);
+        putsByIntent.get(lookup.intent()).increment();
+    }
+
+    /**
+     * 命中缓存时把本轮问答写入会话记忆，与调用大模型时的记忆保持一致
+     */
+    public void remember(String conversationId, String question, String answer) {
+        ChatMemory memory = chatMemoryProvider.get(conversationId);
+        memory.add(UserMessage.from(question));
+        memory.add(AiMessage.from(answer));
+    }
+
+    /**
+     * 会话记忆中除系统消息外是否已有对话（包括滚动摘要）
+     */
+    private boolean hasHistory(String conversationId) {
+        return chatMemoryProvider.get(conversationId).messages().stream()
+                .anyMatch(message -> !(message instanceof SystemMessage));
+    }
+
+    /**
+     * 各意图的缓存存活时间；高危医疗为零（不缓存）
+     */
+    Duration ttlFor(String intent) {
+        return switch (intent) {
+            case IntentPreClassifier.GENERAL_CHAT -> generalChatTtl;
+            case IntentPreClassifier.LOW_RISK_MEDICAL -> lowRiskMedicalTtl;
+            default -> Duration.ZERO;
+        };
+    }
+
+    /**
+     * 命中率、节省的大模型调用次数及有无缓存时的延迟对比
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cache.stats());
+        stats.put("enabled", enabled);
+        Map<String, String> ttl = new LinkedHashMap<>();
+        ttl.put(IntentPreClassifier.GENERAL_CHAT, generalChatTtl.toString());
+        ttl.put(IntentPreClassifier.LOW_RISK_MEDICAL, lowRiskMedicalTtl.toString());
+        stats.put("ttl", ttl);
+        Map<String, Long> puts = new LinkedHashMap<>();
+        putsByIntent.forEach((intent, count) -> puts.put(intent, count.sum()));
+        stats.put("putsByIntent", puts);
+        stats.put("highRiskBypasses", highRiskBypasses.sum());
+        stats.put("followUpBypasses", followUpBypasses.sum());
+        stats.put("unclassifiedSkips", unclassifiedSkips.sum());
+        stats.put("oversizedSkips", oversizedSkips.sum());
+        long saved = hitLatency.count();
+        // 以大模型调用耗时的中位数估算节省的时间
+        double medianModelMs = modelLatency.percentileMs(50);
+        stats.put("savedModelCalls", saved);
+        stats.put("estimatedSavedLatencyMs", saved * medianModelMs);
+        stats.put("hitLatency", hitLatency.stats());
+        stats.put("missLatency", missLatency.stats());
+        stats.put("withoutCacheLatency", modelLatency.stats());
+        return stats;
+    }
+}
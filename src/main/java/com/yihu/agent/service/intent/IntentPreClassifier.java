@@ -0,0 +1,277 @@
+package com.yihu.agent.service.intent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于规则的意图预分类器
+ * 在调用大模型之前用关键词自动机对用户输入做本地分类，
+ * 置信度足够高时直接给出意图（短路大模型调用），否则交给大模型处理
+ */
+@Slf4j
+@Component
+public class IntentPreClassifier {
+
+    public static final String GENERAL_CHAT = "general_chat";
+    public static final String HIGH_RISK_MEDICAL = "high_risk_medical";
+    public static final String LOW_RISK_MEDICAL = "low_risk_medical";
+
+    /**
+     * 预分类结果
+     *
+     * @param intent          意图类型
+     * @param confidence      置信度（0-1）
+     * @param matchedKeywords 命中的关键词
+     */
+    public record IntentPrediction(String intent, double confidence, Set<String> matchedKeywords) {
+    }
+
+    /**
+     * 普通对话只对短输入走快速通道，长输入即使以问候开头也可能包含医疗问题
+     */
+    private static final int GENERAL_CHAT_MAX_LENGTH = 20;
+
+    /**
+     * 关键词前出现这些否定词时，视为否定表述（如“没有胸痛”），交给大模型判断
+     */
+    private static final List<String> NEGATIONS = List.of("没有", "不是", "无", "不", "没");
+
+    private static final Map<String, Map<String, Double>> KEYWORD_TABLES = Map.of(
+            HIGH_RISK_MEDICAL, weights(
+                    "胸痛", 0.9, "胸口痛", 0.9, "胸闷", 0.7, "呼吸困难", 0.9, "喘不上气", 0.9,
+                    "昏迷", 0.95, "晕倒", 0.8, "意识不清", 0.9, "休克", 0.9, "抽搐", 0.85,
+                    "大出血", 0.95, "吐血", 0.9, "便血", 0.7, "猝死", 0.95, "中风", 0.9,
+                    "心梗", 0.95, "心脏", 0.6, "急性", 0.5, "紧急", 0.5, "剧烈", 0.5,
+                    "自杀", 0.95, "中毒", 0.85, "骨折", 0.7),
+            LOW_RISK_MEDICAL, weights(
+                    "感冒", 0.8, "头疼", 0.75, "头痛", 0.75, "咳嗽", 0.8, "发烧", 0.75,
+                    "发热", 0.75, "流鼻涕", 0.8, "鼻塞", 0.75, "嗓子疼", 0.75, "喉咙痛", 0.75,
+                    "拉肚子", 0.7, "腹泻", 0.7, "失眠", 0.7, "过敏", 0.7, "湿疹", 0.75,
+                    "症状", 0.5, "咨询", 0.3, "治疗", 0.5, "吃什么药", 0.8, "药", 0.4),
+            GENERAL_CHAT, weights(
+                    "你好", 0.85, "您好", 0.85, "hello", 0.85, "hi", 0.8, "谢谢", 0.85,
+                    "感谢", 0.8, "再见", 0.85, "拜拜", 0.85, "早上好", 0.85, "晚上好", 0.85,
+                    "天气", 0.7, "你是谁", 0.85, "几点", 0.7, "你能做什么", 0.8)
+    );
+
+    private final KeywordAutomaton automaton;
+    private final List<String> keywordIntents = new ArrayList<>();
+    private final List<Double> keywordWeights = new ArrayList<>();
+
+    @Value("${healthcare.intent.fast-path.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${healthcare.intent.fast-path.threshold:0.75}")
+    private double threshold = 0.75;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder fastPathHits = new LongAdder();
+    private final LongAdder modelFallbacks = new LongAdder();
+    private final LongAdder modelCalls = new LongAdder();
+    private final LongAdder modelNanos = new LongAdder();
+    private final Map<String, LongAdder> hitsByIntent = new LinkedHashMap<>();
+
+    public IntentPreClassifier() {
+        List<String> keywords = new ArrayList<>();
+        KEYWORD_TABLES.forEach((intent, table) -> table.forEach((keyword, weight) -> {
+            keywords.add(keyword);
+            keywordIntents.add(intent);
+            keywordWeights.add(weight);
+        }));
+        automaton = new KeywordAutomaton(keywords);
+        for (String intent : List.of(HIGH_RISK_MEDICAL, LOW_RISK_MEDICAL, GENERAL_CHAT)) {
+            hitsByIntent.put(intent, new LongAdder());
+        }
+    }
+
+    /**
+     * 对用户输入打分，不做阈值判断
+     */
+    public IntentPrediction score(String userInput) {
+        Map<String, Double> missProbability = new HashMap<>();
+        Set<String> matched = new LinkedHashSet<>();
+        boolean negated = false;
+
+        for (KeywordAutomaton.Match match : automaton.findAll(userInput)) {
+            String keyword = automaton.keyword(match.keywordIndex());
+            if (!isWordBoundary(userInput, match) || !matched.add(keyword)) {
+                continue;
+            }
+            if (isNegated(userInput, match.start())) {
+                negated = true;
+                continue;
+            }
+            // noisy-or 合并同一意图下的多个关键词：1 - Π(1 - w)
+            String intent = keywordIntents.get(match.keywordIndex());
+            double weight = keywordWeights.get(match.keywordIndex());
+            missProbability.merge(intent, 1 - weight, (a, b) -> a * b);
+        }
+
+        String best = GENERAL_CHAT;
+        double bestScore = 0;
+        double secondScore = 0;
+        for (Map.Entry<String, Double> entry : missProbability.entrySet()) {
+            double score = 1 - entry.getValue();
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                best = entry.getKey();
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+
+        // 高危症状优先：只要高危得分足够高，不再与其他意图竞争
+        double highRisk = 1 - missProbability.getOrDefault(HIGH_RISK_MEDICAL, 1.0);
+        if (highRisk >= threshold) {
+            return new IntentPrediction(HIGH_RISK_MEDICAL, negated ? 0 : highRisk, matched);
+        }
+
+        double confidence = bestScore * (1 - secondScore);
+        if (negated || (GENERAL_CHAT.equals(best) && userInput.length() > GENERAL_CHAT_MAX_LENGTH)) {
+            confidence = 0;
+        }
+        return new IntentPrediction(best, confidence, matched);
+    }
+
+    /**
+     * 高危风险评分：只合并高危关键词的权重（noisy-or，0-1），否定表述不计入；
+     * 与 score() 不同，其他意图得分更高时仍反映高危程度
+     */
+    public double riskScore(String userInput) {
+        Set<String> matched = new HashSet<>();
+        double missProbability = 1;
+        for (KeywordAutomaton.Match match : automaton.findAll(userInput)) {
+            if (!HIGH_RISK_MEDICAL.equals(keywordIntents.get(match.keywordIndex()))
+                    || !isWordBoundary(userInput, match)
+                    || !matched.add(automaton.keyword(match.keywordIndex()))
+                    || isNegated(userInput, match.start())) {
+                continue;
+            }
+            missProbability *= 1 - keywordWeights.get(match.keywordIndex());
+        }
+        return 1 - missProbability;
+    }
+
+    /**
+     * 是否提到任何高危关键词，包括否定表述（如“没有胸痛”）；
+     * 否定与肯定表述的向量非常接近，缓存这类输入的结果可能把高危问题判为低危
+     */
+    public boolean mentionsHighRisk(String userInput) {
+        for (KeywordAutomaton.Match match : automaton.findAll(userInput)) {
+            if (HIGH_RISK_MEDICAL.equals(keywordIntents.get(match.keywordIndex()))
+                    && isWordBoundary(userInput, match)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 快速分类：置信度达到阈值时返回意图，否则返回空（需要调用大模型）
+     */
+    public Optional<IntentPrediction> classify(String userInput) {
+        requests.increment();
+        if (!enabled || userInput == null || userInput.isBlank()) {
+            modelFallbacks.increment();
+            return Optional.empty();
+        }
+        IntentPrediction prediction = score(userInput.trim());
+        if (prediction.confidence() >= threshold) {
+            fastPathHits.increment();
+            hitsByIntent.get(prediction.intent()).increment();
+            log.debug("规则预分类命中: {} (置信度 {}, 关键词 {})",
+                    prediction.intent(), prediction.confidence(), prediction.matchedKeywords());
+            return Optional.of(prediction);
+        }
+        modelFallbacks.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * 快速通道的置信度阈值，其他组件复用 score() 时据此判断结果是否可信
+     */
+    public double threshold() {
+        return threshold;
+    }
+
+    /**
+     * 记录一次大模型意图识别调用耗时，用于估算快速通道节省的时间
+     */
+    public void recordModelCall(long elapsedNanos) {
+        modelCalls.increment();
+        modelNanos.add(elapsedNanos);
+    }
+
+    /**
+     * 命中率和节省耗时统计
+     */
+    public Map<String, Object> stats() {
+        long total = requests.sum();
+        long hits = fastPathHits.sum();
+        long calls = modelCalls.sum();
+        double avgModelMs = calls == 0 ? 0 : modelNanos.sum() / 1_000_000.0 / calls;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("threshold", threshold);
+        stats.put("requests", total);
+        stats.put("fastPathHits", hits);
+        stats.put("modelFallbacks", modelFallbacks.sum());
+        stats.put("hitRate", total == 0 ? 0 : (double) hits / total);
+        Map<String, Long> byIntent = new LinkedHashMap<>();
+        hitsByIntent.forEach((intent, count) -> byIntent.put(intent, count.sum()));
+        stats.put("hitsByIntent", byIntent);
+        stats.put("modelCalls", calls);
+        stats.put("avgModelLatencyMs", avgModelMs);
+        stats.put("savedModelCalls", hits);
+        stats.put("estimatedSavedLatencyMs", hits * avgModelMs);
+        return stats;
+    }
+
+    private static boolean isNegated(String text, int start) {
+        for (String negation : NEGATIONS) {
+            int from = start - negation.length();
+            if (from >= 0 && text.startsWith(negation, from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 英文关键词要求前后不是字母，避免 "hi" 命中 "this"
+     */
+    private static boolean isWordBoundary(String text, KeywordAutomaton.Match match) {
+        if (!isLatinLetter(text.charAt(match.start()))) {
+            return true;
+        }
+        boolean leftOk = match.start() == 0 || !isLatinLetter(text.charAt(match.start() - 1));
+        boolean rightOk = match.end() == text.length() || !isLatinLetter(text.charAt(match.end()));
+        return leftOk && rightOk;
+    }
+
+    private static boolean isLatinLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static Map<String, Double> weights(Object... pairs) {
+        Map<String, Double> table = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            table.put((String) pairs[i], (Double) pairs[i + 1]);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,137 @@
+package com.yihu.agent.service.intent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick 多模式匹配自动机
+ * 构建后只读，可被多个线程并发使用；一次扫描即可找出输入中出现的所有关键词，
+ * 耗时与输入长度成正比，与关键词数量无关
+ */
+public final class KeywordAutomaton {
+
+    /**
+     * 一次命中
+     *
+     * @param keywordIndex 关键词在构建列表中的下标
+     * @param start        命中起始位置（包含）
+     * @param end          命中结束位置（不包含）
+     */
+    public record Match(int keywordIndex, int start, int end) {
+    }
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failure = new ArrayList<>();
+    private final List<int[]> outputs = new ArrayList<>();
+    private final String[] keywords;
+
+    /**
+     * @param keywords 关键词列表，匹配时忽略大小写
+     */
+    public KeywordAutomaton(List<String> keywords) {
+        this.keywords = new String[keywords.size()];
+        newState();
+        for (int i = 0; i < keywords.size(); i++) {
+            String keyword = lowerCase(keywords.get(i));
+            this.keywords[i] = keyword;
+            insert(keyword, i);
+        }
+        buildFailureLinks();
+    }
+
+    public String keyword(int index) {
+        return keywords[index];
+    }
+
+    /**
+     * 扫描输入，返回全部命中（允许重叠），命中位置是原始输入中的下标
+     */
+    public List<Match> findAll(String text) {
+        List<Match> matches = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return matches;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            while (state != 0 && !transitions.get(state).containsKey(c)) {
+                state = failure.get(state);
+            }
+            state = transitions.get(state).getOrDefault(c, 0);
+            for (int keywordIndex : outputs.get(state)) {
+                int end = i + 1;
+                matches.add(new Match(keywordIndex, end - keywords[keywordIndex].length(), end));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 逐字符转小写，保持长度不变（String.toLowerCase 可能改变长度，如 "İ" 会变成两个字符）
+     */
+    private static String lowerCase(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private int newState() {
+        transitions.add(new HashMap<>());
+        failure.add(0);
+        outputs.add(new int[0]);
+        return transitions.size() - 1;
+    }
+
+    private void insert(String keyword, int index) {
+        int state = 0;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            Integer next = transitions.get(state).get(c);
+            if (next == null) {
+                next = newState();
+                transitions.get(state).put(c, next);
+            }
+            state = next;
+        }
+        outputs.set(state, append(outputs.get(state), index));
+    }
+
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            failure.set(child, 0);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int fallback = failure.get(state);
+                while (fallback != 0 && !transitions.get(fallback).containsKey(c)) {
+                    fallback = failure.get(fallback);
+                }
+                int link = transitions.get(fallback).getOrDefault(c, 0);
+                failure.set(child, link == child ? 0 : link);
+                // 合并后缀状态的输出，保证短关键词在长关键词内部也能被找到
+                for (int keywordIndex : outputs.get(failure.get(child))) {
+                    outputs.set(child, append(outputs.get(child), keywordIndex));
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+        return result;
+    }
+}
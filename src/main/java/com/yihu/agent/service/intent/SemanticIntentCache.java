@@ -0,0 +1,129 @@
+package com.yihu.agent.service.intent;
+
+import com.yihu.agent.cache.SemanticCache;
+import com.yihu.agent.metrics.LatencyRecorder;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 意图识别语义缓存
+ * 近似相同的症状描述（如“我头疼发烧”“头疼还发烧了”）复用之前的大模型识别结果；
+ * 提到高危关键词的输入（包括否定表述）既不读也不写缓存，每次都交给大模型判断
+ */
+@Slf4j
+@Component
+public class SemanticIntentCache {
+
+    /**
+     * 一次查询的上下文，未命中时用于回填缓存，避免重复计算向量
+     *
+     * @param intent     命中的意图，未命中为空
+     * @param vector     用户输入的向量，精确命中时为 null
+     * @param startNanos 查询开始时间
+     * @param cacheable  是否回填缓存，提到高危关键词时为 false
+     */
+    public record Lookup(Optional<String> intent, float[] vector, long startNanos, boolean cacheable) {
+    }
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private IntentPreClassifier intentPreClassifier;
+
+    @Value("${healthcare.intent.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${healthcare.intent.cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    @Value("${healthcare.intent.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${healthcare.intent.cache.ttl:6h}")
+    private Duration ttl;
+
+    private SemanticCache<String> cache;
+
+    private final LatencyRecorder hitLatency = new LatencyRecorder();
+    private final LatencyRecorder missLatency = new LatencyRecorder();
+    private final LatencyRecorder modelLatency = new LatencyRecorder();
+    private final LongAdder highRiskBypasses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = new SemanticCache<>(maxEntries, similarityThreshold);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找缓存的意图：先按原文精确匹配，再按向量相似度匹配；提到高危关键词时直接未命中
+     */
+    public Lookup lookup(String userInput) {
+        long start = System.nanoTime();
+        if (intentPreClassifier.mentionsHighRisk(userInput)) {
+            highRiskBypasses.increment();
+            return new Lookup(Optional.empty(), null, start, false);
+        }
+        Optional<SemanticCache.Hit<String>> hit = cache.getExact(userInput);
+        float[] vector = null;
+        if (hit.isEmpty()) {
+            vector = embeddingModel.embed(userInput).content().vector();
+            hit = cache.getSimilar(vector);
+        }
+        if (hit.isPresent()) {
+            hitLatency.record(System.nanoTime() - start);
+            log.debug("意图缓存命中: {} -> {} (相似度 {})", userInput, hit.get().key(), hit.get().similarity());
+            return new Lookup(Optional.of(hit.get().value()), vector, start, true);
+        }
+        return new Lookup(Optional.empty(), vector, start, true);
+    }
+
+    /**
+     * 缓存未命中后，写入大模型识别结果并记录耗时
+     *
+     * @param lookup     lookup() 返回的查询上下文
+     * @param userInput  用户输入
+     * @param intent     大模型识别出的意图
+     * @param modelNanos 大模型调用耗时
+     */
+    public void complete(Lookup lookup, String userInput, String intent, long modelNanos) {
+        modelLatency.record(modelNanos);
+        missLatency.record(System.nanoTime() - lookup.startNanos());
+        if (!lookup.cacheable()) {
+            return;
+        }
+        float[] vector = lookup.vector() != null
+                ? lookup.vector()
+                : embeddingModel.embed(userInput).content().vector();
+        cache.put(userInput, vector, intent, ttl);
+    }
+
+    /**
+     * 缓存命中率及有无缓存时的延迟对比
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cache.stats());
+        stats.put("enabled", enabled);
+        stats.put("ttl", ttl.toString());
+        stats.put("highRiskBypasses", highRiskBypasses.sum());
+        stats.put("hitLatency", hitLatency.stats());
+        stats.put("missLatency", missLatency.stats());
+        // 不使用缓存时每次都要调用大模型，以大模型耗时作为对照
+        stats.put("withoutCacheLatency", modelLatency.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yihu.agent.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 jdk.incubator.vector 的 SIMD 实现
+ * 使用平台首选宽度（AVX2 为 8 路 float，AVX-512 为 16 路），尾部不足一个向量宽度的元素走标量循环。
+ * 只有在运行时启用了 --add-modules jdk.incubator.vector 时才会被加载
+ */
+final class SimdVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * 与 FLOATS 通道数相同的 byte 向量（8 路 float 对应 64 位 byte 向量），用于 int8 → float 的逐通道转换；
+     * 平台首选宽度为 128 位时没有 32 位的 byte 形状，此时为 null，int8 计算退回标量
+     */
+    private static final VectorSpecies<Byte> BYTES_FOR_FLOATS = byteSpecies(FLOATS.length());
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES_FOR_INTS = byteSpecies(INTS.length());
+
+    private final ScalarVectorKernels scalar = new ScalarVectorKernels();
+
+    static String describe() {
+        return FLOATS.vectorBitSize() + " 位（" + FLOATS.length() + " 路 float）";
+    }
+
+    @Override
+    public float dot(float[] a, float[] b, int length) {
+        int bound = FLOATS.loopBound(length);
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            acc = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(byte[] a, float[] b, int length) {
+        if (BYTES_FOR_FLOATS == null) {
+            return scalar.dot(a, b, length);
+        }
+        int bound = FLOATS.loopBound(length);
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = (FloatVector) ByteVector.fromArray(BYTES_FOR_FLOATS, a, i)
+                    .convertShape(VectorOperators.B2F, FLOATS, 0);
+            acc = va.fma(FloatVector.fromArray(FLOATS, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b, int length) {
+        if (BYTES_FOR_INTS == null) {
+            return scalar.dot(a, b, length);
+        }
+        int bound = INTS.loopBound(length);
+        IntVector acc = IntVector.zero(INTS);
+        int i = 0;
+        for (; i < bound; i += INTS.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTES_FOR_INTS, a, i)
+                    .convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTES_FOR_INTS, b, i)
+                    .convertShape(VectorOperators.B2I, INTS, 0);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b, int length) {
+        int bound = FLOATS.loopBound(length);
+        FloatVector dot = FloatVector.zero(FLOATS);
+        FloatVector normA = FloatVector.zero(FLOATS);
+        FloatVector normB = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, i);
+            dot = va.fma(vb, dot);
+            normA = va.fma(va, normA);
+            normB = vb.fma(vb, normB);
+        }
+        float d = dot.reduceLanes(VectorOperators.ADD);
+        float na = normA.reduceLanes(VectorOperators.ADD);
+        float nb = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            d += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return na == 0 || nb == 0 ? 0 : (float) (d / Math.sqrt((double) na * nb));
+    }
+
+    private static VectorSpecies<Byte> byteSpecies(int lanes) {
+        int bits = lanes * Byte.SIZE;
+        if (bits < 64) {
+            return null;
+        }
+        return VectorSpecies.of(byte.class, VectorShape.forBitSize(bits));
+    }
+}
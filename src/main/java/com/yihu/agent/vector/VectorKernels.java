@@ -0,0 +1,28 @@
+package com.yihu.agent.vector;
+
+/**
+ * 向量相似度计算内核
+ * 所有方法只读入参数组，实现必须线程安全
+ */
+interface VectorKernels {
+
+    /**
+     * float32 点积
+     */
+    float dot(float[] a, float[] b, int length);
+
+    /**
+     * int8 与 float32 的点积（int8 向量的缩放系数由调用方乘回）
+     */
+    float dot(byte[] a, float[] b, int length);
+
+    /**
+     * int8 与 int8 的点积
+     */
+    int dot(byte[] a, byte[] b, int length);
+
+    /**
+     * 单次遍历计算余弦相似度
+     */
+    float cosine(float[] a, float[] b, int length);
+}
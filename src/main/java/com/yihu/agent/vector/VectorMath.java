@@ -0,0 +1,90 @@
+package com.yihu.agent.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 向量相似度计算入口
+ * 类加载时检测 jdk.incubator.vector 模块：已启用（--add-modules jdk.incubator.vector）时使用 SIMD 内核，
+ * 否则使用标量内核；可通过系统属性 healthcare.vector.simd=false 强制使用标量实现
+ */
+@Slf4j
+public final class VectorMath {
+
+    private static final VectorKernels KERNELS = selectKernels();
+
+    private VectorMath() {
+    }
+
+    /**
+     * 当前是否使用 SIMD 内核
+     */
+    public static boolean isSimd() {
+        return !(KERNELS instanceof ScalarVectorKernels);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return KERNELS.dot(a, b, a.length);
+    }
+
+    public static float dot(float[] a, float[] b, int length) {
+        return KERNELS.dot(a, b, length);
+    }
+
+    /**
+     * int8 量化向量与 float32 向量的点积，未乘缩放系数
+     */
+    public static float dot(byte[] a, float[] b) {
+        return KERNELS.dot(a, b, a.length);
+    }
+
+    public static int dot(byte[] a, byte[] b) {
+        return KERNELS.dot(a, b, a.length);
+    }
+
+    public static float cosine(float[] a, float[] b) {
+        return KERNELS.cosine(a, b, a.length);
+    }
+
+    /**
+     * L2 归一化，返回新数组；零向量返回全零
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = KERNELS.dot(vector, vector, vector.length);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * inv;
+        }
+        return normalized;
+    }
+
+    static VectorKernels scalarKernels() {
+        return new ScalarVectorKernels();
+    }
+
+    static VectorKernels simdKernelsOrNull() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return new SimdVectorKernels();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static VectorKernels selectKernels() {
+        if (Boolean.parseBoolean(System.getProperty("healthcare.vector.simd", "true"))) {
+            VectorKernels simd = simdKernelsOrNull();
+            if (simd != null) {
+                log.info("向量相似度计算使用 SIMD 内核: {}", SimdVectorKernels.describe());
+                return simd;
+            }
+        }
+        log.info("向量相似度计算使用标量内核（未启用 jdk.incubator.vector 模块）");
+        return new ScalarVectorKernels();
+    }
+}
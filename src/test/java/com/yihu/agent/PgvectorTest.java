@@ -1,5 +1,6 @@
 package com.yihu.agent;
 
+import com.yihu.agent.rag.pgvector.PgVectorHalfvec;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -9,6 +10,7 @@ import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
 import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Rollback;
 
@@ -20,7 +22,7 @@ public class PgvectorTest {
 
     @Test
     @Rollback(false)
-    void PgvectorRagTest() {
+    void PgvectorRagTest() throws Exception {
         // 1. Embedding Model
         EmbeddingModel embeddingModel = new AllMiniLmL6V2EmbeddingModel();
         // 2. 创建 PgVectorEmbeddingStore 实例
@@ -41,6 +43,17 @@ public class PgvectorTest {
 
                 .build();
 
+        // 可选：-Dpgvector.halfvec=true 时把 embedding 列转换为 halfvec（体积约减半）
+        if (Boolean.getBoolean("pgvector.halfvec")) {
+            PGSimpleDataSource dataSource = new PGSimpleDataSource();
+            dataSource.setServerNames(new String[]{"117.72.176.184"});
+            dataSource.setPortNumbers(new int[]{5432});
+            dataSource.setDatabaseName("healthcare");
+            dataSource.setUser("pgvector");
+            dataSource.setPassword("pgvector");
+            PgVectorHalfvec.convert(dataSource, "test_embeddings", embeddingModel.dimension());
+        }
+
 
         // 3. 存入数据 (Ingest)
         TextSegment segment1 = TextSegment.from("小明喜欢吃苹果。");
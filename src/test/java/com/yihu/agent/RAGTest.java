@@ -1,6 +1,7 @@
 package com.yihu.agent;
 
 import ai.djl.util.Utils;
+import com.yihu.agent.rag.retrieval.EmbeddingQueryRouter;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentParser;
 import dev.langchain4j.data.document.DocumentSplitter;
@@ -22,7 +23,6 @@ import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.rag.query.Query;
-import dev.langchain4j.rag.query.router.LanguageModelQueryRouter;
 import dev.langchain4j.rag.query.router.QueryRouter;
 import dev.langchain4j.rag.query.transformer.CompressingQueryTransformer;
 import dev.langchain4j.rag.query.transformer.ExpandingQueryTransformer;
@@ -218,8 +218,8 @@ public class RAGTest {
         retrieverToDescription.put(LOLContentRetriever, "LOL相关的信息");
         retrieverToDescription.put(SingerContentRetriever, "歌手相关的信息");
 
-        // 构建查询路由
-        QueryRouter queryRouter = new LanguageModelQueryRouter(CHAT_MODEL, retrieverToDescription);
+        // 构建查询路由：按描述的向量相似度路由，无需调用大模型；无法判断时扇出到全部检索器
+        QueryRouter queryRouter = EmbeddingQueryRouter.fromDescriptions(EMBEDDING_MODEL, retrieverToDescription, 0.3);
 
         // 构建检索增强器
         RetrievalAugmentor retrievalAugmentor = DefaultRetrievalAugmentor.builder()
@@ -0,0 +1,62 @@
+package com.yihu.agent.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 语义缓存测试
+ */
+public class SemanticCacheTest {
+
+    @Test
+    void returnsClosestEntryAboveThreshold() {
+        SemanticCache<String> cache = new SemanticCache<>(10, 0.9);
+        cache.put("头疼发烧", new float[]{1, 0, 0}, "low_risk_medical", Duration.ofMinutes(1));
+        cache.put("你好", new float[]{0, 1, 0}, "general_chat", Duration.ofMinutes(1));
+
+        assertEquals("low_risk_medical", cache.getSimilar(new float[]{0.95f, 0.1f, 0}).orElseThrow().value());
+        assertTrue(cache.getSimilar(new float[]{0.5f, 0.5f, 0.5f}).isEmpty());
+        assertEquals("general_chat", cache.getExact("你好").orElseThrow().value());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        SemanticCache<String> cache = new SemanticCache<>(2, 0.9);
+        cache.put("a", new float[]{1, 0}, "A", Duration.ofMinutes(1));
+        cache.put("b", new float[]{0, 1}, "B", Duration.ofMinutes(1));
+        cache.getExact("a");
+        cache.put("c", new float[]{1, 1}, "C", Duration.ofMinutes(1));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getExact("a").isPresent());
+        assertTrue(cache.getExact("b").isEmpty());
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() {
+        SemanticCache<String> cache = new SemanticCache<>(10, 0.9);
+        cache.put("a", new float[]{1, 0}, "A", Duration.ZERO);
+
+        assertTrue(cache.getExact("a").isEmpty());
+        assertTrue(cache.getSimilar(new float[]{1, 0}).isEmpty());
+    }
+
+    @Test
+    void similarLookupSeesEntriesWrittenAfterPreviousScan() {
+        SemanticCache<String> cache = new SemanticCache<>(2, 0.9);
+        cache.put("a", new float[]{1, 0}, "A", Duration.ofMinutes(1));
+        assertTrue(cache.getSimilar(new float[]{0, 1}).isEmpty());
+
+        cache.put("b", new float[]{0, 1}, "B", Duration.ofMinutes(1));
+        assertEquals("B", cache.getSimilar(new float[]{0, 1}).orElseThrow().value());
+
+        // 相似命中刷新访问顺序，再写入时淘汰的是 a
+        cache.put("c", new float[]{1, 1}, "C", Duration.ofMinutes(1));
+        assertTrue(cache.getExact("a").isEmpty());
+        assertEquals("B", cache.getExact("b").orElseThrow().value());
+    }
+}
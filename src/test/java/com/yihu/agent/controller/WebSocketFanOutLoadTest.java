@@ -0,0 +1,136 @@
+package com.yihu.agent.controller;
+
+import com.yihu.agent.dto.MessageDTO;
+import com.yihu.agent.metrics.OutboundTrafficInterceptor;
+import com.yihu.agent.service.AiChatService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * WebSocket 点对点投递负载测试
+ * 不同连接数下每个会话发送一条消息，统计出站消息数、字节数和进程 CPU 时间；
+ * 点对点投递时出站流量随连接数线性增长（广播时为平方增长），且每个会话只收到自己的回复。
+ * 需要启动完整应用，属于负载测试分组，不随默认的 mvn test 运行
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class WebSocketFanOutLoadTest {
+
+    private static final String REPLY = "多喝水，注意休息。".repeat(20);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OutboundTrafficInterceptor outboundTrafficInterceptor;
+
+    @MockitoBean
+    private AiChatService aiChatService;
+
+    @Test
+    void outboundTrafficGrowsLinearlyWithSessions() throws Exception {
+        when(aiChatService.chat(anyString(), anyString())).thenReturn(REPLY);
+
+        System.out.println("sessions\toutboundMessages\toutboundBytes\tbytesPerSession\tcpuMs");
+        double firstBytesPerSession = 0;
+        for (int sessions : new int[]{10, 50, 100}) {
+            double bytesPerSession = runRound(sessions);
+            if (firstBytesPerSession == 0) {
+                firstBytesPerSession = bytesPerSession;
+            }
+            // 点对点投递：每会话出站字节数与连接数无关
+            assertTrue(bytesPerSession < firstBytesPerSession * 1.5,
+                    "每会话出站字节数不应随连接数增长");
+        }
+    }
+
+    private double runRound(int sessionCount) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+
+        List<StompSession> sessions = new ArrayList<>();
+        CountDownLatch replies = new CountDownLatch(sessionCount);
+        AtomicInteger received = new AtomicInteger();
+        try {
+            for (int i = 0; i < sessionCount; i++) {
+                StompSession session = client.connectAsync("http://localhost:" + port + "/websocket",
+                        new StompSessionHandlerAdapter() {
+                        }).get(10, TimeUnit.SECONDS);
+                session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return MessageDTO.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        received.incrementAndGet();
+                        replies.countDown();
+                    }
+                });
+                sessions.add(session);
+            }
+            // 等待订阅在代理侧生效
+            Thread.sleep(500);
+
+            long messagesBefore = outboundTrafficInterceptor.messages();
+            long bytesBefore = outboundTrafficInterceptor.payloadBytes();
+            long cpuBefore = processCpuNanos();
+
+            for (StompSession session : sessions) {
+                session.send("/app/chat", new MessageDTO("用户", "感冒了吃什么药", LocalDateTime.now()));
+            }
+            assertTrue(replies.await(30, TimeUnit.SECONDS), "所有会话都应收到回复");
+            Thread.sleep(200);
+
+            long messages = outboundTrafficInterceptor.messages() - messagesBefore;
+            long bytes = outboundTrafficInterceptor.payloadBytes() - bytesBefore;
+            double cpuMs = (processCpuNanos() - cpuBefore) / 1_000_000.0;
+            System.out.printf("%d\t%d\t%d\t%.1f\t%.1f%n",
+                    sessionCount, messages, bytes, (double) bytes / sessionCount, cpuMs);
+
+            // 每个会话只收到自己的一条回复
+            assertEquals(sessionCount, received.get());
+            assertEquals(sessionCount, messages);
+            return (double) bytes / sessionCount;
+        } finally {
+            sessions.forEach(StompSession::disconnect);
+            client.stop();
+        }
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+}
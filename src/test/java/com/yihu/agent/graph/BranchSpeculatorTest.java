@@ -0,0 +1,134 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分支推测执行测试
+ * 意图识别和回答生成都使用固定耗时的本地桩实现。验证猜对时分支取用推测结果、猜错时推测结果被取消、
+ * 分支仍按识别结果执行；对比串行执行与推测执行单请求耗时中位数的测试属于基准测试分组
+ */
+public class BranchSpeculatorTest {
+
+    private static final long MODEL_MS = 150;
+    private static final int REQUESTS = 10;
+
+    private String slowAnswer(String question) {
+        sleep();
+        return "建议多休息: " + question;
+    }
+
+    @Test
+    void correctGuessIsUsedByTheBranch() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        IntentRecognitionService intentService = userInput -> "low_risk_medical";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BranchSpeculator speculator = new BranchSpeculator(Map.of("low_risk_medical", question -> {
+                generated.incrementAndGet();
+                return "建议多休息: " + question;
+            }), new IntentPreClassifier(), executor, 0.3, true);
+            CompiledGraph<MedicalConsultationState> graph =
+                    MedicalConsultationGraph.buildGraph(intentService, null, null, speculator);
+
+            MedicalConsultationState state = graph.invoke(Map.of("userInput", "我头疼发烧")).orElseThrow();
+
+            assertEquals("建议多休息: 我头疼发烧", state.modelResponse());
+            // 分支取用推测结果，不再生成第二次
+            assertEquals(1, generated.get());
+            assertEquals(1L, speculator.stats().get("hits"));
+            assertEquals(0L, speculator.stats().get("discarded"));
+            assertEquals(0, speculator.stats().get("inFlight"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void speculationOverlapsAnswerGenerationWithIntentRecognition() throws Exception {
+        IntentRecognitionService intentService = userInput -> {
+            sleep();
+            return "low_risk_medical";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BranchSpeculator serial = new BranchSpeculator(Map.of("low_risk_medical", this::slowAnswer),
+                    new IntentPreClassifier(), executor, 0.3, false);
+            BranchSpeculator speculative = new BranchSpeculator(Map.of("low_risk_medical", this::slowAnswer),
+                    new IntentPreClassifier(), executor, 0.3, true);
+
+            // 不传入规则预分类器，意图识别总是调用（桩）大模型
+            double serialMs = medianMs(MedicalConsultationGraph.buildGraph(intentService, null, null, serial));
+            double speculativeMs = medianMs(MedicalConsultationGraph.buildGraph(intentService, null, null, speculative));
+
+            System.out.printf("串行: %.1f ms/请求, 推测执行: %.1f ms/请求 (模型单次 %d ms)%n",
+                    serialMs, speculativeMs, MODEL_MS);
+            assertTrue(serialMs >= 2 * MODEL_MS);
+            assertTrue(speculativeMs < serialMs - MODEL_MS / 2.0, "推测执行应节省约一次模型往返");
+            assertEquals((long) REQUESTS, speculative.stats().get("hits"));
+            assertEquals(0, speculative.stats().get("inFlight"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void wrongGuessIsCancelledAndActualBranchRuns() throws Exception {
+        // 规则猜测为非高危医疗，大模型识别为普通对话
+        IntentRecognitionService intentService = userInput -> {
+            sleep();
+            return "general_chat";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BranchSpeculator speculator = new BranchSpeculator(Map.of("low_risk_medical", this::slowAnswer),
+                    new IntentPreClassifier(), executor, 0.3, true);
+            CompiledGraph<MedicalConsultationState> graph =
+                    MedicalConsultationGraph.buildGraph(intentService, null, null, speculator);
+
+            MedicalConsultationState state = graph.invoke(Map.of("userInput", "我头疼发烧")).orElseThrow();
+
+            assertEquals("general_chat", state.intent());
+            assertTrue(state.modelResponse().startsWith("您好"));
+            assertEquals(1L, speculator.stats().get("discarded"));
+            assertEquals(0, speculator.stats().get("inFlight"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double medianMs(CompiledGraph<MedicalConsultationState> graph) throws Exception {
+        List<Long> elapsed = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            MedicalConsultationState state = graph.invoke(Map.of("userInput", "我头疼发烧")).orElseThrow();
+            elapsed.add(System.nanoTime() - start);
+            assertEquals("建议多休息: 我头疼发烧", state.modelResponse());
+        }
+        elapsed.sort(null);
+        return elapsed.get(elapsed.size() / 2) / 1_000_000.0;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(MODEL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.service.IntentRecognitionService;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 医疗咨询图编译开销基准测试
+ * 对比“每个请求构建并编译图”与“共享一次编译的图”在并发负载下的单请求耗时
+ * 意图识别服务使用本地桩实现，只测量图本身的开销
+ */
+@Tag("benchmark")
+public class MedicalConsultationGraphBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 200;
+
+    private final IntentRecognitionService stubIntentService = userInput -> "low_risk_medical";
+
+    @Test
+    void sharedGraphRemovesPerRequestCompileCost() throws Exception {
+        // 预热
+        runLoad(() -> MedicalConsultationGraph.buildGraph(stubIntentService), 1, 50);
+
+        long startupStart = System.nanoTime();
+        CompiledGraph<MedicalConsultationState> shared = MedicalConsultationGraph.buildGraph(stubIntentService);
+        double startupMs = (System.nanoTime() - startupStart) / 1_000_000.0;
+
+        double perRequestCompileUs = runLoad(() -> MedicalConsultationGraph.buildGraph(stubIntentService),
+                THREADS, REQUESTS_PER_THREAD);
+        double sharedGraphUs = runLoad(() -> shared, THREADS, REQUESTS_PER_THREAD);
+
+        System.out.printf("启动时编译耗时: %.2f ms%n", startupMs);
+        System.out.printf("每请求编译: %.1f us/请求, 共享图: %.1f us/请求 (%d 线程 x %d 请求)%n",
+                perRequestCompileUs, sharedGraphUs, THREADS, REQUESTS_PER_THREAD);
+
+        assertTrue(sharedGraphUs <= perRequestCompileUs * 1.5,
+                "共享图的单请求耗时不应高于每请求编译");
+    }
+
+    private interface GraphSupplier {
+        CompiledGraph<MedicalConsultationState> get() throws Exception;
+    }
+
+    /**
+     * 并发执行图，返回平均单请求耗时（微秒）
+     */
+    private double runLoad(GraphSupplier supplier, int threads, int requestsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    long elapsed = 0;
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        long start = System.nanoTime();
+                        Optional<MedicalConsultationState> state = supplier.get()
+                                .invoke(Map.of("userInput", "我头疼发烧"));
+                        elapsed += System.nanoTime() - start;
+                        assertEquals("low_risk_medical", state.orElseThrow().intent());
+                    }
+                    return elapsed;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total / 1_000.0 / ((long) threads * requestsPerThread);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
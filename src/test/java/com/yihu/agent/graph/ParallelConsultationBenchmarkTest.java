@@ -0,0 +1,87 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.service.IntentRecognitionService;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 意图识别阶段并行执行基准测试
+ * 意图识别（大模型）、指南检索都使用固定耗时的本地桩实现，
+ * 对比子节点串行执行（直接在调用线程执行）与并行执行时的单请求耗时中位数：
+ * 串行约为各子节点耗时之和，并行约为最慢的子节点。
+ * 属于基准测试分组，不随默认的 mvn test 运行：mvn test -Dtest.excluded.groups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+public class ParallelConsultationBenchmarkTest {
+
+    private static final long INTENT_MS = 120;
+    private static final long RETRIEVAL_MS = 80;
+    private static final int REQUESTS = 10;
+
+    private final IntentRecognitionService intentService = userInput -> {
+        sleep(INTENT_MS);
+        return "low_risk_medical";
+    };
+
+    private final ContentRetriever guidelineRetriever = query -> {
+        sleep(RETRIEVAL_MS);
+        return List.of(Content.from("感冒一般 7 天左右自愈，注意休息"));
+    };
+
+    @Test
+    void wallClockApproachesSlowestBranch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompiledGraph<MedicalConsultationState> serial = MedicalConsultationGraph.buildGraph(intentService,
+                    null, null, null, new ConsultationContext(guidelineRetriever, 6, Runnable::run));
+            CompiledGraph<MedicalConsultationState> parallel = MedicalConsultationGraph.buildGraph(intentService,
+                    null, null, null, new ConsultationContext(guidelineRetriever, 6, executor));
+
+            double serialMs = medianMs(serial);
+            double parallelMs = medianMs(parallel);
+            long sum = INTENT_MS + RETRIEVAL_MS;
+            System.out.printf("子节点串行: %.1f ms/请求, 并行: %.1f ms/请求 (子节点之和 %d ms, 最慢 %d ms)%n",
+                    serialMs, parallelMs, sum, INTENT_MS);
+
+            assertTrue(serialMs >= sum);
+            assertTrue(parallelMs < INTENT_MS + (sum - INTENT_MS) / 2.0, "并行耗时应接近最慢的子节点");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double medianMs(CompiledGraph<MedicalConsultationState> graph) throws Exception {
+        // 预热
+        graph.invoke(Map.of("userInput", "我头疼发烧"));
+        List<Long> elapsed = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            MedicalConsultationState state = graph.invoke(Map.of("userInput", "我头疼发烧")).orElseThrow();
+            elapsed.add(System.nanoTime() - start);
+            assertEquals(1, state.guidelines().size());
+        }
+        elapsed.sort(null);
+        return elapsed.get(elapsed.size() / 2) / 1_000_000.0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
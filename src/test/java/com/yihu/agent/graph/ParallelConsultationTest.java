@@ -0,0 +1,151 @@
+package com.yihu.agent.graph;
+
+import com.yihu.agent.graph.checkpoint.CompactCheckpointSaver;
+import com.yihu.agent.graph.checkpoint.InMemoryCheckpointStore;
+import com.yihu.agent.graph.state.IntentType;
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import org.bsc.langgraph4j.CompileConfig;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 意图识别阶段并行收集上下文的测试
+ * 验证历史对话取自检查点恢复的消息日志、风险评分升级写入状态、
+ * 推测执行带上与分支节点相同的上下文；意图识别和指南检索都使用本地桩实现
+ */
+public class ParallelConsultationTest {
+
+    private static final List<String> GUIDELINES = List.of("感冒一般 7 天左右自愈，注意休息");
+
+    private final IntentRecognitionService intentService = userInput ->
+            userInput.contains("你好") ? "general_chat" : "low_risk_medical";
+
+    private final ContentRetriever guidelineRetriever = query -> List.of(Content.from(GUIDELINES.get(0)));
+
+    @Test
+    void historyComesFromCheckpointedMessages() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<List<String>> answererHistory = Collections.synchronizedList(new ArrayList<>());
+            ConsultationContext context = new ConsultationContext(guidelineRetriever, 6, 0.8,
+                    (question, guidelines, history) -> {
+                        answererHistory.add(history);
+                        return "结合资料的回答";
+                    }, executor);
+            BranchSpeculator speculator = new BranchSpeculator(Map.of("low_risk_medical", question -> "不含上下文的回答"),
+                    new IntentPreClassifier(), executor, 0.3, false);
+            CompactCheckpointSaver saver = new CompactCheckpointSaver(new InMemoryCheckpointStore(100), 8);
+            CompiledGraph<MedicalConsultationState> graph = MedicalConsultationGraph
+                    .buildGraphWithNoCompile(intentService, new IntentPreClassifier(), null, speculator, context)
+                    .compile(CompileConfig.builder().checkpointSaver(saver).build());
+            RunnableConfig config = RunnableConfig.builder().threadId("c1").build();
+
+            MedicalConsultationState first = graph.invoke(Map.of("userInput", "你好"), config).orElseThrow();
+            assertEquals("general_chat", first.intent());
+            assertTrue(first.history().isEmpty());
+
+            // 上一轮是普通对话，本轮重新识别意图，历史对话取自检查点中的消息日志（不含意图识别记录）
+            MedicalConsultationState second = graph.invoke(Map.of("userInput", "有点胸闷，是不是感冒引起的"), config)
+                    .orElseThrow();
+            List<String> expected = List.of("用户: 你好", "助手: " + first.modelResponse());
+            assertEquals("low_risk_medical", second.intent());
+            assertEquals(GUIDELINES, second.guidelines());
+            assertEquals(expected, second.history());
+            assertTrue(second.riskScore() > 0, "胸闷应产生风险评分");
+            assertFalse(second.escalated());
+            assertEquals("结合资料的回答", second.modelResponse());
+            assertEquals(List.of(expected), answererHistory);
+
+            // 没有检查点时消息日志中只有本轮输入
+            MedicalConsultationState standalone = MedicalConsultationGraph.buildGraph(intentService,
+                    new IntentPreClassifier(), null, speculator, context)
+                    .invoke(Map.of("userInput", "有点胸闷，是不是感冒引起的")).orElseThrow();
+            assertTrue(standalone.history().isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void recentHistoryStartsAtAUserMessage() {
+        List<String> messages = List.of("问1", "意图识别完成: low_risk_medical", "答1", "问2", "答2", "问3");
+
+        assertEquals(List.of("用户: 问1", "助手: 答1", "用户: 问2", "助手: 答2"),
+                MedicalConsultationGraph.recentHistory(messages, 6));
+        assertEquals(List.of("用户: 问2", "助手: 答2"), MedicalConsultationGraph.recentHistory(messages, 3));
+        assertTrue(MedicalConsultationGraph.recentHistory(List.of("问1"), 6).isEmpty());
+    }
+
+    @Test
+    void riskEscalationIsRecordedInState() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompiledGraph<MedicalConsultationState> graph = MedicalConsultationGraph.buildGraph(intentService,
+                    new IntentPreClassifier(), null, null, new ConsultationContext(guidelineRetriever, 6, executor));
+
+            // 否定表述让规则预分类交给（桩）大模型，大模型判为非高危，但未否定的“胸痛”风险评分达到阈值
+            List<String> nodes = new ArrayList<>();
+            MedicalConsultationState triage = null;
+            for (NodeOutput<MedicalConsultationState> output : graph.stream(Map.of("userInput", "没有发烧，但是胸痛"))) {
+                nodes.add(output.node());
+                if (output.node().equals("intentRecognition")) {
+                    triage = output.state();
+                }
+            }
+            assertTrue(nodes.contains("highRiskMedical"), "风险评分应升级到高危分支: " + nodes);
+            assertFalse(nodes.contains("lowRiskMedical"));
+            assertEquals("low_risk_medical", triage.intent());
+            assertTrue(triage.escalated());
+            assertEquals(IntentType.HIGH_RISK_MEDICAL, triage.branchIntent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void speculationCarriesTheSameContextAsTheBranch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Object> answererInput = Collections.synchronizedList(new ArrayList<>());
+            ConsultationContext context = new ConsultationContext(guidelineRetriever, 6, 0.8,
+                    (question, guidelines, history) -> {
+                        answererInput.add(guidelines);
+                        return "结合资料的回答";
+                    }, executor);
+            BranchSpeculator speculator = new BranchSpeculator(Map.of("low_risk_medical", question -> "不含上下文的回答"),
+                    new IntentPreClassifier(), executor, 0.3, true);
+            // 不传入规则预分类器，意图识别总是调用（桩）大模型，推测与之并行
+            CompiledGraph<MedicalConsultationState> graph = MedicalConsultationGraph.buildGraph(intentService,
+                    null, null, speculator, context);
+
+            MedicalConsultationState state = graph.invoke(Map.of("userInput", "我头疼发烧")).orElseThrow();
+
+            assertEquals("结合资料的回答", state.modelResponse());
+            assertEquals(GUIDELINES, state.guidelines());
+            // 分支取用带上下文的推测结果，不再生成第二次
+            assertEquals(List.of(GUIDELINES), answererInput);
+            assertEquals(1L, speculator.stats().get("hits"));
+            assertEquals(0L, speculator.stats().get("discarded"));
+            assertEquals(0, speculator.stats().get("inFlight"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
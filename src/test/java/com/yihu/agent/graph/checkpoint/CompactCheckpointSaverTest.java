@@ -0,0 +1,201 @@
+package com.yihu.agent.graph.checkpoint;
+
+import com.yihu.agent.graph.MedicalConsultationGraph;
+import com.yihu.agent.graph.state.IntentType;
+import com.yihu.agent.graph.state.MedicalConsultationState;
+import com.yihu.agent.graph.state.MessageLog;
+import com.yihu.agent.service.IntentRecognitionService;
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import org.bsc.langgraph4j.CompileConfig;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.BaseCheckpointSaver;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图检查点测试
+ * 验证紧凑编码的往返和体积、反序列化白名单、文件存储跨实例（重启）恢复和空闲清除，
+ * 以及同一会话的后续消息从检查点继续、不再重新识别意图
+ */
+public class CompactCheckpointSaverTest {
+
+    @TempDir
+    Path directory;
+
+    private static Map<String, Object> sampleState() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("userInput", "我头疼发烧，需要吃什么药");
+        state.put("modelResponse", "根据您描述的症状，建议您：\n1. 注意休息，多喝水");
+        state.put("messages", MessageLog.of(List.of("我头疼发烧", "意图识别完成: low_risk_medical", "建议多喝水")));
+        state.put("intent", IntentType.LOW_RISK_MEDICAL);
+        state.put("requestId", "6f1c2d3e-4a5b-4c6d-8e9f-0a1b2c3d4e5f");
+        state.put("conversationId", "c1");
+        state.put("guidelines", List.of("感冒一般 7 天左右自愈，注意休息"));
+        state.put("riskScore", 0.0);
+        state.put("history", List.of());
+        return state;
+    }
+
+    private static Checkpoint checkpoint(String id, Map<String, Object> state) {
+        return Checkpoint.builder()
+                .id(id)
+                .nodeId("lowRiskMedical")
+                .nextNodeId("__END__")
+                .state(state)
+                .build();
+    }
+
+    @Test
+    void codecRoundTripsStateAndIsSmallerThanJavaSerialization() throws Exception {
+        Map<String, Object> state = sampleState();
+        byte[] encoded = CheckpointCodec.encode(checkpoint("cp-1", state));
+        Checkpoint decoded = CheckpointCodec.decode(encoded);
+
+        assertEquals("cp-1", decoded.getId());
+        assertEquals("lowRiskMedical", decoded.getNodeId());
+        assertEquals("__END__", decoded.getNextNodeId());
+        assertEquals(state, decoded.getState());
+        assertEquals(MessageLog.class, decoded.getState().get("messages").getClass());
+        assertEquals(IntentType.LOW_RISK_MEDICAL, decoded.getState().get("intent"));
+        assertEquals("cp-1", CheckpointCodec.idOf(encoded));
+
+        ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(javaBytes)) {
+            out.writeObject(new HashMap<>(state));
+        }
+        System.out.printf("紧凑编码: %d 字节, Java 序列化: %d 字节%n", encoded.length, javaBytes.size());
+        assertTrue(encoded.length * 2 < javaBytes.size());
+    }
+
+    /**
+     * 不在白名单中的可序列化类
+     */
+    private record Untrusted(String value) implements Serializable {
+    }
+
+    @Test
+    void deserializationOnlyAcceptsAllowListedClasses() {
+        Map<String, Object> state = sampleState();
+        state.put("counts", new ArrayList<>(List.of(1, 2, 3)));
+        assertEquals(List.of(1, 2, 3),
+                CheckpointCodec.decode(CheckpointCodec.encode(checkpoint("cp-1", state))).getState().get("counts"));
+
+        state.put("payload", new Untrusted("x"));
+        byte[] encoded = CheckpointCodec.encode(checkpoint("cp-2", state));
+        assertThrows(IllegalStateException.class, () -> CheckpointCodec.decode(encoded));
+    }
+
+    @Test
+    void fileStoreEvictsIdleThreads() throws Exception {
+        try (FileCheckpointStore store = new FileCheckpointStore(directory, Duration.ofMinutes(5))) {
+            store.save("c1", new byte[]{1});
+            store.save("c2", new byte[]{2});
+            FileTime idle = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofMinutes(10).toMillis());
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.setLastModifiedTime(file, idle);
+                }
+            }
+            store.save("c2", new byte[]{3});
+
+            assertEquals(1, store.evictIdle());
+            assertTrue(store.load("c1").isEmpty());
+            assertTrue(store.load("c2").isPresent());
+            assertEquals(1L, store.stats().get("evicted"));
+        }
+    }
+
+    @Test
+    void fileStoreKeepsLatestCheckpointsAcrossRestarts() throws Exception {
+        RunnableConfig config = RunnableConfig.builder().threadId("c1").build();
+        CompactCheckpointSaver saver = new CompactCheckpointSaver(new FileCheckpointStore(directory, Duration.ofHours(1)), 2);
+        for (int i = 1; i <= 3; i++) {
+            Map<String, Object> state = sampleState();
+            state.put("userInput", "第 " + i + " 轮");
+            RunnableConfig saved = saver.put(config, checkpoint("cp-" + i, state));
+            assertEquals("cp-" + i, saved.checkPointId().orElseThrow());
+        }
+
+        // 新实例模拟应用重启
+        CompactCheckpointSaver restarted = new CompactCheckpointSaver(new FileCheckpointStore(directory, Duration.ofHours(1)), 2);
+        assertEquals(List.of("cp-3", "cp-2"), restarted.list(config).stream().map(Checkpoint::getId).toList());
+        assertEquals("第 3 轮", restarted.get(config).orElseThrow().getState().get("userInput"));
+
+        // 带 checkPointId 时替换该检查点
+        RunnableConfig cp2 = RunnableConfig.builder(config).checkPointId("cp-2").build();
+        Map<String, Object> updated = sampleState();
+        updated.put("userInput", "已修改");
+        restarted.put(cp2, checkpoint("cp-2", updated));
+        assertEquals("已修改", restarted.get(cp2).orElseThrow().getState().get("userInput"));
+        assertEquals(2, restarted.list(config).size());
+
+        assertTrue(restarted.get(RunnableConfig.builder().threadId("other").build()).isEmpty());
+        BaseCheckpointSaver.Tag released = restarted.release(config);
+        assertEquals("c1", released.threadId());
+        assertEquals(List.of("cp-3", "cp-2"), released.checkpoints().stream().map(Checkpoint::getId).toList());
+        assertTrue(restarted.get(config).isEmpty());
+        assertTrue(restarted.release(config).checkpoints().isEmpty());
+    }
+
+    @Test
+    void followUpMessageResumesAtPreviousBranch() throws Exception {
+        AtomicInteger modelCalls = new AtomicInteger();
+        IntentRecognitionService intentService = userInput -> {
+            modelCalls.incrementAndGet();
+            return "low_risk_medical";
+        };
+        CompactCheckpointSaver saver = new CompactCheckpointSaver(new InMemoryCheckpointStore(100), 8);
+        CompiledGraph<MedicalConsultationState> graph = MedicalConsultationGraph
+                .buildGraphWithNoCompile(intentService, new IntentPreClassifier(), null)
+                .compile(CompileConfig.builder().checkpointSaver(saver).build());
+        RunnableConfig config = RunnableConfig.builder().threadId("c1").build();
+
+        List<String> firstTurn = run(graph, "孩子最近睡眠不太好", config);
+        List<String> secondTurn = run(graph, "那平时需要注意什么", config);
+
+        assertTrue(firstTurn.contains("intentRecognition"));
+        assertFalse(secondTurn.contains("intentRecognition"), "后续消息应跳过意图识别: " + secondTurn);
+        assertTrue(secondTurn.contains("lowRiskMedical"));
+        assertEquals(1, modelCalls.get());
+
+        MedicalConsultationState state = graph.getState(config).state();
+        assertEquals("low_risk_medical", state.intent());
+        assertTrue(state.messages().contains("孩子最近睡眠不太好"));
+        assertTrue(state.messages().contains("那平时需要注意什么"));
+
+        // 出现高危关键词时重新识别意图
+        List<String> escalated = run(graph, "现在突然胸痛，呼吸困难", config);
+        assertTrue(escalated.contains("intentRecognition"));
+        assertTrue(escalated.contains("highRiskMedical"));
+    }
+
+    private static List<String> run(CompiledGraph<MedicalConsultationState> graph, String userInput,
+                                    RunnableConfig config) throws Exception {
+        List<String> nodes = new ArrayList<>();
+        for (NodeOutput<MedicalConsultationState> output : graph.stream(Map.of("userInput", userInput), config)) {
+            nodes.add(output.node());
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,155 @@
+package com.yihu.agent.graph.state;
+
+import com.yihu.agent.graph.MedicalConsultationGraph;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.action.Command;
+import org.bsc.langgraph4j.state.AgentState;
+import org.bsc.langgraph4j.state.Channel;
+import org.bsc.langgraph4j.state.Channels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 医疗咨询状态分配开销 JMH 基准测试
+ * 按一次请求经过的三步状态更新（处理输入、意图识别、分支回答）和一次路由，对比：
+ * legacy —— 字符串意图、ArrayList 追加通道、每个节点新建 HashMap、访问方法缺省时新建 ArrayList；
+ * compact —— 枚举意图、结构共享的消息日志、预先构建的状态增量、构造时读取的固定字段。
+ * graphInvoke 在 8 个线程上执行完整的图（意图识别为本地桩），观察高请求率下的 GC 压力。
+ * 运行：执行 main 方法（不随 mvn test 运行），结果中 gc.alloc.rate.norm 为每次操作分配的字节数，
+ * gc.alloc.rate / gc.count 为分配速率和 GC 次数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MedicalConsultationStateBenchmark {
+
+    private static final String USER_INPUT = "我头疼发烧";
+    private static final String REQUEST_ID = "3f2b8c1e-request";
+    private static final String RESPONSE = "根据您描述的症状，建议您：\n1. 注意休息，多喝水";
+
+    /**
+     * 改造前的状态结构
+     */
+    private static final Map<String, Channel<?>> LEGACY_SCHEMA = Map.of(
+            "userInput", Channels.base(() -> "default user input"),
+            "modelResponse", Channels.base(() -> "default model response"),
+            "messages", Channels.appender(ArrayList::new),
+            "intent", Channels.base(() -> "default intent"),
+            "requestId", Channels.base(() -> ""));
+
+    private static final Map<String, Object> COMPACT_INTENT_UPDATE = Map.of(
+            "intent", IntentType.LOW_RISK_MEDICAL,
+            "messages", "意图识别完成: " + IntentType.LOW_RISK_MEDICAL.key());
+    private static final Map<String, Object> COMPACT_REPLY = Map.of("modelResponse", RESPONSE, "messages", RESPONSE);
+    private static final Command COMPACT_ROUTE = new Command(IntentType.LOW_RISK_MEDICAL.key());
+
+    private CompiledGraph<MedicalConsultationState> graph;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() throws Exception {
+        // 图节点会打印日志，基准测试期间丢弃
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        graph = MedicalConsultationGraph.buildGraph(userInput -> "low_risk_medical");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void legacyStateUpdates(Blackhole blackhole) {
+        Map<String, Object> data = initialState(LEGACY_SCHEMA);
+
+        AgentState state = new AgentState(data);
+        String userInput = state.<String>value("userInput").orElse("");
+        data = AgentState.updateState(data, Map.of(
+                "userInput", userInput,
+                "messages", userInput,
+                "requestId", REQUEST_ID), LEGACY_SCHEMA);
+
+        state = new AgentState(data);
+        String intent = "low_risk_medical";
+        Map<String, Object> intentUpdate = new HashMap<>();
+        intentUpdate.put("intent", intent);
+        intentUpdate.put("messages", "意图识别完成: " + intent);
+        data = AgentState.updateState(data, intentUpdate, LEGACY_SCHEMA);
+
+        state = new AgentState(data);
+        blackhole.consume(new Command(state.<String>value("intent").orElse("")));
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("modelResponse", RESPONSE);
+        reply.put("messages", RESPONSE);
+        data = AgentState.updateState(data, reply, LEGACY_SCHEMA);
+
+        state = new AgentState(data);
+        blackhole.consume(state.<List<String>>value("messages").orElse(new ArrayList<>()));
+    }
+
+    @Benchmark
+    public void compactStateUpdates(Blackhole blackhole) {
+        Map<String, Object> data = initialState(MedicalConsultationState.SCHEMA);
+
+        MedicalConsultationState state = new MedicalConsultationState(data);
+        data = AgentState.updateState(data, Map.of(
+                "messages", state.userInput(),
+                "requestId", REQUEST_ID), MedicalConsultationState.SCHEMA);
+
+        state = new MedicalConsultationState(data);
+        data = AgentState.updateState(data, COMPACT_INTENT_UPDATE, MedicalConsultationState.SCHEMA);
+
+        state = new MedicalConsultationState(data);
+        blackhole.consume(state.intentType() == IntentType.LOW_RISK_MEDICAL ? COMPACT_ROUTE : null);
+        data = AgentState.updateState(data, COMPACT_REPLY, MedicalConsultationState.SCHEMA);
+
+        state = new MedicalConsultationState(data);
+        blackhole.consume(state.messages());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object graphInvoke() throws Exception {
+        return graph.invoke(Map.of("userInput", USER_INPUT)).orElseThrow();
+    }
+
+    private static Map<String, Object> initialState(Map<String, Channel<?>> schema) {
+        Map<String, Object> defaults = new HashMap<>();
+        schema.forEach((key, channel) -> channel.getDefault().ifPresent(value -> defaults.put(key, value.get())));
+        return AgentState.updateState(defaults, Map.of("userInput", USER_INPUT), schema);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MedicalConsultationStateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.yihu.agent.graph.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 结构共享消息日志测试
+ */
+public class MessageLogTest {
+
+    @Test
+    void appendLeavesEarlierVersionsUnchanged() {
+        MessageLog first = MessageLog.empty().append("我头疼发烧");
+        MessageLog second = first.append("意图识别完成: low_risk_medical");
+
+        assertEquals(List.of("我头疼发烧"), first);
+        assertEquals(List.of("我头疼发烧", "意图识别完成: low_risk_medical"), second);
+        assertEquals(0, MessageLog.empty().size());
+    }
+
+    @Test
+    void appendingToOlderVersionForksInsteadOfOverwriting() {
+        MessageLog base = MessageLog.empty().append("a").append("b");
+        MessageLog left = base.append("left");
+        MessageLog right = base.append("right");
+
+        assertEquals(List.of("a", "b", "left"), left);
+        assertEquals(List.of("a", "b", "right"), right);
+        assertEquals(List.of("a", "b", "left", "more"), left.append("more"));
+        assertEquals(List.of("a", "b"), base);
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        MessageLog log = MessageLog.empty();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            log = log.append("m" + i);
+            expected.add("m" + i);
+        }
+        assertEquals(expected, log);
+        assertEquals(List.of("m0", "m1", "x", "y"), MessageLog.of(List.of("m0", "m1")).appendAll(List.of("x", "y")));
+    }
+
+    @Test
+    void reducerAcceptsSingleMessagesAndCollections() {
+        Object log = MessageLog.reduce(MessageLog.empty(), "a");
+        log = MessageLog.reduce(log, List.of("b", "c"));
+        // 调用方以普通列表传入的消息
+        log = MessageLog.reduce(new ArrayList<>(List.of("x")), log);
+
+        assertEquals(List.of("x", "a", "b", "c"), log);
+        MessageLog unchanged = MessageLog.of(List.of("a"));
+        assertSame(unchanged, MessageLog.reduce(unchanged, List.of()));
+    }
+
+    @Test
+    void concurrentForksKeepTheirOwnMessages() throws Exception {
+        MessageLog base = MessageLog.empty().append("shared");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MessageLog>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String name = "t" + t;
+                futures.add(executor.submit(() -> {
+                    MessageLog log = base;
+                    for (int i = 0; i < 50; i++) {
+                        log = log.append(name + "-" + i);
+                    }
+                    return log;
+                }));
+            }
+            for (int t = 0; t < futures.size(); t++) {
+                MessageLog log = futures.get(t).get();
+                assertEquals(51, log.size());
+                assertEquals("shared", log.get(0));
+                for (int i = 0; i < 50; i++) {
+                    assertEquals("t" + t + "-" + i, log.get(i + 1));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void serializesOnlyItsOwnPrefix() throws Exception {
+        MessageLog base = MessageLog.empty().append("a");
+        base.append("b");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(base);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object restored = in.readObject();
+            assertEquals(MessageLog.class, restored.getClass());
+            assertEquals(List.of("a"), restored);
+        }
+    }
+}
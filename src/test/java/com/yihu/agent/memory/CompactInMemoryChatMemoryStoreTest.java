@@ -0,0 +1,43 @@
+package com.yihu.agent.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 紧凑会话记忆存储测试
+ */
+public class CompactInMemoryChatMemoryStoreTest {
+
+    @Test
+    void roundTripsMessagesThroughCompressedStorage() {
+        try (CompactInMemoryChatMemoryStore store = new CompactInMemoryChatMemoryStore(Duration.ofMinutes(30))) {
+            List<ChatMessage> messages = List.of(
+                    UserMessage.from("我头疼发烧两天了"),
+                    AiMessage.from("建议多喝水、注意休息，如持续高烧请及时就医。"));
+            store.updateMessages("session-1", messages);
+
+            assertEquals(messages, store.getMessages("session-1"));
+            assertTrue(store.getMessages("session-2").isEmpty());
+            assertEquals(1, store.stats().get("activeSessions"));
+        }
+    }
+
+    @Test
+    void evictsIdleSessions() throws InterruptedException {
+        try (CompactInMemoryChatMemoryStore store = new CompactInMemoryChatMemoryStore(Duration.ZERO)) {
+            store.updateMessages("session-1", List.of(UserMessage.from("你好")));
+            Thread.sleep(5);
+
+            assertEquals(1, store.evictIdle());
+            assertTrue(store.getMessages("session-1").isEmpty());
+        }
+    }
+}
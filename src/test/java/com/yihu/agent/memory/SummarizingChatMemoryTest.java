@@ -0,0 +1,125 @@
+package com.yihu.agent.memory;
+
+import com.yihu.agent.metrics.MonitoredTaskExecutor;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 滚动摘要会话记忆测试：摘要模型和 token 估算器使用本地桩实现（一个字符计一个 token）
+ */
+public class SummarizingChatMemoryTest {
+
+    private static final String SUMMARY = "患者头疼发烧两天，已建议多喝水休息";
+
+    private final AtomicInteger summaryCalls = new AtomicInteger();
+
+    private final ChatModel summaryModel = new ChatModel() {
+        @Override
+        public ChatResponse doChat(ChatRequest request) {
+            summaryCalls.incrementAndGet();
+            return ChatResponse.builder().aiMessage(AiMessage.from(SUMMARY)).build();
+        }
+    };
+
+    private final TokenCountEstimator estimator = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text == null ? 0 : text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            if (message instanceof UserMessage user) {
+                return estimateTokenCountInText(user.singleText());
+            }
+            if (message instanceof AiMessage ai) {
+                return estimateTokenCountInText(ai.text());
+            }
+            return estimateTokenCountInText(((SystemMessage) message).text());
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int tokens = 0;
+            for (ChatMessage message : messages) {
+                tokens += estimateTokenCountInMessage(message);
+            }
+            return tokens;
+        }
+    };
+
+    @Test
+    void olderTurnsAreReplacedBySummaryOnceBudgetIsExceeded() throws Exception {
+        MonitoredTaskExecutor executor = new MonitoredTaskExecutor("summary-test-", 1, 1, 10);
+        executor.initialize();
+        try (CompactInMemoryChatMemoryStore store = new CompactInMemoryChatMemoryStore(Duration.ofMinutes(30))) {
+            ConversationSummarizer summarizer = new ConversationSummarizer(summaryModel, estimator, executor, 100, 40);
+            SummarizingChatMemory memory = new SummarizingChatMemory("session-1", store, summarizer);
+
+            // 每次写入后等待后台摘要完成，使结果确定
+            add(memory, summarizer, SystemMessage.from("你是医疗助手"));
+            for (int turn = 1; turn <= 8; turn++) {
+                add(memory, summarizer, UserMessage.from("第" + turn + "轮：我头疼发烧还有点咳嗽"));
+                add(memory, summarizer, AiMessage.from("第" + turn + "轮回复：多喝水，注意休息"));
+            }
+
+            List<ChatMessage> messages = store.getMessages("session-1");
+            assertEquals(SystemMessage.from("你是医疗助手"), messages.get(0));
+            assertEquals(AiMessage.from(ConversationSummarizer.SUMMARY_PREFIX + SUMMARY), messages.get(1));
+            assertTrue(summaryCalls.get() >= 1);
+
+            // 较早的原始对话已被摘要替换，最近一轮保留原文
+            assertFalse(messages.contains(UserMessage.from("第1轮：我头疼发烧还有点咳嗽")));
+            assertEquals(AiMessage.from("第8轮回复：多喝水，注意休息"), messages.get(messages.size() - 1));
+            assertTrue(messages.get(2) instanceof UserMessage, "保留的对话应从一问开始");
+            assertTrue(estimator.estimateTokenCountInMessages(messages) <= 100);
+            assertEquals(0L, summarizer.stats().get("hardLimitTrims"));
+            assertEquals(0L, summarizer.stats().get("summaryFailures"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void hardLimitTrimDropsWholeTurns() {
+        ConversationSummarizer summarizer = new ConversationSummarizer(summaryModel, estimator, null, 10, 5);
+        List<ChatMessage> messages = List.of(
+                SystemMessage.from("你是医疗助手"),
+                UserMessage.from("我头疼发烧两天了"),
+                AiMessage.from("建议多喝水注意休息"),
+                UserMessage.from("还咳嗽"),
+                AiMessage.from("可以吃药"));
+
+        // 超过硬上限（20）：丢掉第一轮的问和答，而不是只丢问留下孤立的回答
+        List<ChatMessage> trimmed = summarizer.prepareForPrompt(messages);
+        assertEquals(List.of(messages.get(0), messages.get(3), messages.get(4)), trimmed);
+        assertEquals(1L, summarizer.stats().get("hardLimitTrims"));
+    }
+
+    private static void add(SummarizingChatMemory memory, ConversationSummarizer summarizer, ChatMessage message)
+            throws InterruptedException {
+        memory.add(message);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while ((int) summarizer.stats().get("inFlight") > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("摘要未在 5 秒内完成");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
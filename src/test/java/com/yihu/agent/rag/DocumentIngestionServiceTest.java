@@ -0,0 +1,75 @@
+package com.yihu.agent.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文档入库流水线测试
+ * 向量模型使用本地桩实现，只验证流水线的批处理与完整性
+ */
+public class DocumentIngestionServiceTest {
+
+    @TempDir
+    Path documents;
+
+    @Test
+    void ingestsEverySegmentInBatches() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(documents.resolve("doc-" + i + ".txt"),
+                    ("第" + i + "篇文档。感冒时应多喝水、注意休息。").repeat(40));
+        }
+        AtomicInteger maxBatch = new AtomicInteger();
+        EmbeddingModel stubModel = segments -> {
+            maxBatch.accumulateAndGet(segments.size(), Math::max);
+            return Response.from(segments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length(), 1}))
+                    .toList());
+        };
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        DocumentIngestionService service = newService(stubModel, store, 8);
+
+        IngestionReport report = service.ingest(documents);
+
+        assertEquals(20, report.documents());
+        assertEquals(0, report.failedDocuments());
+        assertTrue(report.segments() > 20, "每篇文档应被切分为多个片段");
+        assertTrue(maxBatch.get() <= 8, "单批片段数不应超过批大小");
+        List<?> stored = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 1}))
+                .maxResults(10_000)
+                .minScore(0.0)
+                .build()).matches();
+        assertEquals(report.segments(), stored.size());
+        assertEquals(report, service.lastReport());
+    }
+
+    private static DocumentIngestionService newService(EmbeddingModel model,
+                                                       InMemoryEmbeddingStore<TextSegment> store,
+                                                       int batchSize) {
+        DocumentIngestionService service = new DocumentIngestionService();
+        ReflectionTestUtils.setField(service, "embeddingModel", model);
+        ReflectionTestUtils.setField(service, "medicalEmbeddingStore", store);
+        ReflectionTestUtils.setField(service, "maxSegmentSize", 100);
+        ReflectionTestUtils.setField(service, "maxOverlapSize", 0);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "loaderThreads", 2);
+        ReflectionTestUtils.setField(service, "embeddingThreads", 2);
+        ReflectionTestUtils.setField(service, "queueCapacity", 16);
+        return service;
+    }
+}
@@ -0,0 +1,168 @@
+package com.yihu.agent.rag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量索引测试
+ */
+public class IncrementalIndexerTest {
+
+    @TempDir
+    Path documents;
+
+    @TempDir
+    Path data;
+
+    private final AtomicInteger embedded = new AtomicInteger();
+    private final InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+    private IncrementalIndexer indexer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        EmbeddingModel stubModel = segments -> {
+            embedded.addAndGet(segments.size());
+            return Response.from(segments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length(), 1}))
+                    .toList());
+        };
+        indexer = newIndexer(stubModel);
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(documents.resolve("guide-" + i + ".txt"), paragraphs(i, 5));
+        }
+    }
+
+    @Test
+    void onlyReembedsChangedSegments() throws Exception {
+        assertFalse(indexer.ownsStore());
+        IncrementalIndexer.RefreshReport first = indexer.refresh();
+        assertEquals(10, first.addedDocuments());
+        assertTrue(indexer.ownsStore());
+        int total = storedSegments();
+        assertEquals(first.embeddedSegments(), total);
+
+        embedded.set(0);
+        IncrementalIndexer.RefreshReport unchanged = indexer.refresh();
+        assertEquals(10, unchanged.unchangedDocuments());
+        assertEquals(0, embedded.get());
+
+        // 修改一篇文档中的一个段落：只应重新向量化该段落
+        Files.writeString(documents.resolve("guide-3.txt"),
+                paragraphs(3, 5).replace("第3篇第2段", "第3篇第2段（已更新）"));
+        IncrementalIndexer.RefreshReport changed = indexer.refresh();
+        assertEquals(1, changed.changedDocuments());
+        assertEquals(1, changed.embeddedSegments());
+        assertEquals(1, changed.removedSegments());
+        assertEquals(total, storedSegments());
+
+        Files.delete(documents.resolve("guide-7.txt"));
+        IncrementalIndexer.RefreshReport deleted = indexer.refresh();
+        assertEquals(1, deleted.deletedDocuments());
+        assertEquals(total - deleted.removedSegments(), storedSegments());
+    }
+
+    @Test
+    void failedEmbeddingLeavesIndexUntouched() throws Exception {
+        indexer.refresh();
+        int total = storedSegments();
+        Files.writeString(documents.resolve("guide-3.txt"),
+                paragraphs(3, 5).replace("第3篇第2段", "第3篇第2段（已更新）"));
+
+        IncrementalIndexer failing = newIndexer(segments -> {
+            throw new IllegalStateException("向量模型不可用");
+        });
+        assertThrows(IllegalStateException.class, () -> failing.refresh());
+        // 旧片段未被提前删除，清单也未更新
+        assertEquals(total, storedSegments());
+
+        IncrementalIndexer.RefreshReport retried = indexer.refresh();
+        assertEquals(1, retried.changedDocuments());
+        assertEquals(1, retried.embeddedSegments());
+        assertEquals(total, storedSegments());
+    }
+
+    @Test
+    void manifestSurvivesRestart() throws Exception {
+        indexer.refresh();
+        embedded.set(0);
+
+        IncrementalIndexer restarted = newIndexer(segments -> {
+            embedded.addAndGet(segments.size());
+            return Response.from(segments.stream().map(segment -> Embedding.from(new float[]{1, 1})).toList());
+        });
+        IncrementalIndexer.RefreshReport report = restarted.refresh();
+
+        assertEquals(10, report.unchangedDocuments());
+        assertEquals(0, embedded.get());
+        assertTrue(restarted.indexedDocuments() > 0);
+    }
+
+    @Test
+    void subdirectoryRefreshOnlyTouchesThatSubtree() throws Exception {
+        Path cardiology = Files.createDirectories(documents.resolve("cardiology"));
+        Files.writeString(cardiology.resolve("chest-pain.txt"), paragraphs(20, 3));
+        indexer.refresh();
+        int total = storedSegments();
+
+        // 只比对子目录下的清单条目，文档目录下的其他文档不应被当作已删除
+        Files.writeString(cardiology.resolve("chest-pain.txt"),
+                paragraphs(20, 3).replace("第20篇第1段", "第20篇第1段（已更新）"));
+        IncrementalIndexer.RefreshReport report = indexer.refresh("cardiology");
+        assertEquals(1, report.changedDocuments());
+        assertEquals(0, report.deletedDocuments());
+        assertEquals(total, storedSegments());
+
+        assertThrows(IllegalArgumentException.class, () -> indexer.refresh("../"));
+        assertThrows(IllegalArgumentException.class, () -> indexer.refresh(data.toAbsolutePath().toString()));
+    }
+
+    private IncrementalIndexer newIndexer(EmbeddingModel model) throws Exception {
+        IncrementalIndexer indexer = new IncrementalIndexer();
+        ReflectionTestUtils.setField(indexer, "embeddingModel", model);
+        ReflectionTestUtils.setField(indexer, "medicalEmbeddingStore", store);
+        ReflectionTestUtils.setField(indexer, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(indexer, "documentsDir", documents.toString());
+        ReflectionTestUtils.setField(indexer, "maxSegmentSize", 30);
+        ReflectionTestUtils.setField(indexer, "maxOverlapSize", 0);
+        ReflectionTestUtils.setField(indexer, "batchSize", 16);
+        ReflectionTestUtils.setField(indexer, "manifestPath", data.resolve("manifest.json").toString());
+        ReflectionTestUtils.setField(indexer, "watchDebounce", Duration.ofMillis(100));
+        indexer.init();
+        return indexer;
+    }
+
+    private int storedSegments() {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 1}))
+                .maxResults(10_000)
+                .minScore(0.0)
+                .build()).matches().size();
+    }
+
+    private static String paragraphs(int document, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int p = 0; p < count; p++) {
+            text.append("第").append(document).append("篇第").append(p).append("段：感冒时应多喝水、注意休息。\n\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.yihu.agent.rag.pgvector;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * pgvector 向量库基准测试
+ * 不依赖 Testcontainers，直接连接 PGVECTOR_URL 指定的本地 PostgreSQL（需已安装 pgvector 扩展），
+ * 未设置该环境变量时跳过。例如：
+ * <pre>
+ * docker run -d -p 5432:5432 -e POSTGRES_PASSWORD=pgvector -e POSTGRES_USER=pgvector pgvector/pgvector:pg16
+ * PGVECTOR_URL=jdbc:postgresql://localhost:5432/pgvector mvn test -Dtest=PgVectorStoreBenchmarkTest
+ * </pre>
+ * 对比逐行写入与 COPY 批量写入的吞吐，以及不同 ef_search 下的 recall@10 和单次检索耗时（真值为暴力检索）；
+ * 最后验证元数据过滤在数据库内执行
+ */
+@EnabledIfEnvironmentVariable(named = "PGVECTOR_URL", matches = ".+")
+public class PgVectorStoreBenchmarkTest {
+
+    private static final int DIMENSION = 128;
+    private static final int VECTORS = 20_000;
+    private static final int SINGLE_ROW_WRITES = 500;
+    private static final int CLUSTERS = 100;
+    private static final int CATEGORIES = 10;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Test
+    void batchedIngestionAndTunableSearch() throws Exception {
+        String table = "bench_embeddings_" + Long.toHexString(System.nanoTime());
+        try (HikariDataSource dataSource = dataSource()) {
+            PgVectorStore store = new PgVectorStore(dataSource, new PgVectorSettings(table, DIMENSION,
+                    PgVectorIndexType.HNSW, false, 16, 64, 100, 40, 10, 1000, false, true));
+            try {
+                run(store);
+            } finally {
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("DROP TABLE IF EXISTS " + table);
+                }
+            }
+        }
+    }
+
+    private void run(PgVectorStore store) throws Exception {
+        Random random = new Random(42);
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers.add(gaussian(random, 1.0f, null));
+        }
+        List<String> ids = new ArrayList<>();
+        List<Embedding> corpus = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < VECTORS; i++) {
+            ids.add(UUID.randomUUID().toString());
+            corpus.add(Embedding.from(gaussian(random, 0.3f, centers.get(random.nextInt(CLUSTERS)))));
+            segments.add(TextSegment.from("片段 " + i, Metadata.from("category", "c" + (i % CATEGORIES))));
+        }
+        List<Embedding> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(Embedding.from(gaussian(random, 0.3f, centers.get(random.nextInt(CLUSTERS)))));
+        }
+
+        // 逐行写入：每行一次往返和一个事务
+        long singleStart = System.nanoTime();
+        for (int i = 0; i < SINGLE_ROW_WRITES; i++) {
+            store.addAll(List.of(ids.get(i)), List.of(corpus.get(i)), List.of(segments.get(i)));
+        }
+        double singleRowsPerSecond = SINGLE_ROW_WRITES / ((System.nanoTime() - singleStart) / 1e9);
+
+        // COPY 批量写入剩余部分
+        long batchStart = System.nanoTime();
+        store.addAll(ids.subList(SINGLE_ROW_WRITES, VECTORS), corpus.subList(SINGLE_ROW_WRITES, VECTORS),
+                segments.subList(SINGLE_ROW_WRITES, VECTORS));
+        double batchRowsPerSecond = (VECTORS - SINGLE_ROW_WRITES) / ((System.nanoTime() - batchStart) / 1e9);
+        assertEquals(VECTORS, store.size());
+
+        System.out.printf("逐行写入: %.0f 行/秒, COPY 批量写入: %.0f 行/秒%n", singleRowsPerSecond, batchRowsPerSecond);
+        assertTrue(batchRowsPerSecond > singleRowsPerSecond, "批量写入应快于逐行写入");
+
+        InMemoryEmbeddingStore<TextSegment> bruteForce = new InMemoryEmbeddingStore<>();
+        bruteForce.addAll(ids, corpus, segments);
+        List<Set<String>> truth = new ArrayList<>();
+        for (Embedding query : queries) {
+            truth.add(bruteForce.search(request(query)).matches().stream()
+                    .map(EmbeddingMatch::embeddingId).collect(Collectors.toSet()));
+        }
+
+        double bestRecall = 0;
+        for (int ef : new int[]{10, 20, 40, 100, 200}) {
+            // 预热
+            for (Embedding query : queries) {
+                store.search(request(query), ef);
+            }
+            long elapsed = 0;
+            double hits = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                long start = System.nanoTime();
+                List<EmbeddingMatch<TextSegment>> matches = store.search(request(queries.get(q)), ef).matches();
+                elapsed += System.nanoTime() - start;
+                Set<String> found = new HashSet<>(truth.get(q));
+                found.retainAll(matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toSet()));
+                hits += found.size();
+            }
+            double recall = hits / (QUERIES * K);
+            bestRecall = Math.max(bestRecall, recall);
+            System.out.printf("pgvector HNSW ef_search=%-4d recall@%d=%.3f  %.2f ms/查询%n",
+                    ef, K, recall, elapsed / 1_000_000.0 / QUERIES);
+        }
+        assertTrue(bestRecall >= 0.9, "ef_search=200 时召回率应不低于 0.9，实际 " + bestRecall);
+
+        // 元数据过滤在 SQL 中执行：结果全部满足条件且数量足够
+        List<EmbeddingMatch<TextSegment>> filtered = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(queries.get(0))
+                .maxResults(K)
+                .minScore(0.0)
+                .filter(metadataKey("category").isEqualTo("c3"))
+                .build(), 200).matches();
+        assertEquals(K, filtered.size());
+        assertTrue(filtered.stream().allMatch(match -> "c3".equals(match.embedded().metadata().getString("category"))));
+    }
+
+    private static HikariDataSource dataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getenv("PGVECTOR_URL"));
+        config.setUsername(System.getenv().getOrDefault("PGVECTOR_USER", "pgvector"));
+        config.setPassword(System.getenv().getOrDefault("PGVECTOR_PASSWORD", "pgvector"));
+        config.setMaximumPoolSize(4);
+        return new HikariDataSource(config);
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(K)
+                .minScore(0.0)
+                .build();
+    }
+
+    private static float[] gaussian(Random random, float sigma, float[] center) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (center == null ? 0 : center[i]) + (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+}
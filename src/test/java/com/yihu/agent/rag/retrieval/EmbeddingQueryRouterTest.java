@@ -0,0 +1,160 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向量路由与带超时检索器测试：向量模型使用本地桩实现（按关键词映射到坐标轴），无需下载模型
+ */
+public class EmbeddingQueryRouterTest {
+
+    private static final List<String> AXES = List.of("药", "检查", "医保");
+
+    /**
+     * 文本包含第 i 个关键词时第 i 维为 1；都不包含时落在第 4 维（与各检索器均不相似）
+     */
+    private static final EmbeddingModel MODEL = new EmbeddingModel() {
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            return Response.from(segments.stream().map(segment -> {
+                float[] vector = new float[AXES.size() + 1];
+                vector[AXES.size()] = 1;
+                for (int i = 0; i < AXES.size(); i++) {
+                    if (segment.text().contains(AXES.get(i))) {
+                        vector[i] = 1;
+                        vector[AXES.size()] = 0;
+                    }
+                }
+                return Embedding.from(vector);
+            }).toList());
+        }
+    };
+
+    @Test
+    void routesToMostSimilarRetrieverAndFansOutWhenUncertain() {
+        ContentRetriever drugs = named("drugs");
+        ContentRetriever exams = named("exams");
+        ContentRetriever insurance = named("insurance");
+        Map<ContentRetriever, String> descriptions = new LinkedHashMap<>();
+        descriptions.put(drugs, "药品说明书、用药剂量");
+        descriptions.put(exams, "检查项目、化验指标解读");
+        descriptions.put(insurance, "医保报销政策");
+        EmbeddingQueryRouter router = EmbeddingQueryRouter.fromDescriptions(MODEL, descriptions, 0.5);
+
+        assertEquals(List.of(drugs), List.copyOf(router.route(Query.from("布洛芬这个药一次吃几片"))));
+        assertEquals(List.of(exams), List.copyOf(router.route(Query.from("血常规检查结果怎么看"))));
+
+        // 同时命中两个检索器：相似度相同，一并返回
+        Collection<ContentRetriever> both = router.route(Query.from("做检查前能不能吃药"));
+        assertEquals(Set.of(drugs, exams), Set.copyOf(both));
+
+        // 与任何描述都不相似：扇出到全部检索器
+        assertEquals(Set.of(drugs, exams, insurance), Set.copyOf(router.route(Query.from("你好"))));
+        assertEquals(4L, router.stats().get("routed"));
+        assertEquals(1L, router.stats().get("fannedOut"));
+    }
+
+    @Test
+    void slowRetrieverIsDroppedAfterTimeout() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch interrupted = new CountDownLatch(1);
+            ContentRetriever slow = query -> {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                }
+                return List.of(Content.from("慢"));
+            };
+            TimeLimitedContentRetriever limited = new TimeLimitedContentRetriever("slow", slow, executor,
+                    Duration.ofMillis(100));
+            long start = System.nanoTime();
+            List<Content> result = limited.retrieve(Query.from("问题"));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(result.isEmpty());
+            assertTrue(elapsedMs < 2_000, "超时后应立即返回，实际 " + elapsedMs + " ms");
+            assertEquals(1, limited.timeouts());
+            // 超时后检索线程被中断，不会继续占用线程池
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+
+            TimeLimitedContentRetriever failing = new TimeLimitedContentRetriever("failing", query -> {
+                throw new IllegalStateException("连接失败");
+            }, executor, Duration.ofSeconds(1));
+            assertTrue(failing.retrieve(Query.from("问题")).isEmpty());
+            assertEquals(1, failing.failures());
+
+            TimeLimitedContentRetriever fast = new TimeLimitedContentRetriever("fast",
+                    query -> List.of(Content.from("快")), executor, Duration.ofSeconds(1));
+            assertEquals("快", fast.retrieve(Query.from("问题")).get(0).textSegment().text());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fullPoolSkipsRetrieverInsteadOfRunningInline() throws Exception {
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            AtomicInteger calls = new AtomicInteger();
+            TimeLimitedContentRetriever limited = new TimeLimitedContentRetriever("busy", query -> {
+                calls.incrementAndGet();
+                return List.of(Content.from("结果"));
+            }, executor, Duration.ofSeconds(1));
+
+            assertTrue(limited.retrieve(Query.from("问题")).isEmpty());
+            assertEquals(0, calls.get());
+            assertEquals(1, limited.rejections());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ContentRetriever named(String name) {
+        return new ContentRetriever() {
+            @Override
+            public List<Content> retrieve(Query query) {
+                return List.of();
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 混合检索测试：中文分词、BM25 关键词检索和倒数排名融合
+ */
+public class HybridRetrievalTest {
+
+    @Test
+    void tokenizerSplitsHanIntoBigramsAndKeepsLatinWords() {
+        List<String> tokens = ChineseTokenizer.tokenize("布洛芬 Ibuprofen 500mg，用于发热。");
+        assertEquals(List.of("布洛", "洛芬", "ibuprofen", "500mg", "用于", "于发", "发热"), tokens);
+        assertEquals(List.of("痛"), ChineseTokenizer.tokenize("痛"));
+        // 全角字母数字按 NFKC 归一化
+        assertEquals(List.of("h1n1"), ChineseTokenizer.tokenize("Ｈ１Ｎ１"));
+    }
+
+    @Test
+    void bm25FindsExactDrugNames() {
+        Bm25Index index = new Bm25Index();
+        index.addAll(List.of("1", "2", "3", "4"), List.of(
+                TextSegment.from("感冒发烧时多喝水，注意休息，必要时服用退烧药。"),
+                TextSegment.from("布洛芬是一种非甾体抗炎药，可用于缓解头痛和发热，成人每次 200mg。"),
+                TextSegment.from("对乙酰氨基酚适用于轻中度疼痛和发热，每日不超过 2000mg。"),
+                TextSegment.from("阿莫西林属于青霉素类抗生素，青霉素过敏者禁用。")));
+
+        List<Bm25Index.Hit> hits = index.search("布洛芬怎么吃", 3);
+        assertEquals("2", hits.get(0).id());
+
+        hits = index.search("青霉素过敏能吃阿莫西林吗", 3);
+        assertEquals("4", hits.get(0).id());
+
+        // 覆盖与删除
+        index.add("2", TextSegment.from("布洛芬缓释胶囊每日两次。"));
+        assertEquals(4, index.size());
+        assertEquals("布洛芬缓释胶囊每日两次。", index.search("布洛芬", 1).get(0).segment().text());
+        index.removeAll(List.of("2"));
+        assertTrue(index.search("布洛芬", 3).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void bm25RetrieverTagsContentWithSegmentId() {
+        Bm25Index index = new Bm25Index();
+        index.add("seg-1", TextSegment.from("奥司他韦用于治疗甲型流感。"));
+        List<Content> contents = new Bm25ContentRetriever(index, 5).retrieve(Query.from("奥司他韦"));
+        assertEquals(1, contents.size());
+        assertEquals("seg-1", contents.get(0).metadata().get(ContentMetadata.EMBEDDING_ID));
+    }
+
+    @Test
+    void reciprocalRankFusionFavoursAgreementAndCapsResults() {
+        Content a = content("a");
+        Content b = content("b");
+        Content c = content("c");
+        Content d = content("d");
+        List<Content> dense = List.of(a, b, c);
+        List<Content> keyword = List.of(c, d);
+
+        List<Content> fused = new ReciprocalRankFusionAggregator(60, 2)
+                .aggregate(Map.of(Query.from("q"), List.of(dense, keyword)));
+
+        assertEquals(2, fused.size());
+        // c 同时出现在两个列表中，得分最高
+        assertEquals("c", fused.get(0).metadata().get(ContentMetadata.EMBEDDING_ID));
+        assertEquals("a", fused.get(1).metadata().get(ContentMetadata.EMBEDDING_ID));
+        double expected = 1.0 / 63 + 1.0 / 61;
+        assertEquals(expected, (double) fused.get(0).metadata().get(ContentMetadata.SCORE), 1e-9);
+    }
+
+    private static Content content(String id) {
+        return Content.from(TextSegment.from("片段 " + id), Map.of(ContentMetadata.EMBEDDING_ID, id));
+    }
+}
@@ -0,0 +1,89 @@
+package com.yihu.agent.rag.retrieval;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重排序聚合器测试：打分模型使用本地桩实现（得分为片段编号），验证分批并行打分、截断和失败降级
+ */
+public class RerankingContentAggregatorTest {
+
+    @Test
+    void keepsHighestScoringCandidatesScoredInParallelBatches() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Integer> batchSizes = new ArrayList<>();
+        ScoringModel model = (segments, query) -> {
+            threads.add(Thread.currentThread().getName());
+            synchronized (batchSizes) {
+                batchSizes.add(segments.size());
+            }
+            return Response.from(segments.stream()
+                    .map(segment -> Double.parseDouble(segment.text().substring(3)))
+                    .toList());
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RerankingContentAggregator aggregator = new RerankingContentAggregator(model,
+                    new ReciprocalRankFusionAggregator(60, 8), executor, 3, 3, 2.0);
+
+            // 候选池顺序与打分顺序相反：越靠后的片段编号越大
+            List<Content> retrieved = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                retrieved.add(Content.from(TextSegment.from("片段 " + i), Map.of(ContentMetadata.EMBEDDING_ID, "id-" + i)));
+            }
+            List<Content> result = aggregator.aggregate(Map.of(Query.from("问题"), List.of(retrieved)));
+
+            // 候选池只有前 8 个（0..7），重排序后取得分最高的 3 个
+            assertEquals(3, result.size());
+            assertEquals("id-7", result.get(0).metadata().get(ContentMetadata.EMBEDDING_ID));
+            assertEquals("id-6", result.get(1).metadata().get(ContentMetadata.EMBEDDING_ID));
+            assertEquals("id-5", result.get(2).metadata().get(ContentMetadata.EMBEDDING_ID));
+            assertEquals(7.0, (double) result.get(0).metadata().get(ContentMetadata.RERANKED_SCORE), 1e-9);
+            assertEquals(List.of(2, 3, 3), batchSizes.stream().sorted().toList());
+            assertTrue(threads.stream().noneMatch(name -> name.equals(Thread.currentThread().getName())),
+                    "打分应在线程池上执行");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void fallsBackToCandidateOrderWhenScoringFails() {
+        ScoringModel failing = (segments, query) -> {
+            throw new IllegalStateException("模型加载失败");
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RerankingContentAggregator aggregator = new RerankingContentAggregator(failing,
+                    new ReciprocalRankFusionAggregator(60, 5), executor, 2, 2, 0.0);
+            List<Content> retrieved = List.of(
+                    Content.from(TextSegment.from("片段 1"), Map.of(ContentMetadata.EMBEDDING_ID, "a")),
+                    Content.from(TextSegment.from("片段 2"), Map.of(ContentMetadata.EMBEDDING_ID, "b")),
+                    Content.from(TextSegment.from("片段 3"), Map.of(ContentMetadata.EMBEDDING_ID, "c")));
+
+            List<Content> result = aggregator.aggregate(Map.of(Query.from("问题"), List.of(retrieved)));
+
+            assertEquals(2, result.size());
+            assertEquals("a", result.get(0).metadata().get(ContentMetadata.EMBEDDING_ID));
+            assertEquals(1L, aggregator.stats().get("failures"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
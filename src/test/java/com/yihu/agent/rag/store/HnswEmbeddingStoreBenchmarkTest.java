@@ -0,0 +1,155 @@
+package com.yihu.agent.rag.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HNSW 向量库召回率-延迟基准测试
+ * 以暴力检索（InMemoryEmbeddingStore）的结果为真值，对比不同 efSearch 下的 recall@10 和单次检索耗时；
+ * 索引由多个线程并发写入。属于基准测试分组，不随默认的 mvn test 运行：
+ * mvn test -Dtest.excluded.groups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+public class HnswEmbeddingStoreBenchmarkTest {
+
+    private static final int DIMENSION = 64;
+    private static final int VECTORS = 10_000;
+    private static final int CLUSTERS = 100;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    private static final int WRITER_THREADS = 4;
+
+    @Test
+    void recallVersusLatency() throws Exception {
+        Random random = new Random(42);
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers.add(gaussian(random, 1.0f, null));
+        }
+        List<Embedding> corpus = new ArrayList<>();
+        for (int i = 0; i < VECTORS; i++) {
+            corpus.add(Embedding.from(gaussian(random, 0.3f, centers.get(random.nextInt(CLUSTERS)))));
+        }
+        List<Embedding> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(Embedding.from(gaussian(random, 0.3f, centers.get(random.nextInt(CLUSTERS)))));
+        }
+
+        InMemoryEmbeddingStore<TextSegment> bruteForce = new InMemoryEmbeddingStore<>();
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(DIMENSION, 16, 100, 64, VECTORS);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < VECTORS; i++) {
+            ids.add(String.valueOf(i));
+            // InMemoryEmbeddingStore.addAll 不接受空的片段列表，逐条写入
+            bruteForce.add(ids.get(i), corpus.get(i));
+        }
+
+        long buildStart = System.nanoTime();
+        ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            int slice = VECTORS / WRITER_THREADS;
+            for (int t = 0; t < WRITER_THREADS; t++) {
+                int from = t * slice;
+                int to = t == WRITER_THREADS - 1 ? VECTORS : from + slice;
+                futures.add(writers.submit(() -> hnsw.addAll(ids.subList(from, to), corpus.subList(from, to), null)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+        double buildMs = (System.nanoTime() - buildStart) / 1_000_000.0;
+        assertEquals(VECTORS, hnsw.size());
+
+        List<Set<String>> truth = new ArrayList<>();
+        double bruteForceUs = measure(bruteForce::search, queries, truth, null);
+
+        System.out.printf("HNSW 构建: %d 条 %d 维向量, %d 线程, %.0f ms%n", VECTORS, DIMENSION, WRITER_THREADS, buildMs);
+        System.out.printf("暴力检索: %.1f us/查询%n", bruteForceUs);
+        double bestRecall = 0;
+        double latencyAt64 = 0;
+        for (int ef : new int[]{16, 32, 64, 128, 256}) {
+            hnsw.setEfSearch(ef);
+            double[] recall = new double[1];
+            double us = measure(hnsw::search, queries, truth, recall);
+            System.out.printf("HNSW efSearch=%-4d recall@%d=%.3f  %.1f us/查询%n", ef, K, recall[0], us);
+            bestRecall = Math.max(bestRecall, recall[0]);
+            if (ef == 64) {
+                latencyAt64 = us;
+            }
+        }
+
+        assertTrue(bestRecall >= 0.95, "efSearch=256 时召回率应不低于 0.95，实际 " + bestRecall);
+        assertTrue(latencyAt64 < bruteForceUs, "HNSW 检索应快于暴力检索");
+    }
+
+    private interface Searcher {
+        EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request);
+    }
+
+    /**
+     * 执行全部查询，返回平均单次耗时（微秒）；truth 为空时记录真值，否则计算召回率
+     */
+    private static double measure(Searcher searcher, List<Embedding> queries, List<Set<String>> truth, double[] recall) {
+        // 预热
+        for (Embedding query : queries) {
+            searcher.search(request(query));
+        }
+        long elapsed = 0;
+        double hits = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            long start = System.nanoTime();
+            List<EmbeddingMatch<TextSegment>> matches = searcher.search(request(queries.get(q))).matches();
+            elapsed += System.nanoTime() - start;
+            Set<String> found = matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toSet());
+            if (recall == null) {
+                truth.add(found);
+            } else {
+                Set<String> expected = new HashSet<>(truth.get(q));
+                expected.retainAll(found);
+                hits += expected.size();
+            }
+        }
+        if (recall != null) {
+            recall[0] = hits / (queries.size() * K);
+        }
+        return elapsed / 1_000.0 / queries.size();
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(K)
+                .minScore(0.0)
+                .build();
+    }
+
+    private static float[] gaussian(Random random, float sigma, float[] center) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian() * sigma + (center == null ? 0 : center[d]);
+        }
+        return vector;
+    }
+}
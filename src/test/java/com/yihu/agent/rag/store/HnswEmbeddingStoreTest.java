@@ -0,0 +1,86 @@
+package com.yihu.agent.rag.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HNSW 向量库功能测试：检索中过滤、删除后槽位复用
+ */
+public class HnswEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    void selectiveFilterStillReturnsMaxResults() {
+        Random random = new Random(7);
+        HnswEmbeddingStore store = new HnswEmbeddingStore(DIMENSION, 8, 64, 16, 2_000);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ids.add("seg-" + i);
+            embeddings.add(Embedding.from(randomVector(random)));
+            // 只有 1% 的片段属于 cardiology
+            String knowledgeBase = i % 100 == 0 ? "cardiology" : "general";
+            segments.add(TextSegment.from("片段" + i, Metadata.from("knowledge_base", knowledgeBase)));
+        }
+        store.addAll(ids, embeddings, segments);
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(randomVector(random)))
+                .filter(metadataKey("knowledge_base").isEqualTo("cardiology"))
+                .maxResults(10)
+                .build()).matches();
+
+        // 过滤在遍历中进行：ef=16 的候选里平均不到一个 cardiology 片段，后过滤只能返回 0~1 条
+        assertEquals(10, matches.size());
+        assertTrue(matches.stream().allMatch(match ->
+                "cardiology".equals(match.embedded().metadata().getString("knowledge_base"))));
+    }
+
+    @Test
+    void deletedSlotsAreReusedOnceFull() {
+        Random random = new Random(11);
+        HnswEmbeddingStore store = new HnswEmbeddingStore(DIMENSION, 8, 32, 16, 100);
+        // 每轮写入 50 个向量后全部删除，模拟反复的增量刷新；槽位总数只有 100，第 3 轮起必须复用
+        for (int round = 0; round < 6; round++) {
+            List<String> ids = new ArrayList<>();
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ids.add("r" + round + "-" + i);
+                embeddings.add(Embedding.from(randomVector(random)));
+            }
+            store.addAll(ids, embeddings, null);
+            assertEquals(50, store.size());
+
+            for (int i = 0; i < 50; i += 7) {
+                assertEquals(ids.get(i), store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(embeddings.get(i))
+                        .maxResults(1)
+                        .build()).matches().get(0).embeddingId());
+            }
+            store.removeAll(ids);
+            assertEquals(0, store.size());
+        }
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
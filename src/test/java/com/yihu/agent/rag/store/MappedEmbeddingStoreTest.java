@@ -0,0 +1,107 @@
+package com.yihu.agent.rag.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 内存映射向量库测试
+ */
+public class MappedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensWithIndexAlreadyLoaded() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(200, 1);
+        List<String> ids = new ArrayList<>();
+        try (MappedEmbeddingStore store = new MappedEmbeddingStore(directory, DIMENSION, VectorEncoding.FLOAT32)) {
+            for (int i = 0; i < embeddings.size(); i++) {
+                ids.add(store.add(embeddings.get(i),
+                        TextSegment.from("片段" + i, Metadata.from("source", i % 2 == 0 ? "even" : "odd"))));
+            }
+            store.remove(ids.get(5));
+        }
+
+        try (MappedEmbeddingStore reopened = new MappedEmbeddingStore(directory, DIMENSION, VectorEncoding.INT8)) {
+            assertEquals(VectorEncoding.FLOAT32, reopened.encoding());
+            assertEquals(199, reopened.size());
+
+            EmbeddingMatch<TextSegment> best = search(reopened, embeddings.get(42), null).get(0);
+            assertEquals(ids.get(42), best.embeddingId());
+            assertEquals("片段42", best.embedded().text());
+            assertEquals(1.0, best.score(), 1e-4);
+
+            assertTrue(search(reopened, embeddings.get(5), null).stream()
+                    .noneMatch(match -> match.embeddingId().equals(ids.get(5))));
+
+            List<EmbeddingMatch<TextSegment>> odd = search(reopened, embeddings.get(42),
+                    MetadataFilterBuilder.metadataKey("source").isEqualTo("odd"));
+            assertTrue(odd.stream().allMatch(match -> match.embedded().metadata().getString("source").equals("odd")));
+        }
+    }
+
+    @Test
+    void int8EncodingKeepsRankingAndQuartersStorage() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(500, 2);
+        try (MappedEmbeddingStore float32 = new MappedEmbeddingStore(directory.resolve("f32"), DIMENSION, VectorEncoding.FLOAT32);
+             MappedEmbeddingStore int8 = new MappedEmbeddingStore(directory.resolve("i8"), DIMENSION, VectorEncoding.INT8)) {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < embeddings.size(); i++) {
+                ids.add(String.valueOf(i));
+            }
+            float32.addAll(ids, embeddings, null);
+            int8.addAll(ids, embeddings, null);
+
+            int agree = 0;
+            for (int q = 0; q < 50; q++) {
+                Embedding query = embeddings.get(q * 7);
+                String exact = search(float32, query, null).get(0).embeddingId();
+                if (search(int8, query, null).get(0).embeddingId().equals(exact)) {
+                    agree++;
+                }
+            }
+            assertTrue(agree >= 48, "INT8 的 top-1 结果应与 FLOAT32 基本一致，实际 " + agree + "/50");
+            assertTrue(int8.vectorBytes() * 3 < float32.vectorBytes());
+        }
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(MappedEmbeddingStore store, Embedding query,
+                                                            Filter filter) {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(5)
+                .filter(filter)
+                .build()).matches();
+    }
+
+    private static List<Embedding> randomEmbeddings(int count, long seed) {
+        Random random = new Random(seed);
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+}
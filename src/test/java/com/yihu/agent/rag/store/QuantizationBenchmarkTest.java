@@ -0,0 +1,129 @@
+package com.yihu.agent.rag.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向量量化基准测试
+ * 对比全精度、int8、PQ 三种存储方式下每百万向量的堆内存占用与 recall@10（有无全精度重排序）。
+ * 属于基准测试分组，不随默认的 mvn test 运行：mvn test -Dtest.excluded.groups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+public class QuantizationBenchmarkTest {
+
+    private static final int DIMENSION = 64;
+    private static final int VECTORS = 10_000;
+    private static final int CLUSTERS = 50;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+    private static final int PQ_SUBSPACES = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void memoryPerMillionVersusRecall() throws Exception {
+        Random random = new Random(3);
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers.add(gaussian(random, 1.0f, null));
+        }
+        List<Embedding> corpus = new ArrayList<>();
+        for (int i = 0; i < VECTORS; i++) {
+            corpus.add(Embedding.from(gaussian(random, 0.4f, centers.get(random.nextInt(CLUSTERS)))));
+        }
+        List<Embedding> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(Embedding.from(gaussian(random, 0.4f, centers.get(random.nextInt(CLUSTERS)))));
+        }
+
+        try (MappedEmbeddingStore exact = new MappedEmbeddingStore(directory.resolve("exact"), DIMENSION, VectorEncoding.FLOAT32)) {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < VECTORS; i++) {
+                ids.add(String.valueOf(i));
+            }
+            exact.addAll(ids, corpus, null);
+            List<Set<String>> truth = new ArrayList<>();
+            for (Embedding query : queries) {
+                truth.add(topK(exact, query));
+            }
+            System.out.printf("%-18s %10s %14s %10s%n", "存储方式", "字节/向量", "MB/百万向量", "recall@10");
+            System.out.printf("%-18s %10d %14.1f %10.3f%n", "float32", DIMENSION * 4, mbPerMillion(DIMENSION * 4), 1.0);
+
+            double int8Recall = 0;
+            double pqRecall = 0;
+            for (QuantizationMethod method : QuantizationMethod.values()) {
+                for (int rerankFactor : new int[]{1, 4, 10}) {
+                    Path dir = directory.resolve(method + "-" + rerankFactor);
+                    Quantizer quantizer = method == QuantizationMethod.INT8
+                            ? new ScalarInt8Quantizer(DIMENSION)
+                            : new ProductQuantizer(DIMENSION, PQ_SUBSPACES, 8);
+                    try (QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(
+                            new MappedEmbeddingStore(dir, DIMENSION, VectorEncoding.FLOAT32), quantizer, VECTORS / 2, rerankFactor)) {
+                        store.addAll(ids, corpus, null);
+                        assertTrue(store.isQuantized());
+                        assertEquals(VECTORS, store.size());
+
+                        double hits = 0;
+                        for (int q = 0; q < QUERIES; q++) {
+                            Set<String> found = topK(store, queries.get(q));
+                            found.retainAll(truth.get(q));
+                            hits += found.size();
+                        }
+                        double recall = hits / (QUERIES * K);
+                        System.out.printf("%-18s %10d %14.1f %10.3f%n", method + " 重排x" + rerankFactor,
+                                store.codeBytesPerVector(), mbPerMillion(store.codeBytesPerVector()), recall);
+                        if (rerankFactor == 4 && method == QuantizationMethod.INT8) {
+                            int8Recall = recall;
+                        }
+                        if (rerankFactor == 10 && method == QuantizationMethod.PQ) {
+                            pqRecall = recall;
+                        }
+                    }
+                }
+            }
+            assertTrue(int8Recall >= 0.95, "int8 + 重排序 recall@10 应不低于 0.95，实际 " + int8Recall);
+            assertTrue(pqRecall >= 0.8, "PQ + 重排序 recall@10 应不低于 0.8，实际 " + pqRecall);
+        }
+    }
+
+    private static Set<String> topK(EmbeddingStore<TextSegment> store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(K)
+                        .minScore(0.0)
+                        .build())
+                .matches().stream()
+                .map(EmbeddingMatch::embeddingId)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static double mbPerMillion(int bytesPerVector) {
+        return bytesPerVector * 1_000_000L / 1024.0 / 1024.0;
+    }
+
+    private static float[] gaussian(Random random, float sigma, float[] center) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian() * sigma + (center == null ? 0 : center[d]);
+        }
+        return vector;
+    }
+}
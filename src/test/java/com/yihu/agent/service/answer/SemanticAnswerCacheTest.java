@@ -0,0 +1,154 @@
+package com.yihu.agent.service.answer;
+
+import com.yihu.agent.service.intent.IntentPreClassifier;
+import com.yihu.agent.service.intent.SemanticIntentCache;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对话回复语义缓存测试：向量模型使用本地桩实现（按字符计数），无需下载模型
+ */
+public class SemanticAnswerCacheTest {
+
+    /**
+     * 记忆为空的会话，每次查询都相当于会话的第一轮
+     */
+    private static final String FIRST_TURN = "first-turn";
+
+    private final AtomicInteger embedCalls = new AtomicInteger();
+    private final Map<Object, ChatMemory> memories = new ConcurrentHashMap<>();
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+                embedCalls.addAndGet(segments.size());
+                return Response.from(segments.stream().map(segment -> {
+                    float[] vector = new float[64];
+                    segment.text().chars().forEach(c -> vector[c % vector.length]++);
+                    return Embedding.from(vector);
+                }).toList());
+            }
+        };
+        SemanticIntentCache intentCache = new SemanticIntentCache();
+        ReflectionTestUtils.setField(intentCache, "enabled", false);
+
+        ChatMemoryProvider memoryProvider = id ->
+                memories.computeIfAbsent(id, key -> MessageWindowChatMemory.withMaxMessages(10));
+
+        cache = new SemanticAnswerCache();
+        ReflectionTestUtils.setField(cache, "embeddingModel", model);
+        ReflectionTestUtils.setField(cache, "intentPreClassifier", new IntentPreClassifier());
+        ReflectionTestUtils.setField(cache, "semanticIntentCache", intentCache);
+        ReflectionTestUtils.setField(cache, "chatMemoryProvider", memoryProvider);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.8);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxAnswerLength", 100);
+        ReflectionTestUtils.setField(cache, "generalChatTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cache, "lowRiskMedicalTtl", Duration.ofHours(1));
+        cache.init();
+    }
+
+    @Test
+    void repeatedAndSimilarQuestionsAreServedFromCache() {
+        SemanticAnswerCache.Lookup miss = cache.lookup(FIRST_TURN, "感冒了吃什么药");
+        assertTrue(miss.answer().isEmpty());
+        assertEquals(IntentPreClassifier.LOW_RISK_MEDICAL, miss.intent());
+        cache.complete(miss, "感冒了吃什么药", "多喝水，可服用感冒药", 1_000_000_000L);
+
+        int embedded = embedCalls.get();
+        assertEquals("多喝水，可服用感冒药", cache.lookup(FIRST_TURN, "感冒了吃什么药").answer().orElseThrow());
+        assertEquals(embedded, embedCalls.get(), "精确命中不应计算向量");
+        assertEquals("多喝水，可服用感冒药", cache.lookup(FIRST_TURN, "感冒吃什么药好").answer().orElseThrow());
+        assertEquals(2L, cache.stats().get("savedModelCalls"));
+
+        cache.remember("u1", "感冒吃什么药好", "多喝水，可服用感冒药");
+        assertEquals(2, memories.get("u1").messages().size());
+    }
+
+    @Test
+    void highRiskQuestionsAreNeverCached() {
+        SemanticAnswerCache.Lookup lookup = cache.lookup(FIRST_TURN, "突然胸痛，喘不上气怎么办");
+        assertEquals(IntentPreClassifier.HIGH_RISK_MEDICAL, lookup.intent());
+        cache.complete(lookup, "突然胸痛，喘不上气怎么办", "立即拨打120", 1_000_000_000L);
+
+        assertTrue(cache.lookup(FIRST_TURN, "突然胸痛，喘不上气怎么办").answer().isEmpty());
+        assertEquals(0, cache.stats().get("size"));
+        assertEquals(2L, cache.stats().get("highRiskBypasses"));
+    }
+
+    @Test
+    void ttlAndSizeFollowIntentAndLimits() {
+        ReflectionTestUtils.setField(cache, "lowRiskMedicalTtl", Duration.ZERO);
+        SemanticAnswerCache.Lookup lowRisk = cache.lookup(FIRST_TURN, "感冒了吃什么药");
+        cache.complete(lowRisk, "感冒了吃什么药", "多喝水", 1L);
+        assertTrue(cache.lookup(FIRST_TURN, "感冒了吃什么药").answer().isEmpty());
+
+        SemanticAnswerCache.Lookup greeting = cache.lookup(FIRST_TURN, "你好");
+        cache.complete(greeting, "你好", "x".repeat(101), 1L);
+        assertTrue(cache.lookup(FIRST_TURN, "你好").answer().isEmpty(), "超长回复不缓存");
+        cache.complete(greeting, "你好", "您好！", 1L);
+        assertEquals("您好！", cache.lookup(FIRST_TURN, "你好").answer().orElseThrow());
+
+        // 规则预分类无法判定意图，且意图缓存未启用：不写入
+        SemanticAnswerCache.Lookup unknown = cache.lookup(FIRST_TURN, "帮我写一首诗");
+        assertNull(unknown.intent());
+        cache.complete(unknown, "帮我写一首诗", "春眠不觉晓", 1L);
+        assertEquals(1, cache.stats().get("size"));
+        assertEquals(1L, cache.stats().get("unclassifiedSkips"));
+    }
+
+    @Test
+    void followUpsInDifferentSessionsDoNotShareAnswers() {
+        // 两个会话的第一轮不同，第二轮问同一个问题，回复依赖各自的上下文
+        answerFirstTurn("s1", "孩子三岁，发烧38度", "注意物理降温");
+        answerFirstTurn("s2", "我对青霉素过敏", "已记录您的过敏史");
+
+        SemanticAnswerCache.Lookup first = cache.lookup("s1", "感冒了吃什么药");
+        assertTrue(first.answer().isEmpty());
+        assertFalse(first.cacheable());
+        cache.complete(first, "感冒了吃什么药", "可以给孩子用儿童退烧药", 1_000_000_000L);
+        memories.get("s1").add(UserMessage.from("感冒了吃什么药"));
+        memories.get("s1").add(AiMessage.from("可以给孩子用儿童退烧药"));
+
+        assertTrue(cache.lookup("s2", "感冒了吃什么药").answer().isEmpty(), "追问不应命中其他会话的回复");
+        assertTrue(cache.lookup(FIRST_TURN, "感冒了吃什么药").answer().isEmpty(), "追问的回复不应写入缓存");
+        assertEquals(2L, cache.stats().get("followUpBypasses"));
+    }
+
+    /**
+     * 模拟一次未命中缓存的第一轮对话：查询、大模型回复写入会话记忆、回填缓存
+     */
+    private void answerFirstTurn(String conversationId, String question, String answer) {
+        SemanticAnswerCache.Lookup lookup = cache.lookup(conversationId, question);
+        assertTrue(lookup.answer().isEmpty());
+        memories.computeIfAbsent(conversationId, key -> MessageWindowChatMemory.withMaxMessages(10))
+                .add(UserMessage.from(question));
+        memories.get(conversationId).add(AiMessage.from(answer));
+        cache.complete(lookup, question, answer, 1_000_000_000L);
+    }
+}
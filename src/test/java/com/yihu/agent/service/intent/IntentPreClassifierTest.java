@@ -0,0 +1,65 @@
+package com.yihu.agent.service.intent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 意图规则预分类器测试
+ */
+public class IntentPreClassifierTest {
+
+    private final IntentPreClassifier classifier = new IntentPreClassifier();
+
+    @Test
+    void redFlagSymptomsShortCircuitToHighRisk() {
+        assertEquals(IntentPreClassifier.HIGH_RISK_MEDICAL, classify("我突然胸痛，呼吸困难"));
+        assertEquals(IntentPreClassifier.HIGH_RISK_MEDICAL, classify("家里老人昏迷了"));
+    }
+
+    @Test
+    void commonSymptomsShortCircuitToLowRisk() {
+        assertEquals(IntentPreClassifier.LOW_RISK_MEDICAL, classify("我感冒了一直咳嗽"));
+    }
+
+    @Test
+    void shortGreetingsShortCircuitToGeneralChat() {
+        assertEquals(IntentPreClassifier.GENERAL_CHAT, classify("你好"));
+        assertEquals(IntentPreClassifier.GENERAL_CHAT, classify("Hi!"));
+    }
+
+    @Test
+    void ambiguousInputFallsBackToModel() {
+        assertTrue(classifier.classify("你好，我头疼").isEmpty());
+        assertTrue(classifier.classify("我没有胸痛，只是有点累").isEmpty());
+        assertTrue(classifier.classify("this is a test").isEmpty());
+        assertTrue(classifier.classify("我想了解一下医保报销的流程").isEmpty());
+    }
+
+    @Test
+    void caseFoldingKeepsMatchOffsetsAlignedWithInput() {
+        // "İ" 整串转小写后变成两个字符，命中位置仍须对应原始输入
+        KeywordAutomaton automaton = new KeywordAutomaton(List.of("hi"));
+        assertEquals(List.of(new KeywordAutomaton.Match(0, 2, 4)), automaton.findAll("İ HI"));
+        assertEquals(IntentPreClassifier.GENERAL_CHAT, classify("İ hi"));
+    }
+
+    @Test
+    void statsCountHitsAndFallbacks() {
+        classify("你好");
+        classifier.classify("我想了解一下医保报销的流程");
+        assertEquals(2L, classifier.stats().get("requests"));
+        assertEquals(1L, classifier.stats().get("fastPathHits"));
+        assertEquals(1L, classifier.stats().get("modelFallbacks"));
+    }
+
+    private String classify(String input) {
+        Optional<IntentPreClassifier.IntentPrediction> prediction = classifier.classify(input);
+        assertTrue(prediction.isPresent(), "应命中规则快速通道: " + input);
+        return prediction.get().intent();
+    }
+}
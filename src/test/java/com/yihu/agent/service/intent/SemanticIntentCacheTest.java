@@ -0,0 +1,78 @@
+package com.yihu.agent.service.intent;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 意图识别语义缓存测试：向量模型使用本地桩实现（按字符计数），无需下载模型
+ */
+public class SemanticIntentCacheTest {
+
+    private SemanticIntentCache cache;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+                return Response.from(segments.stream().map(segment -> {
+                    float[] vector = new float[64];
+                    segment.text().chars().forEach(c -> vector[c % vector.length]++);
+                    return Embedding.from(vector);
+                }).toList());
+            }
+        };
+        cache = new SemanticIntentCache();
+        ReflectionTestUtils.setField(cache, "embeddingModel", model);
+        ReflectionTestUtils.setField(cache, "intentPreClassifier", new IntentPreClassifier());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.8);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        cache.init();
+    }
+
+    @Test
+    void similarInputReusesCachedIntent() {
+        SemanticIntentCache.Lookup miss = cache.lookup("我头疼发烧");
+        assertTrue(miss.intent().isEmpty());
+        cache.complete(miss, "我头疼发烧", IntentPreClassifier.LOW_RISK_MEDICAL, 1_000_000L);
+
+        assertEquals(IntentPreClassifier.LOW_RISK_MEDICAL, cache.lookup("我头疼发烧了").intent().orElseThrow());
+    }
+
+    @Test
+    void negatedHighRiskInputIsNotCached() {
+        // 否定与肯定表述只差一个字，向量相似度约 0.93，但意图相反
+        SemanticIntentCache.Lookup negated = cache.lookup("我没有胸痛，头疼");
+        assertFalse(negated.cacheable());
+        cache.complete(negated, "我没有胸痛，头疼", IntentPreClassifier.LOW_RISK_MEDICAL, 1_000_000L);
+
+        assertTrue(cache.lookup("我有胸痛，头疼").intent().isEmpty());
+        assertEquals(0, cache.stats().get("size"));
+    }
+
+    @Test
+    void highRiskInputIsNotCached() {
+        SemanticIntentCache.Lookup first = cache.lookup("突然胸闷，有点喘");
+        assertFalse(first.cacheable());
+        cache.complete(first, "突然胸闷，有点喘", IntentPreClassifier.HIGH_RISK_MEDICAL, 1_000_000L);
+
+        assertTrue(cache.lookup("突然胸闷，有点喘").intent().isEmpty());
+        assertTrue(cache.lookup("今天突然胸闷，有点喘").intent().isEmpty());
+        assertEquals(0, cache.stats().get("size"));
+        assertEquals(3L, cache.stats().get("highRiskBypasses"));
+    }
+}
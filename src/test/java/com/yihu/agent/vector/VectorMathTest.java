@@ -0,0 +1,48 @@
+package com.yihu.agent.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 向量内核测试：SIMD 与标量实现结果一致（含不足一个向量宽度的尾部）
+ */
+public class VectorMathTest {
+
+    @Test
+    void simdMatchesScalar() {
+        VectorKernels scalar = VectorMath.scalarKernels();
+        VectorKernels simd = VectorMath.simdKernelsOrNull();
+        VectorKernels kernels = simd == null ? scalar : simd;
+        System.out.println("SIMD 内核可用: " + (simd != null));
+
+        Random random = new Random(7);
+        for (int length : new int[]{1, 3, 8, 15, 16, 33, 384, 385}) {
+            float[] a = new float[length];
+            float[] b = new float[length];
+            byte[] qa = new byte[length];
+            byte[] qb = new byte[length];
+            for (int i = 0; i < length; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+                qa[i] = (byte) (random.nextInt(255) - 127);
+                qb[i] = (byte) (random.nextInt(255) - 127);
+            }
+            float tolerance = 1e-3f * length;
+            assertEquals(scalar.dot(a, b, length), kernels.dot(a, b, length), tolerance);
+            assertEquals(scalar.dot(qa, b, length), kernels.dot(qa, b, length), tolerance * 127);
+            assertEquals(scalar.dot(qa, qb, length), kernels.dot(qa, qb, length));
+            assertEquals(scalar.cosine(a, b, length), kernels.cosine(a, b, length), 1e-4f);
+        }
+    }
+
+    @Test
+    void normalizeProducesUnitVectors() {
+        float[] normalized = VectorMath.normalize(new float[]{3, 4});
+        assertEquals(0.6f, normalized[0], 1e-6f);
+        assertEquals(0.8f, normalized[1], 1e-6f);
+        assertEquals(0f, VectorMath.normalize(new float[]{0, 0})[0]);
+    }
+}